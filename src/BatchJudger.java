@@ -0,0 +1,248 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**************************** BATCH JUDGER *****************************
+ * Judges a stream of deals in the README input format and writes one
+ * line per deal with the ids of the winning players, space-separated in
+ * ascending order, in the same order as the deals were read.
+ *
+ * Deals are read with a DealReader, or any other DealSource such as a
+ * HandHistoryReader, and judged with TexasHold_em.judge(), and results
+ * are written through a byte buffer, so one process can judge any number
+ * of deals without creating objects per deal.
+ *
+ * A deal that is malformed or invalid (see DealValidator) gets a line
+ * "ERROR <code> <message>" in place of its winners, e.g.
+ *     ERROR DUPLICATE_CARD Invalid deal at line 7: card dealt twice: Ah
+ * and judging goes on with the next deal.
+ *
+ ***********************************************************************
+ */
+public class BatchJudger {
+
+
+    /********************************************************
+     ************** PRIVATE CLASS VARIABLES *****************
+     ********************************************************/
+    private static final int BUFFER_SIZE = 1 << 16;
+    // longest possible line: every player winning with a 10 digit id
+    private static final int MAX_LINE = Deal.MAX_PLAYERS * 11 + 1;
+
+
+    /********************************************************
+     ************** PRIVATE INSTANCE VARIABLES *****************
+     ********************************************************/
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position; // number of bytes in buffer
+    private final int[] ids = new int[Deal.MAX_PLAYERS]; // scratch for sorting winner ids
+
+
+    /********************************************************
+     ******************** CONSTRUCTOR ***********************
+     ********************************************************/
+
+    /**
+     * Constructor that creates a BatchJudger writing its results to the given stream
+     *
+     * @param out
+     */
+    public BatchJudger(OutputStream out) {
+        this.out = out;
+    }
+
+
+    /*********************************************************
+     ****************** PUBLIC CLASS METHODS *****************
+     *********************************************************/
+
+    /**
+     * Judges every deal in the input and writes the winners of each to the output
+     *
+     * @param in
+     * @param out
+     * @return the number of deals judged
+     * @throws IOException
+     */
+    public static long run(InputStream in, OutputStream out) throws IOException {
+        return run(new DealReader(in), out);
+    }
+
+    /**
+     * Judges every deal from a source and writes the winners of each to the output
+     *
+     * @param reader
+     * @param out
+     * @return the number of deals judged, not counting invalid ones
+     * @throws IOException
+     */
+    public static long run(DealSource reader, OutputStream out) throws IOException {
+        return run(reader, out, new BoardState());
+    }
+
+    /**
+     * Judges every deal from a source with the given engine and writes the winners of each to
+     * the output
+     *
+     * @param reader
+     * @param out
+     * @param evaluator
+     * @return the number of deals judged, not counting invalid ones
+     * @throws IOException
+     */
+    public static long run(DealSource reader, OutputStream out, HandEvaluator evaluator) throws IOException {
+        return run(reader, out, evaluator, false);
+    }
+
+    /**
+     * Same as run(DealSource, OutputStream, HandEvaluator), judging every deal with
+     * Showdown.judge(), which skips the seats that can't win, if showdown is set
+     *
+     * @param reader
+     * @param out
+     * @param evaluator
+     * @param showdown
+     * @return the number of deals judged, not counting invalid ones
+     * @throws IOException
+     */
+    public static long run(DealSource reader, OutputStream out, HandEvaluator evaluator, boolean showdown)
+            throws IOException {
+        BatchJudger judger = new BatchJudger(out);
+        Deal deal = new Deal();
+        int[] strengths = new int[Deal.MAX_PLAYERS];
+        long count = 0;
+
+        try {
+            while (true) {
+                try {
+                    if (!reader.next(deal)) {
+                        break;
+                    }
+                } catch (InvalidDealException e) {
+                    judger.writeError(e);
+                    continue;
+                }
+                long winners = showdown ? Showdown.judge(deal, evaluator, strengths)
+                        : TexasHold_em.judge(deal, evaluator, strengths);
+                judger.writeWinners(deal, winners);
+                count++;
+            }
+        } finally {
+            judger.flush();
+        }
+        return count;
+    }
+
+
+    /**
+     * Returns the line written in place of the winners of an invalid deal,
+     * "ERROR <code> <message>\n", and counts it in JudgeMetrics if they are on
+     *
+     * @param e
+     * @return String
+     */
+    public static String errorLine(InvalidDealException e) {
+        if (JudgeMetrics.isEnabled()) {
+            JudgeMetrics.recordInvalid(e.getCode());
+        }
+        return "ERROR " + DealValidator.codeName(e.getCode()) + " " + e.getMessage() + "\n";
+    }
+
+
+    /*********************************************************
+     **************** PUBLIC INSTANCE METHODS ****************
+     *********************************************************/
+
+    /**
+     * Writes a line with the ids of the winners of a deal in ascending order
+     *
+     * @param deal
+     * @param winners the winning seats, as returned by TexasHold_em.chooseWinner()
+     * @throws IOException
+     */
+    public void writeWinners(Deal deal, long winners) throws IOException {
+        if (position + MAX_LINE > buffer.length) {
+            flushBuffer();
+        }
+
+        // insertion sort the ids of the winners, there are rarely more than a few
+        int[] playerIds = deal.getPlayerIds();
+        int n = 0;
+        for (long seats = winners; seats != 0; seats &= seats - 1) {
+            int id = playerIds[Long.numberOfTrailingZeros(seats)];
+            int i = n++;
+            while (i > 0 && ids[i - 1] > id) {
+                ids[i] = ids[i - 1];
+                i--;
+            }
+            ids[i] = id;
+        }
+
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                buffer[position++] = ' ';
+            }
+            writeInt(ids[i]);
+        }
+        buffer[position++] = '\n';
+    }
+
+    /**
+     * Writes the error line of an invalid deal, see errorLine()
+     *
+     * @param e
+     * @throws IOException
+     */
+    public void writeError(InvalidDealException e) throws IOException {
+        String line = errorLine(e);
+        if (position + line.length() > buffer.length) {
+            flushBuffer();
+        }
+        if (line.length() > buffer.length) {
+            out.write(line.getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        for (int i = 0; i < line.length(); i++) {
+            buffer[position++] = (byte) line.charAt(i);
+        }
+    }
+
+    /**
+     * Writes out everything buffered so far
+     *
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+
+    /*********************************************************
+     *************** PRIVATE INSTANCE METHODS ****************
+     *********************************************************/
+
+    private void flushBuffer() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+    }
+
+    /**
+     * Writes the decimal digits of a non-negative int into the buffer
+     *
+     * @param value
+     */
+    private void writeInt(int value) {
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        for (int i = position + digits - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position += digits;
+    }
+}
@@ -0,0 +1,539 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/***************************** BENCHMARKS ******************************
+ * Micro benchmarks for hand evaluation, winner selection, parsing and
+ * judging whole deals, run with:
+ *
+ *     java Benchmarks [name filter] [--seed n] [--warmup n] [--iterations n] [--time ms]
+ *                     [--no-fork] [--only name]
+ *
+ * Every benchmark runs a number of timed warmup iterations followed by
+ * measured iterations, and reports the mean throughput of the measured
+ * iterations with the half-width of its 99.9% confidence interval, in
+ * the same layout as JMH. All inputs are generated up front from
+ * seeded Randoms, so runs with the same seed measure the same hands.
+ *
+ * As JMH does, every benchmark runs in a JVM of its own, started with
+ * --only and its name: in one JVM, the code a benchmark runs has been
+ * compiled for whatever ran before it, and the call site that runs every
+ * benchmark sees all of their operations, so scores would depend on the
+ * order the benchmarks run in. --no-fork runs them all in this JVM,
+ * which is faster but only fit for a quick look.
+ *
+ ***********************************************************************
+ */
+public class Benchmarks {
+
+
+    /********************************************************
+     ************** PRIVATE CLASS VARIABLES *****************
+     ********************************************************/
+    private static final int SAMPLES = 1 << 12; // inputs per benchmark, a power of two
+
+    // results of the benchmarked calls end up here, so they can't be optimized away
+    private static volatile long sink;
+
+
+    /********************************************************
+     ************** PRIVATE INSTANCE VARIABLES *****************
+     ********************************************************/
+    private final String filter; // part of the names of the benchmarks to run, or null for all
+    private final String only; // the name of the one benchmark to run in this JVM, or null
+    private final boolean fork; // whether each benchmark runs in a JVM of its own
+    private final long seed; // passed on to the forked JVMs
+    private final int warmupIterations;
+    private final int measuredIterations;
+    private final long iterationMillis;
+
+
+    /********************************************************
+     ******************** CONSTRUCTOR ***********************
+     ********************************************************/
+
+    private Benchmarks(String filter, String only, boolean fork, long seed, int warmupIterations,
+                       int measuredIterations, long iterationMillis) {
+        this.filter = filter;
+        this.only = only;
+        this.fork = fork;
+        this.seed = seed;
+        this.warmupIterations = warmupIterations;
+        this.measuredIterations = measuredIterations;
+        this.iterationMillis = iterationMillis;
+    }
+
+
+    /*********************************************************
+     ****************** NESTED INTERFACES ********************
+     *********************************************************/
+
+    /**
+     * One benchmarked operation, run on the i-th of SAMPLES inputs
+     */
+    private interface Operation {
+        long run(int i) throws Exception;
+    }
+
+
+    /*********************************************************
+     ****************** PUBLIC CLASS METHODS *****************
+     *********************************************************/
+
+    /**
+     * Generates count random hands of seven cards whose best hand has the given rank (1 for a
+     * royal flush to 10 for a high card), as card ids
+     *
+     * @param random
+     * @param category
+     * @param count
+     * @return
+     */
+    public static int[][] handsOfCategory(Random random, int category, int count) {
+        int[][] hands = new int[count][];
+        int[] deck = newDeck();
+        for (int n = 0; n < count; ) {
+            int[] hand;
+            if (category == 1) {
+                // far too rare to find by chance: deal T - A of a random suit plus two more cards
+                int suit = random.nextInt(Card.NUM_SUITS);
+                hand = new int[7];
+                for (int i = 0; i < 5; i++) {
+                    hand[i] = Card.id(8 + i, suit);
+                }
+                long used = Card.mask(hand);
+                for (int i = 5; i < 7; i++) {
+                    do {
+                        hand[i] = random.nextInt(Card.NUM_CARDS);
+                    } while ((used & 1L << hand[i]) != 0);
+                    used |= 1L << hand[i];
+                }
+            } else {
+                shuffle(random, deck, 7);
+                hand = new int[7];
+                System.arraycopy(deck, 0, hand, 0, 7);
+            }
+            if (TexasHold_em.handCategory(TexasHold_em.evaluateHand(hand)) == category) {
+                hands[n++] = hand;
+            }
+        }
+        return hands;
+    }
+
+    /**
+     * Generates a random deal for the given number of players, with player ids 0 to
+     * numPlayers - 1
+     *
+     * @param random
+     * @param numPlayers
+     * @param deal
+     */
+    public static void randomDeal(Random random, int numPlayers, Deal deal) {
+        randomDeal(random, numPlayers, Deal.HOLDEM, Deal.HOLE_SIZE, deal);
+    }
+
+    /**
+     * Generates a random deal of the given variant, see randomDeal(Random, int, Deal)
+     *
+     * @param random
+     * @param numPlayers
+     * @param variant
+     * @param holeSize
+     * @param deal
+     */
+    public static void randomDeal(Random random, int numPlayers, int variant, int holeSize, Deal deal) {
+        int[] deck = newDeck(Deal.deckMask(variant));
+        shuffle(random, deck, Deal.BOARD_SIZE + holeSize * numPlayers);
+        deal.setNumPlayers(numPlayers);
+        deal.setVariant(variant, holeSize);
+        System.arraycopy(deck, 0, deal.getBoard(), 0, Deal.BOARD_SIZE);
+        System.arraycopy(deck, Deal.BOARD_SIZE, deal.getHoleCards(), 0, holeSize * numPlayers);
+        for (int seat = 0; seat < numPlayers; seat++) {
+            deal.getPlayerIds()[seat] = seat;
+        }
+    }
+
+
+    /*********************************************************
+     **************** PRIVATE INSTANCE METHODS ***************
+     *********************************************************/
+
+    /**
+     * Runs the warmup and measured iterations of a benchmark, unless it is filtered out,
+     * and prints its score; in a JVM of its own, see forkRun(), unless forking is off
+     *
+     * @param name
+     * @param operation
+     * @throws Exception
+     */
+    private void run(String name, Operation operation) throws Exception {
+        if (only != null ? !name.equals(only) : filter != null && !name.contains(filter)) {
+            return;
+        }
+        if (fork) {
+            forkRun(name);
+            return;
+        }
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(operation);
+        }
+        double[] scores = new double[measuredIterations];
+        for (int i = 0; i < measuredIterations; i++) {
+            scores[i] = iteration(operation);
+        }
+
+        double mean = 0;
+        for (double score : scores) {
+            mean += score;
+        }
+        mean /= scores.length;
+        double error = Double.NaN;
+        if (scores.length > 1) {
+            double variance = 0;
+            for (double score : scores) {
+                variance += (score - mean) * (score - mean);
+            }
+            variance /= scores.length - 1;
+            // normal approximation of the 99.9% confidence interval
+            error = 3.29 * Math.sqrt(variance / scores.length);
+        }
+        System.out.printf("%-48s thrpt %5d %14.3f +- %12.3f  ops/s%n", name, scores.length, mean, error);
+    }
+
+    /**
+     * Returns whether a benchmark whose name starts with one of the given prefixes may run, so
+     * the inputs of a group of benchmarks aren't generated in a JVM that runs none of them
+     *
+     * @param prefixes
+     * @return
+     */
+    private boolean runs(String... prefixes) {
+        if (only == null) {
+            return true;
+        }
+        for (String prefix : prefixes) {
+            if (only.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs a benchmark in a new JVM with the same class path and settings, which generates the
+     * same inputs from the seed and runs only that benchmark, printing its score
+     *
+     * @param name
+     * @throws Exception
+     */
+    private void forkRun(String name) throws Exception {
+        List<String> command = Arrays.asList(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"), Benchmarks.class.getName(), "--only", name,
+                "--seed", Long.toString(seed), "--warmup", Integer.toString(warmupIterations),
+                "--iterations", Integer.toString(measuredIterations), "--time", Long.toString(iterationMillis));
+        Process process = new ProcessBuilder(command).inheritIO().start();
+        if (process.waitFor() != 0) {
+            System.err.println("ERROR. The JVM of benchmark " + name + " exited with " + process.exitValue());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs an operation over and over for one iteration and returns the operations per second
+     *
+     * @param operation
+     * @return
+     * @throws Exception
+     */
+    private double iteration(Operation operation) throws Exception {
+        long ops = 0;
+        long result = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < SAMPLES; i++) {
+                result += operation.run(i);
+            }
+            ops += SAMPLES;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationMillis * 1000000L);
+        sink += result;
+        return ops * 1e9 / elapsed;
+    }
+
+
+    /*********************************************************
+     ****************** PRIVATE CLASS METHODS ****************
+     *********************************************************/
+
+    private static int[] newDeck() {
+        return newDeck(Deal.deckMask(Deal.HOLDEM));
+    }
+
+    /**
+     * Returns the ids of the cards in a card mask, in ascending order
+     *
+     * @param deckMask
+     * @return
+     */
+    private static int[] newDeck(long deckMask) {
+        int[] deck = new int[Long.bitCount(deckMask)];
+        int n = 0;
+        for (long cards = deckMask; cards != 0; cards &= cards - 1) {
+            deck[n++] = Long.numberOfTrailingZeros(cards);
+        }
+        return deck;
+    }
+
+    /**
+     * Moves count random cards of the deck to its front
+     */
+    private static void shuffle(Random random, int[] deck, int count) {
+        for (int i = 0; i < count; i++) {
+            int j = i + random.nextInt(deck.length - i);
+            int t = deck[i];
+            deck[i] = deck[j];
+            deck[j] = t;
+        }
+    }
+
+    private static ArrayList<Card> toCardList(int[] ids) {
+        ArrayList<Card> cards = new ArrayList<>();
+        for (int id : ids) {
+            cards.add(Card.of(id));
+        }
+        return cards;
+    }
+
+    private static String toText(int[] ids) {
+        StringBuilder sb = new StringBuilder();
+        for (int id : ids) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(Card.of(id));
+        }
+        return sb.toString();
+    }
+
+
+    /*********************************************************
+     ****************** MAIN METHOD **************************
+     *********************************************************/
+
+    /**
+     * java Benchmarks [name filter] [--seed n] [--warmup n] [--iterations n] [--time ms]
+     *                 [--no-fork] [--only name]
+     */
+    public static void main(String[] args) throws Exception {
+        String filter = null;
+        String only = null;
+        boolean fork = true;
+        long seed = 42;
+        int warmup = 3;
+        int iterations = 5;
+        long millis = 1000;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--seed") && i + 1 < args.length) {
+                    seed = Long.parseLong(args[++i]);
+                } else if (args[i].equals("--warmup") && i + 1 < args.length) {
+                    warmup = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--iterations") && i + 1 < args.length) {
+                    iterations = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--time") && i + 1 < args.length) {
+                    millis = Long.parseLong(args[++i]);
+                } else if (args[i].equals("--only") && i + 1 < args.length) {
+                    only = args[++i];
+                } else if (args[i].equals("--no-fork")) {
+                    fork = false;
+                } else if (args[i].startsWith("--")) {
+                    throw new IllegalArgumentException("Unknown option or missing value: " + args[i]);
+                } else {
+                    filter = args[i];
+                }
+            }
+            if (warmup < 0 || iterations < 1 || millis < 1) {
+                throw new IllegalArgumentException("Need at least one measured iteration of at least 1 ms");
+            }
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException included
+            System.err.println("ERROR. " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        // the JVM of a single benchmark runs it itself and prints only its score; every group of
+        // benchmarks below draws its inputs from a Random of its own, so that JVM only generates
+        // the inputs of its group
+        Benchmarks benchmarks = new Benchmarks(filter, only, fork && only == null, seed, warmup, iterations, millis);
+
+        if (only == null) {
+            System.out.printf("%-48s %5s %5s %14s   %12s  %s%n", "Benchmark", "Mode", "Cnt", "Score", "Error", "Units");
+        }
+        int[] seatStrengths = new int[Deal.MAX_PLAYERS];
+
+        // evaluating a single hand of each category, with each of the evaluators
+        if (benchmarks.runs("evaluateHand.", "bestFiveCards.")) {
+            Random random = new Random(seed);
+            for (int category = 1; category <= 10; category++) {
+                int[][] hands = handsOfCategory(random, category, SAMPLES);
+                ArrayList<ArrayList<Card>> lists = new ArrayList<>();
+                long[] masks = new long[SAMPLES];
+                for (int i = 0; i < SAMPLES; i++) {
+                    lists.add(toCardList(hands[i]));
+                    masks[i] = Card.mask(hands[i]);
+                }
+                String name = TexasHold_em.categoryName(category);
+                benchmarks.run("evaluateHand.list." + name, i -> TexasHold_em.evaluateHand(lists.get(i))[1].length());
+                benchmarks.run("evaluateHand.mask." + name, i -> TexasHold_em.evaluateHand(masks[i]));
+                benchmarks.run("evaluateHand.table." + name, i -> HandRankTable.evaluate(hands[i]));
+                int[] five = new int[5];
+                benchmarks.run("bestFiveCards." + name, i -> TexasHold_em.bestFiveCards(masks[i], five) + five[4]);
+            }
+        }
+
+        // choosing the winners of tables of different sizes from already evaluated hands
+        if (benchmarks.runs("chooseWinner.")) {
+            Random random = new Random(seed);
+            for (int numPlayers : new int[] {2, 9, 23}) {
+                ArrayList<HashMap<Integer, String[]>> plays = new ArrayList<>();
+                int[][] strengths = new int[SAMPLES][numPlayers];
+                Deal deal = new Deal();
+                for (int i = 0; i < SAMPLES; i++) {
+                    randomDeal(random, numPlayers, deal);
+                    HashMap<Integer, String[]> play = new HashMap<>();
+                    for (int seat = 0; seat < numPlayers; seat++) {
+                        int[] cards = new int[7];
+                        System.arraycopy(deal.getBoard(), 0, cards, 0, Deal.BOARD_SIZE);
+                        System.arraycopy(deal.getHoleCards(), 2 * seat, cards, Deal.BOARD_SIZE, Deal.HOLE_SIZE);
+                        play.put(seat, TexasHold_em.evaluateHand(toCardList(cards)));
+                        strengths[i][seat] = TexasHold_em.evaluateHand(cards);
+                    }
+                    plays.add(play);
+                }
+                benchmarks.run("chooseWinner.map.players_" + numPlayers, i -> TexasHold_em.chooseWinner(plays.get(i)).size());
+                benchmarks.run("chooseWinner.strengths.players_" + numPlayers, i -> TexasHold_em.chooseWinner(strengths[i]));
+            }
+        }
+
+        // judging the same deals with each of the engines, see HandEvaluator
+        if (benchmarks.runs("judge.", "showdown.")) {
+            Random random = new Random(seed);
+            Deal[] deals = new Deal[SAMPLES];
+            for (int i = 0; i < SAMPLES; i++) {
+                deals[i] = new Deal();
+                randomDeal(random, 9, deals[i]);
+            }
+            for (String engine : HandEvaluator.ENGINES) {
+                HandEvaluator evaluator = HandEvaluator.create(engine);
+                benchmarks.run("judge." + engine + ".players_9", i -> TexasHold_em.judge(deals[i], evaluator, seatStrengths));
+            }
+            // the same deals again, skipping the seats that can't win, see Showdown
+            for (String engine : HandEvaluator.ENGINES) {
+                HandEvaluator evaluator = HandEvaluator.create(engine);
+                benchmarks.run("showdown." + engine + ".players_9", i -> Showdown.judge(deals[i], evaluator, seatStrengths));
+            }
+        }
+
+        // parsing a line of five cards
+        if (benchmarks.runs("listOfCards.")) {
+            Random random = new Random(seed);
+            String[] boards = new String[SAMPLES];
+            int[] deck = newDeck();
+            for (int i = 0; i < SAMPLES; i++) {
+                shuffle(random, deck, Deal.BOARD_SIZE);
+                int[] board = new int[Deal.BOARD_SIZE];
+                System.arraycopy(deck, 0, board, 0, Deal.BOARD_SIZE);
+                boards[i] = toText(board);
+            }
+            benchmarks.run("listOfCards.board", i -> TexasHold_em.listOfCards(boards[i]).size());
+        }
+
+        // reading, judging and writing whole deals: one run of the batch judger handles all
+        // SAMPLES deals and counts as SAMPLES operations, so the score is in deals per second
+        if (benchmarks.runs("judgeDeals.")) {
+            Random random = new Random(seed);
+            for (int numPlayers : new int[] {2, 9, 23}) {
+                StringBuilder text = new StringBuilder();
+                Deal deal = new Deal();
+                for (int i = 0; i < SAMPLES; i++) {
+                    randomDeal(random, numPlayers, deal);
+                    text.append(deal).append('\n');
+                }
+                byte[] input = text.toString().getBytes(StandardCharsets.US_ASCII);
+                OutputStream discard = new ByteArrayOutputStream() {
+                    public void write(byte[] b, int off, int len) {
+                    }
+                };
+                benchmarks.run("judgeDeals.players_" + numPlayers,
+                        i -> i == 0 ? BatchJudger.run(new ByteArrayInputStream(input), discard) : 0);
+            }
+        }
+
+        // judging 9-player Omaha deals with four hole cards with each of the engines
+        if (benchmarks.runs("judgeOmaha.")) {
+            Random random = new Random(seed);
+            Deal[] omahaDeals = new Deal[SAMPLES];
+            for (int i = 0; i < SAMPLES; i++) {
+                omahaDeals[i] = new Deal();
+                randomDeal(random, 9, Deal.OMAHA, 4, omahaDeals[i]);
+            }
+            for (String engine : HandEvaluator.ENGINES) {
+                HandEvaluator evaluator = HandEvaluator.create(engine);
+                benchmarks.run("judgeOmaha." + engine + ".players_9",
+                        i -> TexasHold_em.judge(omahaDeals[i], evaluator, seatStrengths));
+            }
+        }
+
+        // judging 9-player short-deck deals with each of the engines
+        if (benchmarks.runs("judgeShortDeck.")) {
+            Random random = new Random(seed);
+            Deal[] shortDeckDeals = new Deal[SAMPLES];
+            for (int i = 0; i < SAMPLES; i++) {
+                shortDeckDeals[i] = new Deal();
+                randomDeal(random, 9, Deal.SHORT_DECK, Deal.HOLE_SIZE, shortDeckDeals[i]);
+            }
+            for (String engine : HandEvaluator.ENGINES) {
+                HandEvaluator evaluator = HandEvaluator.create(engine);
+                benchmarks.run("judgeShortDeck." + engine + ".players_9",
+                        i -> TexasHold_em.judge(shortDeckDeals[i], evaluator, seatStrengths));
+            }
+        }
+
+        // judging and showing down 23-player deals with each of the engines
+        if (benchmarks.runs("judge.", "showdown.")) {
+            Random random = new Random(seed);
+            Deal[] largeDeals = new Deal[SAMPLES];
+            for (int i = 0; i < SAMPLES; i++) {
+                largeDeals[i] = new Deal();
+                randomDeal(random, Deal.MAX_PLAYERS, largeDeals[i]);
+            }
+            for (String engine : HandEvaluator.ENGINES) {
+                HandEvaluator evaluator = HandEvaluator.create(engine);
+                benchmarks.run("judge." + engine + ".players_23",
+                        i -> TexasHold_em.judge(largeDeals[i], evaluator, seatStrengths));
+                benchmarks.run("showdown." + engine + ".players_23",
+                        i -> Showdown.judge(largeDeals[i], evaluator, seatStrengths));
+            }
+        }
+
+        // dealing 9-player deals from a DealGenerator, and writing them in the text format
+        if (benchmarks.runs("generate")) {
+            DealGenerator generator = new DealGenerator(seed, 9);
+            Deal generated = new Deal();
+            byte[] generatedText = new byte[DealGenerator.MAX_TEXT_SIZE];
+            benchmarks.run("generate.players_9", i -> generator.next(generated) ? generated.getBoard()[0] : 0);
+            benchmarks.run("generateText.players_9", i -> {
+                generator.next(generated);
+                return DealGenerator.writeText(generated, generatedText, 0);
+            });
+        }
+    }
+}
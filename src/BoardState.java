@@ -0,0 +1,249 @@
+/***************************** BOARD STATE *****************************
+ * The five community cards of a deal, preprocessed once so that the
+ * best hand of each player can be found by adding only their two hole
+ * cards.
+ *
+ * The state holds the sums of the community cards' rank and suit keys
+ * (see HandRankTable.rankKey()) and their card mask. If no suit has at
+ * least three community cards, no player can make a flush, and players
+ * are evaluated from their ranks alone.
+ *
+ * A BoardState is reusable: set() overwrites it with the next board.
+ * It is also the "lookup" HandEvaluator, which sets itself to the board
+ * of each deal it evaluates, and hands Omaha deals to an OmahaBoard.
+ * Short-deck deals are evaluated the same way from ShortDeckTable.
+ * prepare() and evaluateSeat() do the same one seat at a time, though a
+ * seat is looked up faster than Showdown can bound it, so Showdown
+ * evaluates every seat with this engine (see isCheaperThanBound()).
+ *
+ ***********************************************************************
+ */
+public class BoardState implements HandEvaluator {
+
+
+    /********************************************************
+     ************** PRIVATE CLASS VARIABLES *****************
+     ********************************************************/
+    // adding 5 to a 4-bit suit counter of 3 or more sets its highest bit
+    private static final int THREE_SUITED_ADJUST = 0x5555;
+    private static final int SUIT_CHECK = 0x8888;
+
+
+    /********************************************************
+     ************** PRIVATE INSTANCE VARIABLES *****************
+     ********************************************************/
+    private int rankKey; // sum of the rank keys of the community cards (ShortDeckTable's for short deck)
+    private int suitKey; // sum of their suit keys
+    private long cardMask;
+    private boolean flushPossible; // whether some suit has three or more community cards
+    private OmahaBoard omaha; // created for the first Omaha deal
+
+
+    /*********************************************************
+     **************** PUBLIC INSTANCE METHODS ****************
+     *********************************************************/
+
+    /**
+     * Sets this state to the five community cards given as card ids
+     *
+     * @param board
+     * @return this BoardState
+     */
+    public BoardState set(int[] board) {
+        return set(board[0], board[1], board[2], board[3], board[4]);
+    }
+
+    /**
+     * Sets this state to the five given community cards
+     *
+     * @param c1
+     * @param c2
+     * @param c3
+     * @param c4
+     * @param c5
+     * @return this BoardState
+     */
+    public BoardState set(int c1, int c2, int c3, int c4, int c5) {
+        rankKey = HandRankTable.rankKey(c1) + HandRankTable.rankKey(c2) + HandRankTable.rankKey(c3)
+                + HandRankTable.rankKey(c4) + HandRankTable.rankKey(c5);
+        suitKey = HandRankTable.suitKey(c1) + HandRankTable.suitKey(c2) + HandRankTable.suitKey(c3)
+                + HandRankTable.suitKey(c4) + HandRankTable.suitKey(c5);
+        cardMask = 1L << c1 | 1L << c2 | 1L << c3 | 1L << c4 | 1L << c5;
+        flushPossible = ((suitKey + THREE_SUITED_ADJUST) & SUIT_CHECK) != 0;
+        return this;
+    }
+
+    /**
+     * Returns the strength of the best hand of a player with the given hole cards, see
+     * HandRankTable.evaluate()
+     *
+     * @param hole1
+     * @param hole2
+     * @return int
+     */
+    public int evaluate(int hole1, int hole2) {
+        int key = rankKey + HandRankTable.rankKey(hole1) + HandRankTable.rankKey(hole2);
+        if (!flushPossible) {
+            return HandRankTable.evaluateRanks(key);
+        }
+        return HandRankTable.evaluate(key, suitKey + HandRankTable.suitKey(hole1) + HandRankTable.suitKey(hole2),
+                cardMask | 1L << hole1 | 1L << hole2);
+    }
+
+    /**
+     * Returns the strength of the best hand that can be made from the cards in a card mask,
+     * regardless of the board this state is set to, see HandRankTable.evaluate()
+     *
+     * @param cardMask
+     * @return int
+     */
+    public int evaluate(long cardMask) {
+        return HandRankTable.evaluate(cardMask);
+    }
+
+    /**
+     * Same as evaluate(long) for short-deck Hold'em, see ShortDeckTable.evaluate()
+     *
+     * @param cardMask
+     * @return int
+     */
+    public int evaluateShortDeck(long cardMask) {
+        return ShortDeckTable.evaluate(cardMask);
+    }
+
+    /**
+     * Sets this state to the board of a deal and fills in the strength of each seat's best hand
+     *
+     * @param deal
+     * @param strengths must have room for every seat; overwritten
+     */
+    public void evaluate(Deal deal, int[] strengths) {
+        if (deal.getVariant() == Deal.OMAHA) {
+            if (omaha == null) {
+                omaha = new OmahaBoard();
+            }
+            omaha.evaluate(deal, strengths);
+            return;
+        }
+        if (deal.getVariant() == Deal.SHORT_DECK) {
+            setShortDeck(deal.getBoard());
+            int[] holeCards = deal.getHoleCards();
+            for (int seat = 0; seat < deal.getNumPlayers(); seat++) {
+                strengths[seat] = evaluateShortDeck(holeCards[2 * seat], holeCards[2 * seat + 1]);
+            }
+            return;
+        }
+        set(deal.getBoard());
+        int[] holeCards = deal.getHoleCards();
+        int numPlayers = deal.getNumPlayers();
+        for (int seat = 0; seat < numPlayers; seat++) {
+            strengths[seat] = evaluate(holeCards[2 * seat], holeCards[2 * seat + 1]);
+        }
+    }
+
+    /**
+     * Sets this state, or its OmahaBoard, to the board of a deal, for evaluateSeat()
+     *
+     * @param deal
+     */
+    public void prepare(Deal deal) {
+        if (deal.getVariant() == Deal.OMAHA) {
+            if (omaha == null) {
+                omaha = new OmahaBoard();
+            }
+            omaha.set(deal.getBoard());
+        } else if (deal.getVariant() == Deal.SHORT_DECK) {
+            setShortDeck(deal.getBoard());
+        } else {
+            set(deal.getBoard());
+        }
+    }
+
+    /**
+     * Returns the strength of the best hand of one seat of the deal this state was prepared
+     * for
+     *
+     * @param deal
+     * @param seat
+     * @return int
+     */
+    public int evaluateSeat(Deal deal, int seat) {
+        int[] holeCards = deal.getHoleCards();
+        if (deal.getVariant() == Deal.OMAHA) {
+            return omaha.evaluate(holeCards, deal.getHoleSize() * seat, deal.getHoleSize());
+        } else if (deal.getVariant() == Deal.SHORT_DECK) {
+            return evaluateShortDeck(holeCards[2 * seat], holeCards[2 * seat + 1]);
+        }
+        return evaluate(holeCards[2 * seat], holeCards[2 * seat + 1]);
+    }
+
+    /**
+     * Returns true: a seat of any variant takes a few table lookups, fewer operations than its
+     * Showdown bound
+     *
+     * @param variant
+     * @return boolean
+     */
+    public boolean isCheaperThanBound(int variant) {
+        return true;
+    }
+
+    /**
+     * Getter to return the community cards as a card mask
+     *
+     * @return long
+     */
+    public long getCardMask() {
+        return cardMask;
+    }
+
+    /**
+     * Returns whether a flush can be made with this board, i.e. whether some suit has at
+     * least three community cards
+     *
+     * @return boolean
+     */
+    public boolean isFlushPossible() {
+        return flushPossible;
+    }
+
+
+
+    /*********************************************************
+     *************** PRIVATE INSTANCE METHODS ****************
+     *********************************************************/
+
+    /**
+     * Sets this state to the community cards of a short-deck deal, with the keys of
+     * ShortDeckTable in place of those of HandRankTable
+     *
+     * @param board
+     */
+    private void setShortDeck(int[] board) {
+        rankKey = 0;
+        suitKey = 0;
+        cardMask = 0L;
+        for (int i = 0; i < Deal.BOARD_SIZE; i++) {
+            rankKey += ShortDeckTable.rankKey(board[i]);
+            suitKey += ShortDeckTable.suitKey(board[i]);
+            cardMask |= 1L << board[i];
+        }
+        flushPossible = ((suitKey + THREE_SUITED_ADJUST) & SUIT_CHECK) != 0;
+    }
+
+    /**
+     * Same as evaluate(int, int) once set to a short-deck board with setShortDeck()
+     *
+     * @param hole1
+     * @param hole2
+     * @return
+     */
+    private int evaluateShortDeck(int hole1, int hole2) {
+        int key = rankKey + ShortDeckTable.rankKey(hole1) + ShortDeckTable.rankKey(hole2);
+        if (!flushPossible) {
+            return ShortDeckTable.evaluateRanks(key);
+        }
+        return ShortDeckTable.evaluate(key, suitKey + ShortDeckTable.suitKey(hole1) + ShortDeckTable.suitKey(hole2),
+                cardMask | 1L << hole1 | 1L << hole2);
+    }
+}
@@ -6,16 +6,49 @@ import java.util.Comparator;
  * This file creates a Card object and two Comparators: suit comparator
  * rank comparator for comparing a card's suit and rank.
  *
+ * Every card of the deck also has a primitive id from 0 to 51, laid out
+ * as suitIndex * 13 + rankIndex (suits c, d, h, s and ranks 2, 3, ..., K, A),
+ * so a set of cards fits in a single long with one bit per card and each
+ * suit occupying its own 13 bits. The 52 Card objects for those ids are
+ * created once and shared, see Card.of().
+ *
  ***********************************************************************
  */
 public class Card {
 
 
+    /********************************************************
+     ************** PUBLIC CLASS VARIABLES ******************
+     ********************************************************/
+    public static final int NUM_CARDS = 52;
+    public static final int NUM_RANKS = 13;
+    public static final int NUM_SUITS = 4;
+
+
+    /********************************************************
+     ************** PRIVATE CLASS VARIABLES *****************
+     ********************************************************/
+    private static final String VALUES = "23456789TJQKA"; // indexed by rank index
+    private static final String SUITS = "cdhs"; // indexed by suit index
+
+    // the shared instances, indexed by card id
+    private static final Card[] DECK = new Card[NUM_CARDS];
+
+    static {
+        for (int id = 0; id < NUM_CARDS; id++) {
+            DECK[id] = new Card(String.valueOf(VALUES.charAt(id % NUM_RANKS)).intern(),
+                    String.valueOf(SUITS.charAt(id / NUM_RANKS)).intern());
+        }
+    }
+
+
     /********************************************************
      ************** PRIVATE INSTANCE VARIABLES *****************
      ********************************************************/
     private String val; // the numerical value of the card
     private String st; // the suit
+    private final int id; // 0 - 51, or -1 if value or suit is not a valid card
+    private final int rank; // A:1, 2:2, ..., K:13, see getRank()
 
 
     /********************************************************
@@ -31,6 +64,126 @@ public class Card {
         val = value;
         st = suit;
 
+        if (value.length() == 1 && suit.length() == 1) {
+            id = id(value.charAt(0), suit.charAt(0));
+        } else {
+            id = -1;
+        }
+        rank = id < 0 ? -1 : rankOf(id);
+    }
+
+
+    /*********************************************************
+     ****************** PUBLIC CLASS METHODS *****************
+     *********************************************************/
+
+    /**
+     * Returns the shared Card instance for the given card id
+     *
+     * @param id
+     * @return Card
+     */
+    public static Card of(int id) {
+        return DECK[id];
+    }
+
+    /**
+     * Returns the shared Card instance for a value and suit character such as 'T' and 'h',
+     * without creating any objects
+     *
+     * @param value
+     * @param suit
+     * @return Card
+     */
+    public static Card of(char value, char suit) {
+        int id = id(value, suit);
+        if (id < 0) {
+            throw new IllegalArgumentException("Not a card: " + value + suit);
+        }
+        return DECK[id];
+    }
+
+    /**
+     * Returns the id of the card with the given value and suit characters, or -1 if they
+     * don't represent a card
+     *
+     * @param value
+     * @param suit
+     * @return int
+     */
+    public static int id(char value, char suit) {
+        int rankIndex = rankIndex(value);
+        int suitIndex = suitIndex(suit);
+        if (rankIndex < 0 || suitIndex < 0) {
+            return -1;
+        }
+        return id(rankIndex, suitIndex);
+    }
+
+    /**
+     * Returns the id of the card with the given rank index (2:0, ..., K:11, A:12) and
+     * suit index (c:0, d:1, h:2, s:3)
+     *
+     * @param rankIndex
+     * @param suitIndex
+     * @return int
+     */
+    public static int id(int rankIndex, int suitIndex) {
+        return suitIndex * NUM_RANKS + rankIndex;
+    }
+
+    /**
+     * Returns the rank index (2:0, ..., K:11, A:12) of a value character, or -1
+     *
+     * @param value
+     * @return int
+     */
+    public static int rankIndex(char value) {
+        return VALUES.indexOf(value);
+    }
+
+    /**
+     * Returns the suit index (c:0, d:1, h:2, s:3) of a suit character, or -1
+     *
+     * @param suit
+     * @return int
+     */
+    public static int suitIndex(char suit) {
+        return SUITS.indexOf(suit);
+    }
+
+    /**
+     * Returns the value character of a card id, e.g. 'T', the inverse of rankIndex()
+     *
+     * @param id
+     * @return char
+     */
+    public static char valueChar(int id) {
+        return VALUES.charAt(id % NUM_RANKS);
+    }
+
+    /**
+     * Returns the suit character of a card id, e.g. 'h', the inverse of suitIndex()
+     *
+     * @param id
+     * @return char
+     */
+    public static char suitChar(int id) {
+        return SUITS.charAt(id / NUM_RANKS);
+    }
+
+    /**
+     * Returns a bit mask with one bit set for each of the given card ids
+     *
+     * @param ids
+     * @return long
+     */
+    public static long mask(int[] ids) {
+        long mask = 0L;
+        for (int id : ids) {
+            mask |= 1L << id;
+        }
+        return mask;
     }
 
 
@@ -47,6 +200,24 @@ public class Card {
         return val;
     }
 
+    /**
+     * Getter to return the id (0 - 51) of this Card object, -1 if it isn't a valid card
+     *
+     * @return int
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Getter to return this card as a bit mask, see Card.mask()
+     *
+     * @return long
+     */
+    public long getMask() {
+        return 1L << id;
+    }
+
     /**
      * Getter to return the rank of this Card object
      * The rank is simply a numeric representation of the value
@@ -55,6 +226,9 @@ public class Card {
      * @return
      */
     public int getRank() {
+        if (id >= 0) {
+            return rank;
+        }
         int rank;
         if (val.equals("A"))
             rank = 1;
@@ -89,7 +263,9 @@ public class Card {
      */
     public int getSuitRank() {
         // clubs, diamonds, hearts, spades
-        if (st.equals("c")) {
+        if (id >= 0) {
+            return id / NUM_RANKS + 1;
+        } else if (st.equals("c")) {
             return 1;
         } else if (st.equals("d"))
             return 2;
@@ -109,6 +285,22 @@ public class Card {
     }
 
 
+    /*********************************************************
+     ****************** PRIVATE CLASS METHODS ****************
+     *********************************************************/
+
+    /**
+     * Converts a card id to the rank used by getRank(), A:1, 2:2, ..., K:13
+     *
+     * @param id
+     * @return int
+     */
+    private static int rankOf(int id) {
+        int rankIndex = id % NUM_RANKS;
+        return rankIndex == NUM_RANKS - 1 ? 1 : rankIndex + 2;
+    }
+
+
     /*********************************************************
      ****************** MAIN METHOD **************************
      *********************************************************/
@@ -0,0 +1,336 @@
+/********************************* DEAL ********************************
+ * A deal to be judged: the community cards and, for every seat, the id
+ * of the player and their hole cards, all kept as card ids (see
+ * Card.getId()) in primitive arrays.
+ *
+ * A deal can also say how many chips each seat put in the pot and which
+ * seats folded, for settling pots (see PotSettler); both are 0 unless
+ * given in the input.
+ *
+ * A deal is of Texas Hold'em unless it says otherwise: in Omaha every
+ * player gets from four to six hole cards and must use exactly two of
+ * them (see OmahaBoard). The hole cards of all seats are kept in one
+ * array, getHoleSize() cards per seat. Short-deck Hold'em is dealt from
+ * the 36 cards from the six up (see deckMask()) and ranks hands a little
+ * differently (see TexasHold_em.evaluateShortDeckHand()).
+ *
+ * A Deal is meant to be reused: readers fill in the same arrays deal
+ * after deal, so judging a stream of deals creates no objects.
+ *
+ ***********************************************************************
+ */
+public class Deal {
+
+
+    /********************************************************
+     ************** PUBLIC CLASS VARIABLES ******************
+     ********************************************************/
+    public static final int MAX_PLAYERS = 23;
+    public static final int BOARD_SIZE = 5;
+    public static final int HOLE_SIZE = 2;
+    public static final int MAX_HOLE_SIZE = 6;
+
+    // variants, see getVariant()
+    public static final int HOLDEM = 0;
+    public static final int OMAHA = 1;
+    public static final int SHORT_DECK = 2;
+    public static final int NUM_VARIANTS = 3;
+
+
+    /********************************************************
+     ************** PRIVATE CLASS VARIABLES *****************
+     ********************************************************/
+    private static final String[] VARIANT_NAMES = {"holdem", "omaha", "shortdeck"};
+    // the fewest and most hole cards of each variant; the first is the default
+    private static final int[] MIN_HOLE_SIZES = {HOLE_SIZE, 4, HOLE_SIZE};
+    private static final int[] MAX_HOLE_SIZES = {HOLE_SIZE, MAX_HOLE_SIZE, HOLE_SIZE};
+    private static final long FULL_DECK = (1L << Card.NUM_CARDS) - 1;
+    // the 2 - 5 of every suit: 0xF repeated every 13 bits
+    private static final long LOW_CARDS = 0xFL * (1L | 1L << 13 | 1L << 26 | 1L << 39);
+    // the cards each variant is dealt from, as card masks
+    private static final long[] DECKS = {FULL_DECK, FULL_DECK, FULL_DECK & ~LOW_CARDS};
+
+
+    /********************************************************
+     ************** PRIVATE INSTANCE VARIABLES *****************
+     ********************************************************/
+    private int numPlayers;
+    private int variant = HOLDEM;
+    private int holeSize = HOLE_SIZE; // hole cards per seat
+    private final int[] board = new int[BOARD_SIZE]; // community card ids
+    private final int[] playerIds = new int[MAX_PLAYERS]; // player id by seat
+    private final int[] holeCards = new int[MAX_PLAYERS * MAX_HOLE_SIZE]; // seat i holds holeSize * i on
+    private final long[] contributions = new long[MAX_PLAYERS]; // chips put in the pot by seat
+    private long folded; // bit i set if seat i folded
+
+
+    /*********************************************************
+     **************** PUBLIC INSTANCE METHODS ****************
+     *********************************************************/
+
+    /**
+     * Getter to return the number of players in this deal
+     *
+     * @return int
+     */
+    public int getNumPlayers() {
+        return numPlayers;
+    }
+
+    /**
+     * Setter for the number of players, 1 to MAX_PLAYERS
+     *
+     * @param numPlayers
+     */
+    public void setNumPlayers(int numPlayers) {
+        this.numPlayers = numPlayers;
+    }
+
+    /**
+     * Getter to return the variant of poker this deal is played in, HOLDEM, OMAHA or SHORT_DECK
+     *
+     * @return int
+     */
+    public int getVariant() {
+        return variant;
+    }
+
+    /**
+     * Getter to return the number of hole cards of every seat
+     *
+     * @return int
+     */
+    public int getHoleSize() {
+        return holeSize;
+    }
+
+    /**
+     * Setter for the variant and the number of hole cards of every seat, which must be
+     * between minHoleSize(variant) and maxHoleSize(variant)
+     *
+     * @param variant
+     * @param holeSize
+     */
+    public void setVariant(int variant, int holeSize) {
+        if (variant < 0 || variant >= NUM_VARIANTS || holeSize < MIN_HOLE_SIZES[variant]
+                || holeSize > MAX_HOLE_SIZES[variant]) {
+            throw new IllegalArgumentException("No " + variantName(variant) + " deal has " + holeSize
+                    + " hole cards");
+        }
+        this.variant = variant;
+        this.holeSize = holeSize;
+    }
+
+    /**
+     * Returns the array holding the ids of the community cards. The array is owned by this
+     * deal and is filled in place.
+     *
+     * @return int[]
+     */
+    public int[] getBoard() {
+        return board;
+    }
+
+    /**
+     * Returns the array holding the player id of each seat
+     *
+     * @return int[]
+     */
+    public int[] getPlayerIds() {
+        return playerIds;
+    }
+
+    /**
+     * Returns the array holding the hole card ids, seat i holding the getHoleSize() cards
+     * from getHoleSize() * i on, i.e. those at 2i and 2i+1 in Hold'em
+     *
+     * @return int[]
+     */
+    public int[] getHoleCards() {
+        return holeCards;
+    }
+
+    /**
+     * Returns the hole cards of a seat as a card mask (see Card.mask())
+     *
+     * @param seat
+     * @return long
+     */
+    public long getHoleMask(int seat) {
+        long mask = 0L;
+        for (int i = holeSize * seat; i < holeSize * (seat + 1); i++) {
+            mask |= 1L << holeCards[i];
+        }
+        return mask;
+    }
+
+    /**
+     * Returns the array holding the number of chips each seat put in the pot
+     *
+     * @return long[]
+     */
+    public long[] getContributions() {
+        return contributions;
+    }
+
+    /**
+     * Getter to return the seats that folded, as a bit mask with bit i set for seat i
+     *
+     * @return long
+     */
+    public long getFolded() {
+        return folded;
+    }
+
+    /**
+     * Setter for the seats that folded
+     *
+     * @param folded
+     */
+    public void setFolded(long folded) {
+        this.folded = folded;
+    }
+
+    /**
+     * Returns the community cards as a card mask (see Card.mask())
+     *
+     * @return long
+     */
+    public long getBoardMask() {
+        long mask = 0L;
+        for (int i = 0; i < BOARD_SIZE; i++) {
+            mask |= 1L << board[i];
+        }
+        return mask;
+    }
+
+    /**
+     * Copies another deal into this one
+     *
+     * @param other
+     */
+    public void copyFrom(Deal other) {
+        numPlayers = other.numPlayers;
+        variant = other.variant;
+        holeSize = other.holeSize;
+        System.arraycopy(other.board, 0, board, 0, BOARD_SIZE);
+        System.arraycopy(other.playerIds, 0, playerIds, 0, numPlayers);
+        System.arraycopy(other.holeCards, 0, holeCards, 0, numPlayers * holeSize);
+        System.arraycopy(other.contributions, 0, contributions, 0, numPlayers);
+        folded = other.folded;
+    }
+
+    /**
+     * String representation of a Deal in the input format described in the README, with
+     * the contributions and folds if there are any
+     *
+     * @return String
+     */
+    public String toString() {
+        boolean stakes = folded != 0;
+        for (int seat = 0; seat < numPlayers; seat++) {
+            stakes |= contributions[seat] != 0;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(numPlayers);
+        if (variant != HOLDEM) {
+            sb.append(' ').append(VARIANT_NAMES[variant]);
+            if (holeSize != MIN_HOLE_SIZES[variant]) {
+                sb.append(' ').append(holeSize);
+            }
+        }
+        sb.append('\n');
+        for (int i = 0; i < BOARD_SIZE; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(Card.of(board[i]));
+        }
+        for (int seat = 0; seat < numPlayers; seat++) {
+            sb.append('\n').append(playerIds[seat]);
+            for (int i = 0; i < holeSize; i++) {
+                sb.append(' ').append(Card.of(holeCards[seat * holeSize + i]));
+            }
+            if (stakes) {
+                sb.append(' ').append(contributions[seat]);
+                if ((folded & 1L << seat) != 0) {
+                    sb.append(" f");
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+
+    /*********************************************************
+     ****************** PUBLIC CLASS METHODS *****************
+     *********************************************************/
+
+    /**
+     * Returns the name of a variant as written in the input, e.g. "omaha"
+     *
+     * @param variant
+     * @return String
+     */
+    public static String variantName(int variant) {
+        return variant >= 0 && variant < NUM_VARIANTS ? VARIANT_NAMES[variant] : "unknown";
+    }
+
+    /**
+     * Returns the variant with the given name, or -1 if there is none
+     *
+     * @param name
+     * @return int
+     */
+    public static int variantOf(String name) {
+        for (int variant = 0; variant < NUM_VARIANTS; variant++) {
+            if (VARIANT_NAMES[variant].equals(name)) {
+                return variant;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the fewest hole cards a seat can have in a variant, which is also the number
+     * it has unless the input says otherwise
+     *
+     * @param variant
+     * @return int
+     */
+    public static int minHoleSize(int variant) {
+        return MIN_HOLE_SIZES[variant];
+    }
+
+    /**
+     * Returns the most hole cards a seat can have in a variant
+     *
+     * @param variant
+     * @return int
+     */
+    public static int maxHoleSize(int variant) {
+        return MAX_HOLE_SIZES[variant];
+    }
+
+    /**
+     * Returns the cards a variant is dealt from as a card mask (see Card.mask()): every card,
+     * or the sixes up for short deck
+     *
+     * @param variant
+     * @return long
+     */
+    public static long deckMask(int variant) {
+        return DECKS[variant];
+    }
+
+    /**
+     * Returns the number of cards a variant is dealt from, 52 or 36
+     *
+     * @param variant
+     * @return int
+     */
+    public static int deckSize(int variant) {
+        return Long.bitCount(DECKS[variant]);
+    }
+}
@@ -0,0 +1,343 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+
+/*************************** DEAL GENERATOR ****************************
+ * Deals random showdowns, for load tests and for sample inputs of any
+ * size:
+ *
+ *     java DealGenerator <count> [--players n or min-max] [--variant name]
+ *                        [--hole-cards n] [--seed n] [--history file]
+ *
+ * writes count deals in the input format described in the README to
+ * stdout, or to a hand history file (see HandHistoryWriter) with
+ * --history. Every deal has between min and max players, 9 by default,
+ * with player ids 0 up in seat order, and no one folds.
+ *
+ * Deals are shuffled from a SplittableRandom, so the same seed always
+ * gives the same deals. A generator is not thread safe; split() gives
+ * each thread a generator of its own, whose deals are set by the seed
+ * and the order in which the generators were split off. Deals are
+ * written into a reused Deal and the deck is a reused array, so dealing
+ * creates no objects and takes well under a microsecond.
+ *
+ ***********************************************************************
+ */
+public class DealGenerator implements DealSource {
+
+
+    /********************************************************
+     ************** PUBLIC CLASS VARIABLES ******************
+     ********************************************************/
+    public static final int DEFAULT_PLAYERS = 9;
+    // longest deal in the text format: a header with variant and hole cards, the board and,
+    // for every seat, an id of up to 11 characters and its hole cards
+    public static final int MAX_TEXT_SIZE = 32 + 3 * Deal.BOARD_SIZE
+            + Deal.MAX_PLAYERS * (12 + 3 * Deal.MAX_HOLE_SIZE);
+
+
+    /********************************************************
+     ************** PRIVATE CLASS VARIABLES *****************
+     ********************************************************/
+    private static final int BUFFER_SIZE = 1 << 16;
+
+
+    /********************************************************
+     ************** PRIVATE INSTANCE VARIABLES *****************
+     ********************************************************/
+    private final SplittableRandom random;
+    private final int minPlayers;
+    private final int maxPlayers;
+    private final int variant;
+    private final int holeSize; // hole cards per seat
+    private final int[] deck; // card ids, shuffled in place deal after deal
+
+
+    /********************************************************
+     ******************** CONSTRUCTOR ***********************
+     ********************************************************/
+
+    /**
+     * Constructor that creates a DealGenerator of Hold'em deals for a fixed number of players
+     *
+     * @param seed
+     * @param numPlayers
+     */
+    public DealGenerator(long seed, int numPlayers) {
+        this(new SplittableRandom(seed), numPlayers, numPlayers, Deal.HOLDEM, Deal.HOLE_SIZE);
+    }
+
+    /**
+     * Constructor that creates a DealGenerator of deals of a variant, each for a number of
+     * players drawn evenly from minPlayers to maxPlayers
+     *
+     * @param seed
+     * @param minPlayers
+     * @param maxPlayers
+     * @param variant
+     * @param holeSize hole cards per seat, from Deal.minHoleSize(variant) to Deal.maxHoleSize(variant)
+     * @throws IllegalArgumentException if the variant has no such number of hole cards, or
+     *                                  maxPlayers don't fit in its deck
+     */
+    public DealGenerator(long seed, int minPlayers, int maxPlayers, int variant, int holeSize) {
+        this(new SplittableRandom(seed), minPlayers, maxPlayers, variant, holeSize);
+    }
+
+    private DealGenerator(SplittableRandom random, int minPlayers, int maxPlayers, int variant, int holeSize) {
+        if (variant < 0 || variant >= Deal.NUM_VARIANTS || holeSize < Deal.minHoleSize(variant)
+                || holeSize > Deal.maxHoleSize(variant)) {
+            throw new IllegalArgumentException("No " + Deal.variantName(variant) + " deal has " + holeSize
+                    + " hole cards");
+        }
+        if (minPlayers < 1 || minPlayers > maxPlayers || maxPlayers > Deal.MAX_PLAYERS
+                || Deal.BOARD_SIZE + maxPlayers * holeSize > Deal.deckSize(variant)) {
+            throw new IllegalArgumentException("Can't deal " + Deal.variantName(variant) + " to " + minPlayers
+                    + " - " + maxPlayers + " players");
+        }
+        this.random = random;
+        this.minPlayers = minPlayers;
+        this.maxPlayers = maxPlayers;
+        this.variant = variant;
+        this.holeSize = holeSize;
+        this.deck = new int[Deal.deckSize(variant)];
+        int n = 0;
+        for (long cards = Deal.deckMask(variant); cards != 0; cards &= cards - 1) {
+            deck[n++] = Long.numberOfTrailingZeros(cards);
+        }
+    }
+
+
+    /*********************************************************
+     **************** PUBLIC INSTANCE METHODS ****************
+     *********************************************************/
+
+    /**
+     * Deals the next deal into the given Deal. There is always a next deal.
+     *
+     * @param deal
+     * @return true
+     */
+    public boolean next(Deal deal) {
+        int numPlayers = minPlayers == maxPlayers ? minPlayers
+                : minPlayers + random.nextInt(maxPlayers - minPlayers + 1);
+        int numCards = Deal.BOARD_SIZE + numPlayers * holeSize;
+        // a partial Fisher-Yates shuffle: only the cards dealt are drawn
+        for (int i = 0; i < numCards; i++) {
+            int j = i + random.nextInt(deck.length - i);
+            int card = deck[j];
+            deck[j] = deck[i];
+            deck[i] = card;
+        }
+
+        deal.setNumPlayers(numPlayers);
+        deal.setVariant(variant, holeSize);
+        System.arraycopy(deck, 0, deal.getBoard(), 0, Deal.BOARD_SIZE);
+        System.arraycopy(deck, Deal.BOARD_SIZE, deal.getHoleCards(), 0, numPlayers * holeSize);
+        int[] playerIds = deal.getPlayerIds();
+        long[] contributions = deal.getContributions();
+        for (int seat = 0; seat < numPlayers; seat++) {
+            playerIds[seat] = seat;
+            contributions[seat] = 0L;
+        }
+        deal.setFolded(0L);
+        return true;
+    }
+
+    /**
+     * Returns a new generator of deals like this one's, from a random generator split off
+     * this one's (see SplittableRandom.split()), for another thread to use
+     *
+     * @return DealGenerator
+     */
+    public DealGenerator split() {
+        return new DealGenerator(random.split(), minPlayers, maxPlayers, variant, holeSize);
+    }
+
+    /**
+     * Getter to return the most players a deal of this generator can have
+     *
+     * @return int
+     */
+    public int getMaxPlayers() {
+        return maxPlayers;
+    }
+
+
+    /*********************************************************
+     ****************** PUBLIC CLASS METHODS *****************
+     *********************************************************/
+
+    /**
+     * Writes a deal in the input format described in the README, followed by a new line, into
+     * a buffer, without creating any objects. Contributions and folds aren't written.
+     *
+     * @param deal
+     * @param buffer must have room for MAX_TEXT_SIZE bytes from position on
+     * @param position
+     * @return the position after the deal
+     */
+    public static int writeText(Deal deal, byte[] buffer, int position) {
+        int numPlayers = deal.getNumPlayers();
+        int holeSize = deal.getHoleSize();
+        position = writeInt(numPlayers, buffer, position);
+        if (deal.getVariant() != Deal.HOLDEM) {
+            buffer[position++] = ' ';
+            String name = Deal.variantName(deal.getVariant());
+            for (int i = 0; i < name.length(); i++) {
+                buffer[position++] = (byte) name.charAt(i);
+            }
+            if (holeSize != Deal.minHoleSize(deal.getVariant())) {
+                buffer[position++] = ' ';
+                position = writeInt(holeSize, buffer, position);
+            }
+        }
+        buffer[position++] = '\n';
+
+        int[] board = deal.getBoard();
+        for (int i = 0; i < Deal.BOARD_SIZE; i++) {
+            position = writeCard(board[i], buffer, position);
+            buffer[position++] = (byte) (i == Deal.BOARD_SIZE - 1 ? '\n' : ' ');
+        }
+        int[] playerIds = deal.getPlayerIds();
+        int[] holeCards = deal.getHoleCards();
+        for (int seat = 0; seat < numPlayers; seat++) {
+            position = writeInt(playerIds[seat], buffer, position);
+            for (int i = holeSize * seat; i < holeSize * (seat + 1); i++) {
+                buffer[position++] = ' ';
+                position = writeCard(holeCards[i], buffer, position);
+            }
+            buffer[position++] = '\n';
+        }
+        return position;
+    }
+
+
+    /*********************************************************
+     ****************** PRIVATE CLASS METHODS ****************
+     *********************************************************/
+
+    /**
+     * Writes a card as its value and suit characters, e.g. "Th"
+     *
+     * @param id
+     * @param buffer
+     * @param position
+     * @return
+     */
+    private static int writeCard(int id, byte[] buffer, int position) {
+        buffer[position] = (byte) Card.valueChar(id);
+        buffer[position + 1] = (byte) Card.suitChar(id);
+        return position + 2;
+    }
+
+    /**
+     * Writes an int in decimal
+     *
+     * @param value
+     * @param buffer
+     * @param position
+     * @return
+     */
+    private static int writeInt(int value, byte[] buffer, int position) {
+        long rest = value;
+        if (rest < 0) {
+            buffer[position++] = '-';
+            rest = -rest;
+        }
+        int digits = 1;
+        for (long power = 10; power <= rest; power *= 10) {
+            digits++;
+        }
+        for (int i = position + digits - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + rest % 10);
+            rest /= 10;
+        }
+        return position + digits;
+    }
+
+
+    /*********************************************************
+     ****************** MAIN METHOD **************************
+     *********************************************************/
+
+    /**
+     * java DealGenerator <count> [--players n or min-max] [--variant name] [--hole-cards n]
+     *                    [--seed n] [--history file]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java DealGenerator <count> [--players n or min-max] [--variant name]"
+                    + " [--hole-cards n] [--seed n] [--history file]");
+            return;
+        }
+        long count;
+        int minPlayers = DEFAULT_PLAYERS;
+        int maxPlayers = DEFAULT_PLAYERS;
+        int variant = Deal.HOLDEM;
+        int holeSize = -1; // the variant's default
+        long seed = 42;
+        String history = null;
+        try {
+            count = Long.parseLong(args[0]);
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].equals("--players") && i + 1 < args.length) {
+                    String[] range = args[++i].split("-", 2);
+                    minPlayers = Integer.parseInt(range[0]);
+                    maxPlayers = range.length > 1 ? Integer.parseInt(range[1]) : minPlayers;
+                } else if (args[i].equals("--variant") && i + 1 < args.length) {
+                    variant = Deal.variantOf(args[++i]);
+                    if (variant < 0) {
+                        throw new IllegalArgumentException("Unknown variant: " + args[i]);
+                    }
+                } else if (args[i].equals("--hole-cards") && i + 1 < args.length) {
+                    holeSize = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--seed") && i + 1 < args.length) {
+                    seed = Long.parseLong(args[++i]);
+                } else if (args[i].equals("--history") && i + 1 < args.length) {
+                    history = args[++i];
+                } else {
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException included
+            System.err.println("ERROR. " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        Deal deal = new Deal();
+        try {
+            DealGenerator generator = new DealGenerator(seed, minPlayers, maxPlayers, variant,
+                    holeSize < 0 ? Deal.minHoleSize(variant) : holeSize);
+            if (history != null) {
+                try (HandHistoryWriter writer = new HandHistoryWriter(Paths.get(history), maxPlayers)) {
+                    for (long n = 0; n < count; n++) {
+                        generator.next(deal);
+                        writer.write(deal);
+                    }
+                }
+                System.out.println("Wrote " + count + " deals to " + history);
+                return;
+            }
+
+            OutputStream out = System.out;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int position = 0;
+            for (long n = 0; n < count; n++) {
+                if (position + MAX_TEXT_SIZE > buffer.length) {
+                    out.write(buffer, 0, position);
+                    position = 0;
+                }
+                generator.next(deal);
+                position = writeText(deal, buffer, position);
+            }
+            out.write(buffer, 0, position);
+            out.flush();
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println("ERROR. " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,502 @@
+import java.io.IOException;
+import java.io.InputStream;
+
+/***************************** DEAL READER *****************************
+ * Reads a stream of deals in the input format described in the README:
+ * a line with the number of players, a line with the five community
+ * cards, then one line per player with the player's id and two cards,
+ * optionally followed by the number of chips the player put in the pot
+ * and an "f" if the player folded.
+ * The number of players may be followed by the name of a variant and
+ * the number of hole cards, as in "3 omaha", "3 omaha 5" or
+ * "3 shortdeck", in which case every player line has that many cards
+ * (see Deal.getVariant()).
+ * Deals follow each other directly, blank lines between them are skipped.
+ *
+ * The input is parsed byte by byte out of a buffer into a reusable Deal,
+ * so no Strings or Cards are created while reading.
+ *
+ * Every deal is checked with DealValidator as it is read. A deal that
+ * can't be parsed or isn't valid throws an InvalidDealException, after
+ * which the next call skips the rest of it, up to the next line holding
+ * nothing but a number, and reads on from there.
+ *
+ ***********************************************************************
+ */
+public class DealReader implements DealSource {
+
+
+    /********************************************************
+     ************** PRIVATE CLASS VARIABLES *****************
+     ********************************************************/
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int EOF = -1;
+
+
+    /********************************************************
+     ************** PRIVATE INSTANCE VARIABLES *****************
+     ********************************************************/
+    private final InputStream in;
+    private final byte[] buffer;
+    private int position; // next byte to read in buffer
+    private int limit; // number of valid bytes in buffer
+    private int lineNumber = 1; // line of the next byte, for error messages
+    private boolean malformed; // whether the last deal was left partly read
+    private int pendingPlayers = -1; // number of players of the next deal, if already read by resync()
+    private int pendingVariant; // and its variant
+    private int pendingHoleSize;
+
+
+    /********************************************************
+     ******************** CONSTRUCTOR ***********************
+     ********************************************************/
+
+    /**
+     * Constructor that creates a DealReader reading from the given stream
+     *
+     * @param in
+     */
+    public DealReader(InputStream in) {
+        this.in = in;
+        this.buffer = new byte[BUFFER_SIZE];
+    }
+
+
+    /*********************************************************
+     **************** PUBLIC INSTANCE METHODS ****************
+     *********************************************************/
+
+    /**
+     * Reads the next deal into the given Deal. Returns false if the end of the stream has been
+     * reached before the start of another deal.
+     *
+     * @param deal
+     * @return boolean
+     * @throws InvalidDealException if the deal is malformed or invalid; the next call reads on
+     *                              from the next deal
+     * @throws IOException if the stream can't be read
+     */
+    public boolean next(Deal deal) throws IOException {
+        if (!JudgeMetrics.isEnabled()) {
+            return read(deal);
+        }
+        long start = System.nanoTime();
+        boolean read = read(deal);
+        if (read) {
+            JudgeMetrics.recordParse(System.nanoTime() - start);
+        }
+        return read;
+    }
+
+    /**
+     * Getter to return the line number the reader is at, counting from 1
+     *
+     * @return int
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+
+    /*********************************************************
+     *************** PRIVATE INSTANCE METHODS ****************
+     *********************************************************/
+
+    /**
+     * Reads the next deal into the given Deal, see next()
+     *
+     * @param deal
+     * @return
+     * @throws IOException
+     */
+    private boolean read(Deal deal) throws IOException {
+        if (malformed) {
+            malformed = false;
+            resync();
+        }
+        int numPlayers = pendingPlayers;
+        pendingPlayers = -1;
+        int dealLine = lineNumber;
+        if (numPlayers < 0) {
+            if (!skipBlankLines()) {
+                return false;
+            }
+            dealLine = lineNumber;
+            numPlayers = readInt();
+            checkNumPlayers(numPlayers);
+            readVariant();
+            checkHoleCards(numPlayers);
+            endLine();
+        } else {
+            dealLine--;
+            checkNumPlayers(numPlayers);
+            checkHoleCards(numPlayers);
+        }
+        deal.setNumPlayers(numPlayers);
+        deal.setVariant(pendingVariant, pendingHoleSize);
+        int holeSize = pendingHoleSize;
+
+        int[] board = deal.getBoard();
+        for (int i = 0; i < Deal.BOARD_SIZE; i++) {
+            board[i] = readCard();
+        }
+        endLine();
+
+        int[] playerIds = deal.getPlayerIds();
+        int[] holeCards = deal.getHoleCards();
+        long[] contributions = deal.getContributions();
+        long folded = 0L;
+        for (int seat = 0; seat < numPlayers; seat++) {
+            playerIds[seat] = readInt();
+            for (int i = 0; i < holeSize; i++) {
+                holeCards[seat * holeSize + i] = readCard();
+            }
+            skipSpaces();
+            int b = peek();
+            contributions[seat] = b >= '0' && b <= '9' ? readLong() : 0L;
+            skipSpaces();
+            if (peek() == 'f') {
+                position++;
+                folded |= 1L << seat;
+            }
+            endLine();
+        }
+        deal.setFolded(folded);
+
+        // the deal is read to its end, so it can be skipped without resynchronizing
+        int code = DealValidator.validate(deal);
+        if (code != DealValidator.VALID) {
+            throw new InvalidDealException(code, "Invalid deal at line " + dealLine + ": "
+                    + DealValidator.describe(deal, code));
+        }
+        return true;
+    }
+
+    /**
+     * Reads what may follow the number of players on the first line of a deal, into
+     * pendingVariant and pendingHoleSize: nothing for Hold'em, or the name of a variant
+     * optionally followed by the number of hole cards
+     *
+     * @throws IOException
+     */
+    private void readVariant() throws IOException {
+        pendingVariant = Deal.HOLDEM;
+        pendingHoleSize = Deal.HOLE_SIZE;
+        skipSpaces();
+        if (!isLetter(peek())) {
+            return;
+        }
+        pendingVariant = readVariantName();
+        if (pendingVariant < 0) {
+            throw error(DealValidator.BAD_LINE, "unknown variant");
+        }
+        pendingHoleSize = Deal.minHoleSize(pendingVariant);
+        skipSpaces();
+        int b = peek();
+        if (b >= '0' && b <= '9') {
+            pendingHoleSize = readInt();
+        }
+    }
+
+    /**
+     * Consumes a word and returns the variant it names, or -1 if it names none
+     *
+     * @return
+     * @throws IOException
+     */
+    private int readVariantName() throws IOException {
+        int length = 0;
+        int matches = (1 << Deal.NUM_VARIANTS) - 1; // variants the word so far is a prefix of
+        for (int b = peek(); isLetter(b); b = peek()) {
+            for (int variant = 0; variant < Deal.NUM_VARIANTS; variant++) {
+                String name = Deal.variantName(variant);
+                if (length >= name.length() || name.charAt(length) != b) {
+                    matches &= ~(1 << variant);
+                }
+            }
+            length++;
+            position++;
+        }
+        for (int variant = 0; variant < Deal.NUM_VARIANTS; variant++) {
+            if ((matches & 1 << variant) != 0 && Deal.variantName(variant).length() == length) {
+                return variant;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isLetter(int b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z');
+    }
+
+    /**
+     * Skips what is left of a malformed deal: the rest of the current line, then every line
+     * up to the next one holding nothing but a number, optionally followed by a variant as in
+     * readVariant(), which is taken as the first line of the next deal
+     *
+     * @throws IOException
+     */
+    private void resync() throws IOException {
+        skipLine();
+        while (true) {
+            skipSpaces();
+            int b = peek();
+            if (b == EOF) {
+                return;
+            }
+            if (b >= '0' && b <= '9') {
+                int value = 0;
+                while (b >= '0' && b <= '9') {
+                    // anything above 999 is out of range anyway
+                    value = value < 1000 ? value * 10 + (b - '0') : value;
+                    position++;
+                    b = peek();
+                }
+                int variant = Deal.HOLDEM;
+                int holeSize = Deal.HOLE_SIZE;
+                skipSpaces();
+                if (isLetter(peek())) {
+                    variant = readVariantName();
+                    if (variant < 0) {
+                        skipLine();
+                        continue;
+                    }
+                    holeSize = Deal.minHoleSize(variant);
+                    skipSpaces();
+                    b = peek();
+                    if (b >= '0' && b <= '9') {
+                        holeSize = b - '0';
+                        position++;
+                    }
+                    skipSpaces();
+                }
+                if (peek() == '\r') {
+                    position++;
+                }
+                b = peek();
+                if (b == '\n' || b == EOF) {
+                    skipLine();
+                    pendingPlayers = value;
+                    pendingVariant = variant;
+                    pendingHoleSize = holeSize;
+                    return;
+                }
+            }
+            skipLine();
+        }
+    }
+
+    private void checkNumPlayers(int numPlayers) throws InvalidDealException {
+        if (numPlayers <= 0 || numPlayers > Deal.MAX_PLAYERS) {
+            throw error(DealValidator.BAD_PLAYER_COUNT, "number of players out of range: " + numPlayers);
+        }
+    }
+
+    /**
+     * Checks that the pending variant can have pendingHoleSize hole cards, and that the deck
+     * has enough cards for every player, before anything past the header is read
+     *
+     * @param numPlayers
+     * @throws InvalidDealException
+     */
+    private void checkHoleCards(int numPlayers) throws InvalidDealException {
+        if (pendingHoleSize < Deal.minHoleSize(pendingVariant) || pendingHoleSize > Deal.maxHoleSize(pendingVariant)) {
+            throw error(DealValidator.BAD_LINE, "no " + Deal.variantName(pendingVariant) + " deal has "
+                    + pendingHoleSize + " hole cards");
+        }
+        if (Deal.BOARD_SIZE + numPlayers * pendingHoleSize > Deal.deckSize(pendingVariant)) {
+            throw error(DealValidator.BAD_PLAYER_COUNT, "number of players out of range: " + numPlayers + " with "
+                    + pendingHoleSize + " hole cards");
+        }
+    }
+
+    /**
+     * Returns the next byte without consuming it, or EOF
+     *
+     * @return
+     * @throws IOException
+     */
+    private int peek() throws IOException {
+        if (position == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return EOF;
+            }
+        }
+        return buffer[position] & 0xFF;
+    }
+
+    /**
+     * Skips spaces and tabs, but not line breaks
+     *
+     * @throws IOException
+     */
+    private void skipSpaces() throws IOException {
+        int b = peek();
+        while (b == ' ' || b == '\t') {
+            position++;
+            b = peek();
+        }
+    }
+
+    /**
+     * Skips the rest of the current line, including its line break
+     *
+     * @throws IOException
+     */
+    private void skipLine() throws IOException {
+        int b = peek();
+        while (b != '\n' && b != EOF) {
+            position++;
+            b = peek();
+        }
+        if (b == '\n') {
+            position++;
+            lineNumber++;
+        }
+    }
+
+    /**
+     * Skips empty lines, returns false if the end of the stream is reached
+     *
+     * @return
+     * @throws IOException
+     */
+    private boolean skipBlankLines() throws IOException {
+        while (true) {
+            int b = peek();
+            if (b == EOF) {
+                return false;
+            } else if (b == '\n') {
+                lineNumber++;
+            } else if (b != ' ' && b != '\t' && b != '\r') {
+                return true;
+            }
+            position++;
+        }
+    }
+
+    /**
+     * Reads a non-negative decimal integer
+     *
+     * @return
+     * @throws IOException
+     */
+    private int readInt() throws IOException {
+        skipSpaces();
+        int b = peek();
+        if (b == EOF) {
+            throw truncated();
+        }
+        if (b < '0' || b > '9') {
+            throw error(DealValidator.BAD_NUMBER, "expected a number");
+        }
+        int value = 0;
+        while (b >= '0' && b <= '9') {
+            value = value * 10 + (b - '0');
+            if (value < 0) {
+                throw error(DealValidator.BAD_NUMBER, "number too large");
+            }
+            position++;
+            b = peek();
+        }
+        return value;
+    }
+
+    /**
+     * Reads a non-negative decimal long
+     *
+     * @return
+     * @throws IOException
+     */
+    private long readLong() throws IOException {
+        skipSpaces();
+        int b = peek();
+        if (b == EOF) {
+            throw truncated();
+        }
+        if (b < '0' || b > '9') {
+            throw error(DealValidator.BAD_NUMBER, "expected a number");
+        }
+        long value = 0;
+        while (b >= '0' && b <= '9') {
+            value = value * 10 + (b - '0');
+            if (value < 0) {
+                throw error(DealValidator.BAD_NUMBER, "number too large");
+            }
+            position++;
+            b = peek();
+        }
+        return value;
+    }
+
+    /**
+     * Reads a card such as "Th" and returns its id
+     *
+     * @return
+     * @throws IOException
+     */
+    private int readCard() throws IOException {
+        skipSpaces();
+        int value = peek();
+        if (value == EOF) {
+            throw truncated();
+        }
+        if (value == '\r' || value == '\n') {
+            throw error(DealValidator.BAD_LINE, "expected a card");
+        }
+        position++;
+        int suit = peek();
+        if (suit == EOF) {
+            throw truncated();
+        }
+        if (suit == '\r' || suit == '\n') {
+            throw error(DealValidator.BAD_CARD, "not a card: " + (char) value);
+        }
+        position++;
+        int id = Card.id((char) value, (char) suit);
+        if (id < 0) {
+            throw error(DealValidator.BAD_CARD, "not a card: " + (char) value + (char) suit);
+        }
+        return id;
+    }
+
+    /**
+     * Consumes the rest of the line, which must be empty
+     *
+     * @throws IOException
+     */
+    private void endLine() throws IOException {
+        skipSpaces();
+        int b = peek();
+        if (b == '\r') {
+            position++;
+            b = peek();
+        }
+        if (b == '\n') {
+            position++;
+            lineNumber++;
+        } else if (b != EOF) {
+            throw error(DealValidator.BAD_LINE, "unexpected input at end of line");
+        }
+    }
+
+    /**
+     * Returns the exception for input that can't be parsed, leaving the rest of the deal to be
+     * skipped by the next read
+     *
+     * @param code
+     * @param message
+     * @return
+     */
+    private InvalidDealException error(int code, String message) {
+        malformed = true;
+        return new InvalidDealException(code, "Malformed deal at line " + lineNumber + ": " + message);
+    }
+
+    private InvalidDealException truncated() {
+        return error(DealValidator.TRUNCATED, "input ended in the middle of a deal");
+    }
+}
@@ -0,0 +1,20 @@
+import java.io.IOException;
+
+/***************************** DEAL SOURCE *****************************
+ * Anything deals can be read from one after another into a reusable
+ * Deal, such as the text input (DealReader) or a binary hand history
+ * file (HandHistoryReader).
+ *
+ ***********************************************************************
+ */
+public interface DealSource {
+
+    /**
+     * Reads the next deal into the given Deal. Returns false if there are no more deals.
+     *
+     * @param deal
+     * @return boolean
+     * @throws IOException if the deals can't be read or the next one is malformed
+     */
+    boolean next(Deal deal) throws IOException;
+}
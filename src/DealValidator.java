@@ -0,0 +1,161 @@
+/**************************** DEAL VALIDATOR ***************************
+ * Checks that a deal can be judged: between 1 and Deal.MAX_PLAYERS
+ * players, and no more than the deck has cards for, every card a card
+ * id of the deal's deck (no 2 - 5 in short deck), no card dealt
+ * twice, whether on the board or in anyone's hand, and no player id on
+ * two seats, as pots are settled and balances kept by player id.
+ *
+ * Every card of the deal is OR-ed into one 64-bit deck mask, with one
+ * bit per card id (see Card.getMask()), and any id out of range into a
+ * sign bit, in a single pass without branches; a card was dealt twice
+ * if the mask has fewer bits than the deal has cards. This costs a few
+ * nanoseconds per deal, so every deal read in batch and service modes
+ * is checked. Player ids are compared pairwise, which for at most 23
+ * seats is a few hundred comparisons.
+ *
+ * Problems are reported as error codes, which readers of deals also use
+ * for input they can't parse (see InvalidDealException).
+ *
+ ***********************************************************************
+ */
+public class DealValidator {
+
+
+    /********************************************************
+     ************** PUBLIC CLASS VARIABLES ******************
+     ********************************************************/
+    public static final int VALID = 0;
+    public static final int BAD_PLAYER_COUNT = 1; // number of players out of range
+    public static final int BAD_CARD = 2; // not a card
+    public static final int DUPLICATE_CARD = 3; // the same card dealt twice
+    public static final int BAD_NUMBER = 4; // a player count, id or contribution that isn't a number
+    public static final int BAD_LINE = 5; // a line with too much or too little on it
+    public static final int TRUNCATED = 6; // the input ended in the middle of a deal
+    public static final int DUPLICATE_PLAYER = 7; // the same player id on two seats
+    public static final int NUM_CODES = 8;
+
+
+    /********************************************************
+     ************** PRIVATE CLASS VARIABLES *****************
+     ********************************************************/
+    private static final String[] CODE_NAMES = {"VALID", "BAD_PLAYER_COUNT", "BAD_CARD", "DUPLICATE_CARD",
+            "BAD_NUMBER", "BAD_LINE", "TRUNCATED", "DUPLICATE_PLAYER"};
+
+
+    /*********************************************************
+     ****************** PUBLIC CLASS METHODS *****************
+     *********************************************************/
+
+    /**
+     * Checks a deal, see above
+     *
+     * @param deal
+     * @return VALID, BAD_PLAYER_COUNT, BAD_CARD, DUPLICATE_CARD or DUPLICATE_PLAYER
+     */
+    public static int validate(Deal deal) {
+        int numPlayers = deal.getNumPlayers();
+        int numHoleCards = deal.getHoleSize() * numPlayers;
+        int variant = deal.getVariant();
+        if (numPlayers < 1 || numPlayers > Deal.MAX_PLAYERS
+                || Deal.BOARD_SIZE + numHoleCards > Deal.deckSize(variant)) {
+            return BAD_PLAYER_COUNT;
+        }
+        int[] board = deal.getBoard();
+        int[] holeCards = deal.getHoleCards();
+
+        long deck = 0L;
+        int outOfRange = 0; // negative if any id is below 0 or above 51
+        for (int i = 0; i < Deal.BOARD_SIZE; i++) {
+            int id = board[i];
+            outOfRange |= id | (Card.NUM_CARDS - 1 - id);
+            deck |= 1L << id;
+        }
+        for (int i = 0; i < numHoleCards; i++) {
+            int id = holeCards[i];
+            outOfRange |= id | (Card.NUM_CARDS - 1 - id);
+            deck |= 1L << id;
+        }
+
+        if (outOfRange < 0 || (deck & ~Deal.deckMask(variant)) != 0) {
+            return BAD_CARD;
+        }
+        if (Long.bitCount(deck) != Deal.BOARD_SIZE + numHoleCards) {
+            return DUPLICATE_CARD;
+        }
+        return duplicatePlayer(deal) < 0 ? VALID : DUPLICATE_PLAYER;
+    }
+
+    /**
+     * Returns what is wrong with a deal given the code validate() returned for it, naming
+     * the offending player count, card or player id, e.g. "card dealt twice: Ah"
+     *
+     * @param deal
+     * @param code
+     * @return String
+     */
+    public static String describe(Deal deal, int code) {
+        if (code == BAD_PLAYER_COUNT) {
+            return "number of players out of range: " + deal.getNumPlayers()
+                    + (deal.getVariant() == Deal.HOLDEM ? "" : " with " + deal.getHoleSize() + " hole cards");
+        }
+        if (code == DUPLICATE_PLAYER) {
+            int seat = duplicatePlayer(deal);
+            return seat < 0 ? codeName(code) : "player on two seats: " + deal.getPlayerIds()[seat];
+        }
+        if (code != BAD_CARD && code != DUPLICATE_CARD) {
+            return codeName(code);
+        }
+        // go through the cards again to find the first bad one
+        int[] board = deal.getBoard();
+        int[] holeCards = deal.getHoleCards();
+        long deck = 0L;
+        for (int i = 0; i < Deal.BOARD_SIZE + deal.getHoleSize() * deal.getNumPlayers(); i++) {
+            int id = i < Deal.BOARD_SIZE ? board[i] : holeCards[i - Deal.BOARD_SIZE];
+            if (id < 0 || id >= Card.NUM_CARDS) {
+                return "not a card id: " + id;
+            }
+            if ((Deal.deckMask(deal.getVariant()) & 1L << id) == 0) {
+                return "card not dealt in " + Deal.variantName(deal.getVariant()) + ": " + Card.of(id);
+            }
+            if ((deck & 1L << id) != 0) {
+                return "card dealt twice: " + Card.of(id);
+            }
+            deck |= 1L << id;
+        }
+        return codeName(code);
+    }
+
+    /**
+     * Returns the name of an error code, such as "DUPLICATE_CARD"
+     *
+     * @param code
+     * @return String
+     */
+    public static String codeName(int code) {
+        return code >= 0 && code < NUM_CODES ? CODE_NAMES[code] : "UNKNOWN";
+    }
+
+
+    /*********************************************************
+     ****************** PRIVATE CLASS METHODS ****************
+     *********************************************************/
+
+    /**
+     * Returns the first seat whose player id is also on an earlier seat, or -1 if every seat
+     * has a player of its own
+     *
+     * @param deal
+     * @return
+     */
+    private static int duplicatePlayer(Deal deal) {
+        int[] playerIds = deal.getPlayerIds();
+        for (int seat = 1; seat < deal.getNumPlayers(); seat++) {
+            for (int other = 0; other < seat; other++) {
+                if (playerIds[other] == playerIds[seat]) {
+                    return seat;
+                }
+            }
+        }
+        return -1;
+    }
+}
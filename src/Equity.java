@@ -0,0 +1,180 @@
+/******************************** EQUITY *******************************
+ * The outcome of an equity calculation: for each player, how many of the
+ * boards they won outright, how many they tied for the best hand, and
+ * their share of the pot summed over all boards (1 for a win, 1/k for a
+ * k-way tie).
+ *
+ * Boards may also be given weights, e.g. the product of the weights of
+ * the hands dealt from each player's range (see RangeEquity), in which
+ * case every count is a sum of weights and every probability a weighted
+ * average.
+ *
+ ***********************************************************************
+ */
+public class Equity {
+
+
+    /********************************************************
+     ************** PRIVATE INSTANCE VARIABLES *****************
+     ********************************************************/
+    private long boards; // number of boards evaluated
+    private double weight; // sum of the weights of the boards
+    private final double[] wins;
+    private final double[] ties;
+    private final double[] shares;
+
+
+    /********************************************************
+     ******************** CONSTRUCTOR ***********************
+     ********************************************************/
+
+    /**
+     * Constructor that creates an empty Equity for the given number of players
+     *
+     * @param numPlayers
+     */
+    public Equity(int numPlayers) {
+        wins = new double[numPlayers];
+        ties = new double[numPlayers];
+        shares = new double[numPlayers];
+    }
+
+
+    /*********************************************************
+     **************** PUBLIC INSTANCE METHODS ****************
+     *********************************************************/
+
+    /**
+     * Records the outcome of one board
+     *
+     * @param winners the winning players as a bit mask, see TexasHold_em.chooseWinner()
+     */
+    public void add(long winners) {
+        add(winners, 1.0);
+    }
+
+    /**
+     * Records the outcome of one board that counts for the given weight
+     *
+     * @param winners the winning players as a bit mask, see TexasHold_em.chooseWinner()
+     * @param boardWeight
+     */
+    public void add(long winners, double boardWeight) {
+        add(winners, boardWeight, 1);
+    }
+
+    /**
+     * Records the same outcome on a number of boards
+     *
+     * @param winners the winning players as a bit mask, see TexasHold_em.chooseWinner()
+     * @param totalWeight the sum of the weights of the boards
+     * @param count the number of boards
+     */
+    public void add(long winners, double totalWeight, long count) {
+        boards += count;
+        weight += totalWeight;
+        int numWinners = Long.bitCount(winners);
+        if (numWinners == 1) {
+            int player = Long.numberOfTrailingZeros(winners);
+            wins[player] += totalWeight;
+            shares[player] += totalWeight;
+            return;
+        }
+        double share = totalWeight / numWinners;
+        for (long players = winners; players != 0; players &= players - 1) {
+            int player = Long.numberOfTrailingZeros(players);
+            ties[player] += totalWeight;
+            shares[player] += share;
+        }
+    }
+
+    /**
+     * Adds the outcomes recorded in another Equity for the same players to this one
+     *
+     * @param other
+     */
+    public void add(Equity other) {
+        boards += other.boards;
+        weight += other.weight;
+        for (int i = 0; i < wins.length; i++) {
+            wins[i] += other.wins[i];
+            ties[i] += other.ties[i];
+            shares[i] += other.shares[i];
+        }
+    }
+
+    /**
+     * Getter to return the number of players
+     *
+     * @return int
+     */
+    public int getNumPlayers() {
+        return wins.length;
+    }
+
+    /**
+     * Getter to return the number of boards evaluated
+     *
+     * @return long
+     */
+    public long getBoards() {
+        return boards;
+    }
+
+    /**
+     * Getter to return the sum of the weights of the boards, the number of boards if they
+     * weren't weighted
+     *
+     * @return double
+     */
+    public double getWeight() {
+        return weight;
+    }
+
+    /**
+     * Returns the fraction of boards the player won outright
+     *
+     * @param player
+     * @return double
+     */
+    public double getWinProbability(int player) {
+        return weight == 0 ? 0.0 : wins[player] / weight;
+    }
+
+    /**
+     * Returns the fraction of boards on which the player tied for the best hand
+     *
+     * @param player
+     * @return double
+     */
+    public double getTieProbability(int player) {
+        return weight == 0 ? 0.0 : ties[player] / weight;
+    }
+
+    /**
+     * Returns the player's expected share of the pot
+     *
+     * @param player
+     * @return double
+     */
+    public double getEquity(int player) {
+        return weight == 0 ? 0.0 : shares[player] / weight;
+    }
+
+    /**
+     * String representation of an Equity, one line per player
+     *
+     * @return String
+     */
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < wins.length; i++) {
+            if (i > 0) {
+                sb.append('\n');
+            }
+            sb.append(String.format("%d win %.4f tie %.4f equity %.4f", i,
+                    getWinProbability(i), getTieProbability(i), getEquity(i)));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,241 @@
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/************************** EQUITY CALCULATOR **************************
+ * Estimates how often each player wins or ties, given everyone's hole
+ * cards and none, three or four of the community cards, by dealing the
+ * rest of the board at random many times and judging every outcome.
+ *
+ * The samples are split into fixed-size chunks that are run in parallel
+ * on a pool of threads. Each chunk draws from its own SplittableRandom,
+ * split off the seed in chunk order, so the same seed gives the same
+ * result however many threads are used.
+ *
+ ***********************************************************************
+ */
+public class EquityCalculator implements AutoCloseable {
+
+
+    /********************************************************
+     ************** PRIVATE CLASS VARIABLES *****************
+     ********************************************************/
+    private static final int CHUNK_SIZE = 1 << 16; // samples per task
+
+
+    /********************************************************
+     ************** PRIVATE INSTANCE VARIABLES *****************
+     ********************************************************/
+    private final ForkJoinPool pool;
+
+
+    /********************************************************
+     ******************** CONSTRUCTOR ***********************
+     ********************************************************/
+
+    /**
+     * Constructor that creates an EquityCalculator sampling on the given number of threads
+     *
+     * @param numThreads
+     */
+    public EquityCalculator(int numThreads) {
+        this.pool = new ForkJoinPool(numThreads);
+    }
+
+
+    /*********************************************************
+     **************** PUBLIC INSTANCE METHODS ****************
+     *********************************************************/
+
+    /**
+     * Estimates the equity of each player from the given number of random boards
+     *
+     * @param holeCards the card ids of each player's hole cards, player i holding 2i and 2i+1
+     * @param board the card ids of the community cards known so far: 0, 3, 4 or 5 of them
+     * @param samples the number of boards to deal
+     * @param seed
+     * @return Equity
+     */
+    public Equity estimate(int[] holeCards, int[] board, long samples, long seed) {
+        checkCards(holeCards, board);
+        int numPlayers = holeCards.length / Deal.HOLE_SIZE;
+        int[] deck = remainingDeck(holeCards, board);
+
+        SplittableRandom random = new SplittableRandom(seed);
+        ArrayList<Future<Equity>> chunks = new ArrayList<>();
+        for (long start = 0; start < samples; start += CHUNK_SIZE) {
+            long count = Math.min(CHUNK_SIZE, samples - start);
+            SplittableRandom chunkRandom = random.split();
+            chunks.add(pool.submit(() -> sample(holeCards, board, deck, count, chunkRandom)));
+        }
+
+        Equity equity = new Equity(numPlayers);
+        try {
+            for (Future<Equity> chunk : chunks) {
+                equity.add(chunk.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while sampling", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to sample", e.getCause());
+        }
+        return equity;
+    }
+
+    /**
+     * Shuts down the sampling threads
+     */
+    public void close() {
+        pool.shutdown();
+    }
+
+
+    /*********************************************************
+     ****************** PUBLIC CLASS METHODS *****************
+     *********************************************************/
+
+    /**
+     * Checks that the hole cards and board make a valid spot: at least one player with two
+     * hole cards each, 0, 3, 4 or 5 community cards, and no card used twice
+     *
+     * @param holeCards
+     * @param board
+     * @throws IllegalArgumentException if they don't
+     */
+    public static void checkCards(int[] holeCards, int[] board) {
+        if (holeCards.length == 0 || holeCards.length % Deal.HOLE_SIZE != 0) {
+            throw new IllegalArgumentException("Every player needs two hole cards");
+        }
+        if (board.length == 1 || board.length == 2 || board.length > Deal.BOARD_SIZE) {
+            throw new IllegalArgumentException("The board must have 0, 3, 4 or 5 cards, not " + board.length);
+        }
+        if (holeCards.length / Deal.HOLE_SIZE > 64) {
+            throw new IllegalArgumentException("Too many players: " + holeCards.length / Deal.HOLE_SIZE);
+        }
+        long used = 0L;
+        for (int[] cards : new int[][] {holeCards, board}) {
+            for (int id : cards) {
+                if (id < 0 || id >= Card.NUM_CARDS) {
+                    throw new IllegalArgumentException("Not a card id: " + id);
+                }
+                if ((used & 1L << id) != 0) {
+                    throw new IllegalArgumentException("Card dealt twice: " + Card.of(id));
+                }
+                used |= 1L << id;
+            }
+        }
+        if (Long.bitCount(used) + Deal.BOARD_SIZE - board.length > Card.NUM_CARDS) {
+            throw new IllegalArgumentException("Not enough cards left to complete the board");
+        }
+    }
+
+    /**
+     * Returns the ids of the cards that are neither in anyone's hand nor on the board
+     *
+     * @param holeCards
+     * @param board
+     * @return
+     */
+    public static int[] remainingDeck(int[] holeCards, int[] board) {
+        long used = Card.mask(holeCards) | Card.mask(board);
+        int[] deck = new int[Card.NUM_CARDS - Long.bitCount(used)];
+        int n = 0;
+        for (int id = 0; id < Card.NUM_CARDS; id++) {
+            if ((used & 1L << id) == 0) {
+                deck[n++] = id;
+            }
+        }
+        return deck;
+    }
+
+
+    /*********************************************************
+     ****************** PRIVATE CLASS METHODS ****************
+     *********************************************************/
+
+    /**
+     * Deals count random completions of the board and judges each of them
+     *
+     * @param holeCards
+     * @param board
+     * @param remainingDeck
+     * @param count
+     * @param random
+     * @return
+     */
+    private static Equity sample(int[] holeCards, int[] board, int[] remainingDeck, long count,
+                                 SplittableRandom random) {
+        int numPlayers = holeCards.length / Deal.HOLE_SIZE;
+        int[] deck = remainingDeck.clone();
+        int[] cards = new int[Deal.BOARD_SIZE];
+        System.arraycopy(board, 0, cards, 0, board.length);
+        int missing = Deal.BOARD_SIZE - board.length;
+        int[] strengths = new int[numPlayers];
+        BoardState boardState = new BoardState();
+        Equity equity = new Equity(numPlayers);
+
+        for (long s = 0; s < count; s++) {
+            // draw the missing cards to the front of the deck, a partial Fisher-Yates shuffle
+            for (int i = 0; i < missing; i++) {
+                int j = i + random.nextInt(deck.length - i);
+                int card = deck[j];
+                deck[j] = deck[i];
+                deck[i] = card;
+                cards[board.length + i] = card;
+            }
+            boardState.set(cards);
+            for (int p = 0; p < numPlayers; p++) {
+                strengths[p] = boardState.evaluate(holeCards[2 * p], holeCards[2 * p + 1]);
+            }
+            equity.add(TexasHold_em.chooseWinner(strengths, numPlayers));
+        }
+        return equity;
+    }
+
+    /**
+     * Returns the ids of the space-separated cards in s, e.g. "Ah Kd"
+     */
+    static int[] parseCards(String s) {
+        if (s.trim().isEmpty()) {
+            return new int[0];
+        }
+        ArrayList<Card> cards = TexasHold_em.listOfCards(s.trim());
+        int[] ids = new int[cards.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = cards.get(i).getId();
+        }
+        return ids;
+    }
+
+
+    /*********************************************************
+     ****************** MAIN METHOD **************************
+     *********************************************************/
+
+    /**
+     * Prints the equity of a spot, e.g.
+     *     java EquityCalculator "Ah Kh Qs Qd" "2h 7h 9c" [samples] [seed]
+     * with the hole cards of all players in the first argument and the known board in the second
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: java EquityCalculator \"<hole cards>\" \"<board>\" [samples] [seed]");
+            return;
+        }
+        int[] holeCards = parseCards(args[0]);
+        int[] board = parseCards(args[1]);
+        long samples = args.length > 2 ? Long.parseLong(args[2]) : 1000000;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+
+        try (EquityCalculator calculator = new EquityCalculator(Runtime.getRuntime().availableProcessors())) {
+            long start = System.nanoTime();
+            Equity equity = calculator.estimate(holeCards, board, samples, seed);
+            long elapsed = System.nanoTime() - start;
+            System.out.println(equity);
+            System.out.printf("%d boards in %.1f ms%n", equity.getBoards(), elapsed / 1e6);
+        }
+    }
+}
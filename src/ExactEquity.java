@@ -0,0 +1,206 @@
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/***************************** EXACT EQUITY ****************************
+ * Computes the exact equity of each player, given everyone's hole cards
+ * and none, three or four of the community cards, by judging every
+ * possible way to complete the board (C(48, 5) = 1,712,304 boards heads
+ * up before the flop).
+ *
+ * The boards are enumerated card by card, adding each card's rank and
+ * suit keys (see HandRankTable.rankKey()) to running sums, so every
+ * board is summed up once and each player only adds the keys of their
+ * two hole cards, summed once up front. The enumeration is split on the
+ * first card dealt, and the parts are run in parallel.
+ *
+ ***********************************************************************
+ */
+public class ExactEquity implements AutoCloseable {
+
+
+    /********************************************************
+     ************** PRIVATE INSTANCE VARIABLES *****************
+     ********************************************************/
+    private final ForkJoinPool pool;
+
+
+    /********************************************************
+     ******************** CONSTRUCTOR ***********************
+     ********************************************************/
+
+    /**
+     * Constructor that creates an ExactEquity enumerating boards on the given number of threads
+     *
+     * @param numThreads
+     */
+    public ExactEquity(int numThreads) {
+        this.pool = new ForkJoinPool(numThreads);
+    }
+
+
+    /*********************************************************
+     **************** PUBLIC INSTANCE METHODS ****************
+     *********************************************************/
+
+    /**
+     * Judges every possible completion of the board and returns how each player fared
+     *
+     * @param holeCards the card ids of each player's hole cards, player i holding 2i and 2i+1
+     * @param board the card ids of the community cards known so far: 0, 3, 4 or 5 of them
+     * @return Equity
+     */
+    public Equity calculate(int[] holeCards, int[] board) {
+        EquityCalculator.checkCards(holeCards, board);
+        Enumeration enumeration = new Enumeration(holeCards, board);
+
+        int missing = Deal.BOARD_SIZE - board.length;
+        if (missing == 0) {
+            return enumeration.run(-1);
+        }
+
+        ArrayList<Future<Equity>> parts = new ArrayList<>();
+        for (int first = 0; first <= enumeration.deck.length - missing; first++) {
+            int firstCard = first;
+            parts.add(pool.submit(() -> enumeration.run(firstCard)));
+        }
+
+        Equity equity = new Equity(holeCards.length / Deal.HOLE_SIZE);
+        try {
+            for (Future<Equity> part : parts) {
+                equity.add(part.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while enumerating", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to enumerate", e.getCause());
+        }
+        return equity;
+    }
+
+    /**
+     * Shuts down the enumerating threads
+     */
+    public void close() {
+        pool.shutdown();
+    }
+
+
+    /*********************************************************
+     ******************** NESTED CLASSES *********************
+     *********************************************************/
+
+    /**
+     * The enumeration of the boards of one spot. The hole card sums and the deck are shared
+     * by all parts, and every part has its own strengths buffer and Equity.
+     */
+    private static class Enumeration {
+        final int numPlayers;
+        final int[] deck; // the cards left to complete the board with
+        final int missing; // number of community cards to deal
+        final int boardKey; // key sums and mask of the known community cards
+        final int boardSuits;
+        final long boardMask;
+        final int[] holeKeys; // key sums and masks of each player's hole cards
+        final int[] holeSuits;
+        final long[] holeMasks;
+
+        Enumeration(int[] holeCards, int[] board) {
+            numPlayers = holeCards.length / Deal.HOLE_SIZE;
+            deck = EquityCalculator.remainingDeck(holeCards, board);
+            missing = Deal.BOARD_SIZE - board.length;
+
+            int key = 0;
+            int suits = 0;
+            for (int id : board) {
+                key += HandRankTable.rankKey(id);
+                suits += HandRankTable.suitKey(id);
+            }
+            boardKey = key;
+            boardSuits = suits;
+            boardMask = Card.mask(board);
+
+            holeKeys = new int[numPlayers];
+            holeSuits = new int[numPlayers];
+            holeMasks = new long[numPlayers];
+            for (int p = 0; p < numPlayers; p++) {
+                int c1 = holeCards[2 * p];
+                int c2 = holeCards[2 * p + 1];
+                holeKeys[p] = HandRankTable.rankKey(c1) + HandRankTable.rankKey(c2);
+                holeSuits[p] = HandRankTable.suitKey(c1) + HandRankTable.suitKey(c2);
+                holeMasks[p] = 1L << c1 | 1L << c2;
+            }
+        }
+
+        /**
+         * Judges every board whose first dealt card is deck[first], or the single complete
+         * board if first is -1
+         */
+        Equity run(int first) {
+            Equity equity = new Equity(numPlayers);
+            int[] strengths = new int[numPlayers];
+            if (first < 0) {
+                judge(boardKey, boardSuits, boardMask, strengths, equity);
+            } else {
+                int id = deck[first];
+                deal(first + 1, missing - 1, boardKey + HandRankTable.rankKey(id),
+                        boardSuits + HandRankTable.suitKey(id), boardMask | 1L << id, strengths, equity);
+            }
+            return equity;
+        }
+
+        /**
+         * Deals the remaining cards from deck[from] onwards in every possible way
+         */
+        private void deal(int from, int remaining, int key, int suits, long mask, int[] strengths, Equity equity) {
+            if (remaining == 0) {
+                judge(key, suits, mask, strengths, equity);
+                return;
+            }
+            for (int i = from; i <= deck.length - remaining; i++) {
+                int id = deck[i];
+                deal(i + 1, remaining - 1, key + HandRankTable.rankKey(id), suits + HandRankTable.suitKey(id),
+                        mask | 1L << id, strengths, equity);
+            }
+        }
+
+        /**
+         * Judges one complete board given its key sums and mask
+         */
+        private void judge(int key, int suits, long mask, int[] strengths, Equity equity) {
+            for (int p = 0; p < numPlayers; p++) {
+                strengths[p] = HandRankTable.evaluate(key + holeKeys[p], suits + holeSuits[p], mask | holeMasks[p]);
+            }
+            equity.add(TexasHold_em.chooseWinner(strengths, numPlayers));
+        }
+    }
+
+
+    /*********************************************************
+     ****************** MAIN METHOD **************************
+     *********************************************************/
+
+    /**
+     * Prints the exact equity of a spot, e.g.
+     *     java ExactEquity "Ah Kh Qs Qd" "2h 7h 9c"
+     * with the hole cards of all players in the first argument and the known board in the second
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: java ExactEquity \"<hole cards>\" \"<board>\"");
+            return;
+        }
+        int[] holeCards = EquityCalculator.parseCards(args[0]);
+        int[] board = EquityCalculator.parseCards(args[1]);
+
+        try (ExactEquity exactEquity = new ExactEquity(Runtime.getRuntime().availableProcessors())) {
+            long start = System.nanoTime();
+            Equity equity = exactEquity.calculate(holeCards, board);
+            long elapsed = System.nanoTime() - start;
+            System.out.println(equity);
+            System.out.printf("%d boards in %.1f ms%n", equity.getBoards(), elapsed / 1e6);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+import java.util.ArrayList;
+
+/**************************** HAND EVALUATOR ***************************
+ * An engine that finds the strength of the best hand that can be made
+ * from a set of cards, as the int described in TexasHold_em (a greater
+ * strength is a better hand), so engines can be swapped, or run side by
+ * side (see ShadowEvaluator), without changing anything else.
+ *
+ * The engines, by name (see create()):
+ *     lookup   HandRankTable lookups, with each deal's board preprocessed
+ *              once into a BoardState; the default
+ *     bitmask  TexasHold_em.evaluateHand(long), rank and suit bit masks
+ *     cached   an EvaluationCache in front of the legacy evaluator, which
+ *              a cache hit is many times faster than (in front of the
+ *              lookup tables, a hit would be slower than a lookup)
+ *     legacy   TexasHold_em.evaluateHand(ArrayList), the original
+ *              evaluator working on Cards and Strings
+ *
+ * Omaha deals are evaluated by the lookup engine with an OmahaBoard, and
+ * by the others one combination of two hole cards and three community
+ * cards at a time (see OmahaBoard.evaluateCombinations()). Short-deck
+ * deals are evaluated by the lookup engine with ShortDeckTable, and by
+ * the others with TexasHold_em.evaluateShortDeckHand(), so shadowing
+ * any of them checks the table against the reference.
+ *
+ * Engines may keep scratch state and are not thread safe: every thread
+ * creates its own.
+ *
+ ***********************************************************************
+ */
+public interface HandEvaluator {
+
+
+    /********************************************************
+     ************** PUBLIC CLASS VARIABLES ******************
+     ********************************************************/
+    String[] ENGINES = {"lookup", "bitmask", "cached", "legacy"};
+    String DEFAULT_ENGINE = "lookup";
+
+
+    /*********************************************************
+     **************** PUBLIC INSTANCE METHODS ****************
+     *********************************************************/
+
+    /**
+     * Returns the strength of the best hand that can be made from the 5 to 7 cards in a card
+     * mask
+     *
+     * @param cardMask
+     * @return int
+     */
+    int evaluate(long cardMask);
+
+    /**
+     * Same as evaluate(long) for short-deck Hold'em, see TexasHold_em.evaluateShortDeckHand()
+     *
+     * @param cardMask
+     * @return int
+     */
+    default int evaluateShortDeck(long cardMask) {
+        return TexasHold_em.evaluateShortDeckHand(cardMask);
+    }
+
+    /**
+     * Fills in the strength of each seat's best hand of a deal, of any variant. Engines that
+     * can preprocess the board override this.
+     *
+     * @param deal
+     * @param strengths must have room for every seat; overwritten
+     */
+    default void evaluate(Deal deal, int[] strengths) {
+        int[] holeCards = deal.getHoleCards();
+        if (deal.getVariant() == Deal.OMAHA) {
+            int holeSize = deal.getHoleSize();
+            for (int seat = 0; seat < deal.getNumPlayers(); seat++) {
+                strengths[seat] = OmahaBoard.evaluateCombinations(this, deal.getBoard(), holeCards, holeSize * seat,
+                        holeSize);
+            }
+            return;
+        }
+        long board = Card.mask(deal.getBoard());
+        if (deal.getVariant() == Deal.SHORT_DECK) {
+            for (int seat = 0; seat < deal.getNumPlayers(); seat++) {
+                strengths[seat] = evaluateShortDeck(board | 1L << holeCards[2 * seat] | 1L << holeCards[2 * seat + 1]);
+            }
+            return;
+        }
+        for (int seat = 0; seat < deal.getNumPlayers(); seat++) {
+            strengths[seat] = evaluate(board | 1L << holeCards[2 * seat] | 1L << holeCards[2 * seat + 1]);
+        }
+    }
+
+    /**
+     * Gets ready to evaluate single seats of a deal with evaluateSeat(). Engines that can
+     * preprocess the board override this.
+     *
+     * @param deal
+     */
+    default void prepare(Deal deal) {
+    }
+
+    /**
+     * Returns the strength of the best hand of one seat of a deal, of any variant, so that
+     * only the seats that matter have to be evaluated (see Showdown). prepare() must have been
+     * called with the deal first.
+     *
+     * @param deal
+     * @param seat
+     * @return int
+     */
+    default int evaluateSeat(Deal deal, int seat) {
+        int[] holeCards = deal.getHoleCards();
+        if (deal.getVariant() == Deal.OMAHA) {
+            int holeSize = deal.getHoleSize();
+            return OmahaBoard.evaluateCombinations(this, deal.getBoard(), holeCards, holeSize * seat, holeSize);
+        }
+        long cardMask = deal.getBoardMask() | 1L << holeCards[2 * seat] | 1L << holeCards[2 * seat + 1];
+        return deal.getVariant() == Deal.SHORT_DECK ? evaluateShortDeck(cardMask) : evaluate(cardMask);
+    }
+
+    /**
+     * Returns whether evaluating a seat of a deal of the given variant costs less than working
+     * out Showdown's upper bound of it, in which case Showdown evaluates every seat instead of
+     * bounding them first. Engines that evaluate a seat in a few table lookups or bit
+     * operations override this.
+     *
+     * @param variant
+     * @return boolean
+     */
+    default boolean isCheaperThanBound(int variant) {
+        return false;
+    }
+
+
+    /*********************************************************
+     ****************** PUBLIC CLASS METHODS *****************
+     *********************************************************/
+
+    /**
+     * Creates a new instance of the engine with the given name, see above
+     *
+     * @param engine
+     * @return HandEvaluator
+     * @throws IllegalArgumentException if there is no such engine
+     */
+    static HandEvaluator create(String engine) {
+        switch (engine) {
+            case "lookup":
+                return new BoardState();
+            case "bitmask":
+                return new HandEvaluator() {
+                    public int evaluate(long cardMask) {
+                        return TexasHold_em.evaluateHand(cardMask);
+                    }
+
+                    // a Hold'em seat is one pass over its bit masks; Omaha seats take ten
+                    // passes and short-deck ones the slower evaluateShortDeckHand()
+                    public boolean isCheaperThanBound(int variant) {
+                        return variant == Deal.HOLDEM;
+                    }
+                };
+            case "cached":
+                return new EvaluationCache(1 << 16, HandEvaluator::evaluateLegacy);
+            case "legacy":
+                return HandEvaluator::evaluateLegacy;
+            default:
+                throw new IllegalArgumentException("Unknown engine: " + engine + ", expected one of "
+                        + String.join(", ", ENGINES));
+        }
+    }
+
+
+    /*********************************************************
+     ****************** PRIVATE CLASS METHODS ****************
+     *********************************************************/
+
+    /**
+     * Evaluates a card mask with the original evaluator, TexasHold_em.evaluateHand(ArrayList)
+     *
+     * @param cardMask
+     * @return
+     */
+    private static int evaluateLegacy(long cardMask) {
+        ArrayList<Card> cards = new ArrayList<>();
+        for (long rest = cardMask; rest != 0; rest &= rest - 1) {
+            cards.add(Card.of(Long.numberOfTrailingZeros(rest)));
+        }
+        return TexasHold_em.handStrength(TexasHold_em.evaluateHand(cards));
+    }
+}
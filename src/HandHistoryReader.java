@@ -0,0 +1,214 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/************************* HAND HISTORY READER *************************
+ * Reads the deals of a binary hand history file written by
+ * HandHistoryWriter, straight out of the memory-mapped file into a
+ * reusable Deal: no Cards or Strings are created and nothing is parsed.
+ *
+ * A mapping can't exceed 2 GB, so larger files are mapped a window of
+ * whole records at a time.
+ *
+ * Every record is checked with DealValidator. An invalid record throws
+ * an InvalidDealException and is skipped, so reading can go on.
+ *
+ ***********************************************************************
+ */
+public class HandHistoryReader implements DealSource, AutoCloseable {
+
+
+    /********************************************************
+     ************** PRIVATE CLASS VARIABLES *****************
+     ********************************************************/
+    private static final long WINDOW_SIZE = 1L << 30; // bytes mapped at a time, at most
+
+
+    /********************************************************
+     ************** PRIVATE INSTANCE VARIABLES *****************
+     ********************************************************/
+    private final FileChannel channel;
+    private final long size;
+    private final int seats;
+    private final int recordSize;
+    private MappedByteBuffer window;
+    private long windowStart; // file offset of the start of window
+    private long position; // file offset of the next record
+    private long recordNumber; // number of the next record, from 0
+
+
+    /********************************************************
+     ******************** CONSTRUCTOR ***********************
+     ********************************************************/
+
+    /**
+     * Constructor that opens a hand history file and checks its header
+     *
+     * @param file
+     * @throws IOException if the file can't be read or isn't a hand history
+     */
+    public HandHistoryReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(HandHistoryWriter.HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // keep reading until the header is complete or the file ends
+            }
+            if (header.hasRemaining() || header.getInt(0) != HandHistoryWriter.MAGIC) {
+                throw new IOException("Not a hand history file: " + file);
+            }
+            if (header.getInt(4) != HandHistoryWriter.VERSION) {
+                throw new IOException("Unsupported hand history version " + header.getInt(4) + ": " + file);
+            }
+            seats = header.getInt(8);
+            if (seats < 1 || seats > Deal.MAX_PLAYERS) {
+                throw new IOException("Hand history with " + seats + " seats per record: " + file);
+            }
+            recordSize = HandHistoryWriter.recordSize(seats);
+            if ((size - HandHistoryWriter.HEADER_SIZE) % recordSize != 0) {
+                throw new IOException("Hand history ends in a partial record: " + file);
+            }
+            position = HandHistoryWriter.HEADER_SIZE;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+
+    /*********************************************************
+     **************** PUBLIC INSTANCE METHODS ****************
+     *********************************************************/
+
+    /**
+     * Reads the next record into the given Deal. Returns false after the last record.
+     *
+     * @param deal
+     * @return boolean
+     * @throws InvalidDealException if the record holds an invalid player count or card; the next
+     *                              call reads on from the next record
+     * @throws IOException if the file can't be read
+     */
+    public boolean next(Deal deal) throws IOException {
+        if (position == size) {
+            return false;
+        }
+        boolean timed = JudgeMetrics.isEnabled();
+        long start = timed ? System.nanoTime() : 0L;
+        if (window == null || position + recordSize > windowStart + window.limit()) {
+            map();
+        }
+        int p = (int) (position - windowStart);
+        // move past the record first, so an invalid one is skipped rather than read again
+        position += recordSize;
+        recordNumber++;
+
+        int numPlayers = window.get(p++);
+        if (numPlayers < 1 || numPlayers > seats) {
+            throw error(DealValidator.BAD_PLAYER_COUNT, "number of players out of range: " + numPlayers);
+        }
+        deal.setNumPlayers(numPlayers);
+        deal.setVariant(Deal.HOLDEM, Deal.HOLE_SIZE);
+
+        int[] board = deal.getBoard();
+        for (int i = 0; i < Deal.BOARD_SIZE; i++) {
+            board[i] = card(window.get(p++));
+        }
+
+        // records hold showdowns only, without contributions or folds
+        int[] playerIds = deal.getPlayerIds();
+        int[] holeCards = deal.getHoleCards();
+        long[] contributions = deal.getContributions();
+        deal.setFolded(0L);
+        for (int seat = 0; seat < numPlayers; seat++) {
+            contributions[seat] = 0L;
+            playerIds[seat] = window.getInt(p);
+            holeCards[Deal.HOLE_SIZE * seat] = card(window.get(p + 4));
+            holeCards[Deal.HOLE_SIZE * seat + 1] = card(window.get(p + 5));
+            p += 4 + Deal.HOLE_SIZE;
+        }
+
+        int code = DealValidator.validate(deal);
+        if (code != DealValidator.VALID) {
+            throw error(code, DealValidator.describe(deal, code));
+        }
+        if (timed) {
+            JudgeMetrics.recordParse(System.nanoTime() - start);
+        }
+        return true;
+    }
+
+    /**
+     * Getter to return the number of seats in every record
+     *
+     * @return int
+     */
+    public int getSeats() {
+        return seats;
+    }
+
+    /**
+     * Getter to return the number of deals in the file
+     *
+     * @return long
+     */
+    public long getCount() {
+        return (size - HandHistoryWriter.HEADER_SIZE) / recordSize;
+    }
+
+    /**
+     * Closes the file
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+
+    /*********************************************************
+     *************** PRIVATE INSTANCE METHODS ****************
+     *********************************************************/
+
+    /**
+     * Maps the next window of whole records, starting at the next record
+     *
+     * @throws IOException
+     */
+    private void map() throws IOException {
+        long length = Math.min(size - position, WINDOW_SIZE / recordSize * recordSize);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        windowStart = position;
+    }
+
+    /**
+     * Returns the card id stored in a byte, checking it is one
+     *
+     * @param b
+     * @return
+     * @throws IOException
+     */
+    private int card(byte b) throws IOException {
+        int id = b & 0xFF;
+        if (id >= Card.NUM_CARDS) {
+            throw error(DealValidator.BAD_CARD, "not a card id: " + id);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the exception for the record just read, numbered from 0
+     *
+     * @param code
+     * @param message
+     * @return
+     */
+    private InvalidDealException error(int code, String message) {
+        return new InvalidDealException(code, "Malformed record " + (recordNumber - 1) + ": " + message);
+    }
+}
@@ -0,0 +1,229 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/************************* HAND HISTORY WRITER *************************
+ * Writes deals to a binary hand history file, which HandHistoryReader
+ * reads back without any parsing.
+ *
+ * File layout, big-endian:
+ *     int     magic, "THHH"
+ *     int     version, 1
+ *     int     seats per record, 1 to Deal.MAX_PLAYERS
+ * then one fixed-width record per deal:
+ *     byte    number of players
+ *     byte[5] community card ids (see Card.getId())
+ *     then for every seat of the record:
+ *     int     player id
+ *     byte[2] hole card ids
+ * Seats past the number of players hold player id 0 and cards 0xFF.
+ * A record takes 6 + 6 * seats bytes; files written for at most 9
+ * players take 60 bytes a deal. Having two hole cards a seat, records
+ * hold Hold'em deals only.
+ *
+ ***********************************************************************
+ */
+public class HandHistoryWriter implements AutoCloseable {
+
+
+    /********************************************************
+     ************** PUBLIC CLASS VARIABLES ******************
+     ********************************************************/
+    public static final int MAGIC = 0x54484848; // "THHH"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 4 + 4 + 4;
+    public static final int NO_CARD = 0xFF;
+
+
+    /********************************************************
+     ************** PRIVATE INSTANCE VARIABLES *****************
+     ********************************************************/
+    private final OutputStream out;
+    private final int seats;
+    private final ByteBuffer record; // scratch for one record
+    private long count;
+
+
+    /********************************************************
+     ******************** CONSTRUCTOR ***********************
+     ********************************************************/
+
+    /**
+     * Constructor that creates a HandHistoryWriter writing records of the given number of
+     * seats to a new file, replacing any existing one
+     *
+     * @param file
+     * @param seats the largest number of players of the deals to be written
+     * @throws IOException
+     */
+    public HandHistoryWriter(Path file, int seats) throws IOException {
+        if (seats < 1 || seats > Deal.MAX_PLAYERS) {
+            throw new IllegalArgumentException("Seats must be between 1 and " + Deal.MAX_PLAYERS + ": " + seats);
+        }
+        this.seats = seats;
+        this.record = ByteBuffer.allocate(recordSize(seats));
+        this.out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(seats);
+        out.write(header.array());
+    }
+
+
+    /*********************************************************
+     ****************** PUBLIC CLASS METHODS *****************
+     *********************************************************/
+
+    /**
+     * Returns the size in bytes of one record of a file with the given number of seats
+     *
+     * @param seats
+     * @return int
+     */
+    public static int recordSize(int seats) {
+        return 1 + Deal.BOARD_SIZE + seats * (4 + Deal.HOLE_SIZE);
+    }
+
+    /**
+     * Converts deals in the text input format into a hand history file, writing errors to
+     * System.err, see convert(InputStream, Path, int, PrintStream)
+     *
+     * @param in
+     * @param file
+     * @param seats
+     * @return the number of deals converted
+     * @throws IOException
+     */
+    public static long convert(InputStream in, Path file, int seats) throws IOException {
+        return convert(in, file, seats, System.err);
+    }
+
+    /**
+     * Converts deals in the text input format into a hand history file. An invalid deal is
+     * skipped with an error line written to errors, as BatchJudger writes it in place of the
+     * winners, and the deals after it are still converted; if any were skipped, their number
+     * is written to errors at the end.
+     *
+     * @param in
+     * @param file
+     * @param seats
+     * @param errors
+     * @return the number of deals converted, not counting skipped ones
+     * @throws IOException if the input can't be read or has a deal with more players than
+     *                     seats or of another variant than Hold'em
+     */
+    public static long convert(InputStream in, Path file, int seats, PrintStream errors) throws IOException {
+        DealReader reader = new DealReader(in);
+        Deal deal = new Deal();
+        long skipped = 0;
+        try (HandHistoryWriter writer = new HandHistoryWriter(file, seats)) {
+            while (true) {
+                try {
+                    if (!reader.next(deal)) {
+                        break;
+                    }
+                } catch (InvalidDealException e) {
+                    errors.print(BatchJudger.errorLine(e));
+                    skipped++;
+                    continue;
+                }
+                writer.write(deal);
+            }
+            if (skipped > 0) {
+                errors.println("Skipped " + skipped + " invalid deals");
+            }
+            return writer.getCount();
+        }
+    }
+
+
+    /*********************************************************
+     **************** PUBLIC INSTANCE METHODS ****************
+     *********************************************************/
+
+    /**
+     * Appends one deal as a record
+     *
+     * @param deal
+     * @throws IOException if the deal has more players than the file has seats, or isn't a
+     *                     Hold'em deal
+     */
+    public void write(Deal deal) throws IOException {
+        int numPlayers = deal.getNumPlayers();
+        if (numPlayers > seats) {
+            throw new IOException("Deal with " + numPlayers + " players doesn't fit in " + seats + " seats");
+        }
+        if (deal.getVariant() != Deal.HOLDEM) {
+            throw new IOException("Hand histories hold Hold'em deals only, not " + Deal.variantName(deal.getVariant()));
+        }
+        int[] board = deal.getBoard();
+        int[] playerIds = deal.getPlayerIds();
+        int[] holeCards = deal.getHoleCards();
+
+        record.clear();
+        record.put((byte) numPlayers);
+        for (int i = 0; i < Deal.BOARD_SIZE; i++) {
+            record.put((byte) board[i]);
+        }
+        for (int seat = 0; seat < seats; seat++) {
+            if (seat < numPlayers) {
+                record.putInt(playerIds[seat]);
+                record.put((byte) holeCards[Deal.HOLE_SIZE * seat]);
+                record.put((byte) holeCards[Deal.HOLE_SIZE * seat + 1]);
+            } else {
+                record.putInt(0);
+                record.put((byte) NO_CARD);
+                record.put((byte) NO_CARD);
+            }
+        }
+        out.write(record.array(), 0, record.position());
+        count++;
+    }
+
+    /**
+     * Getter to return the number of deals written so far
+     *
+     * @return long
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Writes out everything buffered and closes the file
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        out.close();
+    }
+
+
+    /*********************************************************
+     ****************** MAIN METHOD **************************
+     *********************************************************/
+
+    /**
+     * java HandHistoryWriter <file> [seats] < deals.txt
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java HandHistoryWriter <file> [seats per record] < deals.txt");
+            return;
+        }
+        int seats = args.length > 1 ? Integer.parseInt(args[1]) : Deal.MAX_PLAYERS;
+        try {
+            long count = convert(System.in, Paths.get(args[0]), seats);
+            System.out.println("Wrote " + count + " deals to " + args[0]);
+        } catch (IOException e) {
+            System.err.println("ERROR. " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
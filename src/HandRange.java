@@ -0,0 +1,287 @@
+/****************************** HAND RANGE *****************************
+ * A weighted range of hole cards: a weight from 0 to 1 for each of the
+ * 1326 combinations of two cards, the fraction of the time a player
+ * would hold that combination in the spot.
+ *
+ * Ranges are written as a list of hands separated by commas or spaces,
+ * each one of:
+ *     QQ, AKs, AKo, AK     a starting hand class, AK being AKs and AKo
+ *     QQ+, ATs+            the pairs from QQ up, AT AJ AQ AK suited
+ *     99-66, KQs-K9s       the pairs or kickers from one hand to another
+ *     AhKh                 a single combination
+ * optionally followed by a weight, ":0.5" or ":50%", 1 by default, as in
+ *     "QQ+, AKs, AQo:0.5, AhTh:25%"
+ * A hand listed again replaces the weight it was given before.
+ *
+ ***********************************************************************
+ */
+public class HandRange {
+
+
+    /********************************************************
+     ************** PRIVATE INSTANCE VARIABLES *****************
+     ********************************************************/
+    private final double[] weights = new double[StartingHands.NUM_COMBOS]; // indexed by comboIndex()
+
+
+    /*********************************************************
+     ****************** PUBLIC CLASS METHODS *****************
+     *********************************************************/
+
+    /**
+     * Returns the range written in s, see above
+     *
+     * @param s
+     * @return HandRange
+     * @throws IllegalArgumentException if s isn't a range
+     */
+    public static HandRange parse(String s) {
+        HandRange range = new HandRange();
+        for (String token : s.trim().split("[,\\s]+")) {
+            if (!token.isEmpty()) {
+                range.add(token);
+            }
+        }
+        return range;
+    }
+
+
+    /*********************************************************
+     **************** PUBLIC INSTANCE METHODS ****************
+     *********************************************************/
+
+    /**
+     * Sets the weight of a combination
+     *
+     * @param card1
+     * @param card2
+     * @param weight from 0 (never held) to 1
+     */
+    public void set(int card1, int card2, double weight) {
+        if (card1 == card2 || card1 < 0 || card2 < 0 || card1 >= Card.NUM_CARDS || card2 >= Card.NUM_CARDS) {
+            throw new IllegalArgumentException("Not a combination: " + card1 + " " + card2);
+        }
+        if (!(weight >= 0.0 && weight <= 1.0)) {
+            throw new IllegalArgumentException("Weight out of range: " + weight);
+        }
+        weights[StartingHands.comboIndex(card1, card2)] = weight;
+    }
+
+    /**
+     * Returns the weight of a combination, 0 if it isn't in the range
+     *
+     * @param card1
+     * @param card2
+     * @return double
+     */
+    public double getWeight(int card1, int card2) {
+        return weights[StartingHands.comboIndex(card1, card2)];
+    }
+
+    /**
+     * Returns the indexes (see StartingHands.comboIndex()) of the combinations in the range,
+     * those with a weight above 0, in ascending order
+     *
+     * @return int[]
+     */
+    public int[] getCombos() {
+        int[] combos = new int[size()];
+        int n = 0;
+        for (int i = 0; i < weights.length; i++) {
+            if (weights[i] > 0.0) {
+                combos[n++] = i;
+            }
+        }
+        return combos;
+    }
+
+    /**
+     * Returns the number of combinations in the range
+     *
+     * @return int
+     */
+    public int size() {
+        int size = 0;
+        for (double weight : weights) {
+            if (weight > 0.0) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * String representation of a HandRange, class by class from AA down, naming single
+     * combinations only for classes that are partly in the range
+     *
+     * @return String
+     */
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int handClass = StartingHands.NUM_CLASSES - 1; handClass >= 0; handClass--) {
+            int[][] combos = StartingHands.combos(handClass);
+            double first = getWeight(combos[0][0], combos[0][1]);
+            boolean uniform = true;
+            for (int[] combo : combos) {
+                uniform &= getWeight(combo[0], combo[1]) == first;
+            }
+            if (uniform) {
+                append(sb, StartingHands.name(handClass), first);
+                continue;
+            }
+            for (int[] combo : combos) {
+                append(sb, Card.of(combo[0]).toString() + Card.of(combo[1]), getWeight(combo[0], combo[1]));
+            }
+        }
+        return sb.toString();
+    }
+
+
+    /*********************************************************
+     *************** PRIVATE INSTANCE METHODS ****************
+     *********************************************************/
+
+    /**
+     * Adds one hand of a range, with its weight if it has one
+     *
+     * @param token
+     */
+    private void add(String token) {
+        String hands = token;
+        double weight = 1.0;
+        int colon = token.indexOf(':');
+        if (colon >= 0) {
+            hands = token.substring(0, colon);
+            weight = parseWeight(token.substring(colon + 1), token);
+        }
+
+        if (hands.length() == 4 && Card.suitIndex(hands.charAt(1)) >= 0 && Card.suitIndex(hands.charAt(3)) >= 0) {
+            int card1 = Card.id(hands.charAt(0), hands.charAt(1));
+            int card2 = Card.id(hands.charAt(2), hands.charAt(3));
+            if (card1 < 0 || card2 < 0 || card1 == card2) {
+                throw invalid(token);
+            }
+            set(card1, card2, weight);
+            return;
+        }
+
+        int dash = hands.indexOf('-');
+        if (dash >= 0) {
+            int[] from = parseClass(hands.substring(0, dash), token);
+            int[] to = parseClass(hands.substring(dash + 1), token);
+            boolean pairs = from[0] == from[1] && to[0] == to[1];
+            if (!pairs && (from[0] != to[0] || from[2] != to[2] || from[0] == from[1] || to[0] == to[1])) {
+                throw invalid(token);
+            }
+            // pairs run over both ranks, other hands over the kicker only
+            int a = pairs ? from[0] : from[1];
+            int b = pairs ? to[0] : to[1];
+            for (int rank = Math.min(a, b); rank <= Math.max(a, b); rank++) {
+                addClass(pairs ? rank : from[0], rank, from[2], weight);
+            }
+        } else if (hands.endsWith("+")) {
+            int[] hand = parseClass(hands.substring(0, hands.length() - 1), token);
+            if (hand[0] == hand[1]) {
+                for (int rank = hand[0]; rank < Card.NUM_RANKS; rank++) {
+                    addClass(rank, rank, hand[2], weight);
+                }
+            } else {
+                for (int low = hand[1]; low < hand[0]; low++) {
+                    addClass(hand[0], low, hand[2], weight);
+                }
+            }
+        } else {
+            int[] hand = parseClass(hands, token);
+            addClass(hand[0], hand[1], hand[2], weight);
+        }
+    }
+
+    /**
+     * Sets the weight of every combination of the starting hands with the given ranks
+     *
+     * @param high rank index
+     * @param low rank index
+     * @param kind 's' for suited, 'o' for offsuit, 0 for both; ignored for pairs
+     * @param weight
+     */
+    private void addClass(int high, int low, int kind, double weight) {
+        if (high == low || kind != 'o') {
+            setAll(StartingHands.combos(high * Card.NUM_RANKS + low), weight);
+        }
+        if (high != low && kind != 's') {
+            setAll(StartingHands.combos(low * Card.NUM_RANKS + high), weight);
+        }
+    }
+
+    private void setAll(int[][] combos, double weight) {
+        for (int[] combo : combos) {
+            set(combo[0], combo[1], weight);
+        }
+    }
+
+
+    /*********************************************************
+     ****************** PRIVATE CLASS METHODS ****************
+     *********************************************************/
+
+    /**
+     * Parses a starting hand such as "QQ", "AKs", "AKo" or "AK"
+     *
+     * @param hand
+     * @param token the whole hand of the range, for the error message
+     * @return the high rank index, the low rank index and 's', 'o' or 0
+     */
+    private static int[] parseClass(String hand, String token) {
+        if (hand.length() < 2 || hand.length() > 3) {
+            throw invalid(token);
+        }
+        int rank1 = Card.rankIndex(hand.charAt(0));
+        int rank2 = Card.rankIndex(hand.charAt(1));
+        int kind = hand.length() == 3 ? hand.charAt(2) : 0;
+        if (rank1 < 0 || rank2 < 0 || (kind != 0 && kind != 's' && kind != 'o') || (rank1 == rank2 && kind != 0)) {
+            throw invalid(token);
+        }
+        return new int[] {Math.max(rank1, rank2), Math.min(rank1, rank2), kind};
+    }
+
+    /**
+     * Parses a weight such as "0.5" or "50%"
+     *
+     * @param s
+     * @param token
+     * @return
+     */
+    private static double parseWeight(String s, String token) {
+        try {
+            double weight = s.endsWith("%")
+                    ? Double.parseDouble(s.substring(0, s.length() - 1)) / 100.0
+                    : Double.parseDouble(s);
+            if (!(weight >= 0.0 && weight <= 1.0)) {
+                throw invalid(token);
+            }
+            return weight;
+        } catch (NumberFormatException e) {
+            throw invalid(token);
+        }
+    }
+
+    private static IllegalArgumentException invalid(String token) {
+        return new IllegalArgumentException("Not a hand of a range: " + token);
+    }
+
+    /**
+     * Appends a hand and its weight to a range being written out, if its weight isn't 0
+     */
+    private static void append(StringBuilder sb, String hand, double weight) {
+        if (weight == 0.0) {
+            return;
+        }
+        if (sb.length() > 0) {
+            sb.append(", ");
+        }
+        sb.append(hand);
+        if (weight != 1.0) {
+            sb.append(':').append(weight);
+        }
+    }
+}
@@ -0,0 +1,423 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/************************** HAND RANK TABLE *********************************************
+ * A lookup-table evaluator for seven card hands.
+ *
+ * Each rank is given a key such that the sum of the keys of any seven ranks (with at most
+ * four of each) is unique, so the sum identifies the ranks of a hand and indexes a table
+ * holding the strength of every hand without a flush. Hands with a flush are looked up
+ * in a second table indexed by the 13 rank bits of the flush suit; with seven cards a
+ * flush can never be beaten by a full house or four of a kind, so the flush table alone
+ * decides those hands.
+ *
+ * Hands of exactly five cards, which is what every combination of an
+ * Omaha hand is (see OmahaBoard), get tables of their own: with fewer
+ * cards, smaller rank keys keep the sums unique, so the table of five card
+ * hands without a flush is 20 times smaller than that of seven card hands.
+ *
+ * The strengths are the same packed integers as TexasHold_em.evaluateHand(long) returns,
+ * so results of both can be compared with each other. The tables are built once, when
+ * the class is first used, from TexasHold_em.evaluateHand(long).
+ *
+ * Running the class cross-checks the tables against both evaluators they were derived
+ * from, on seeded random seven card hands, and exits with 1 if any of them disagree:
+ *
+ *     java HandRankTable [hands] [--seed n]
+ ***************************************************************************************
+ */
+public class HandRankTable {
+
+    /********************************************************
+     ************** PRIVATE CLASS VARIABLES *****************
+     ********************************************************/
+    private static final int HAND_SIZE = 7;
+    private static final int FIVE_CARD_HAND_SIZE = 5;
+
+    // rank keys whose 7-card sums are all distinct, indexed by rank index (2 - A)
+    private static final int[] RANK_KEYS = {0, 1, 5, 22, 98, 453, 2031, 8698, 22854, 83661,
+            262349, 636345, 1479181};
+    // rank keys whose 5-card sums are all distinct
+    private static final int[] RANK_KEYS_5 = {0, 1, 5, 22, 94, 312, 992, 2422, 5624, 12522, 19998, 43258,
+            79415};
+
+    // suit counters are kept in 4 bits per suit; adding 3 to a count of 5 or more sets the
+    // highest bit of its group, which FLUSH_CHECK picks out
+    private static final int SUIT_ADJUST = 0x3333;
+    private static final int FLUSH_CHECK = 0x8888;
+
+    // per card id: the rank key and a count of one for the card's suit
+    private static final int[] CARD_KEYS = new int[Card.NUM_CARDS];
+    private static final int[] SUIT_KEYS = new int[Card.NUM_CARDS];
+    private static final int[] CARD_KEYS_5 = new int[Card.NUM_CARDS];
+
+    // rank key sum -> index into STRENGTHS (plus one, 0 marks sums that can't occur)
+    private static final char[] RANK_CLASSES;
+    // the distinct strengths of hands without a flush, in ascending order
+    private static final int[] STRENGTHS;
+    // the same for hands of exactly five cards, by 5-card rank key sum
+    private static final char[] RANK_CLASSES_5;
+    private static final int[] STRENGTHS_5;
+    // 13 rank bits of a suit with at least 5 cards -> strength of the flush or straight flush
+    private static final int[] FLUSHES = new int[1 << Card.NUM_RANKS];
+
+    static {
+        for (int id = 0; id < Card.NUM_CARDS; id++) {
+            CARD_KEYS[id] = RANK_KEYS[id % Card.NUM_RANKS];
+            SUIT_KEYS[id] = 1 << (4 * (id / Card.NUM_RANKS));
+            CARD_KEYS_5[id] = RANK_KEYS_5[id % Card.NUM_RANKS];
+        }
+
+        int[] strengthOfKey = strengthsOfKeys(RANK_KEYS, HAND_SIZE);
+        STRENGTHS = distinctStrengths(strengthOfKey);
+        RANK_CLASSES = rankClasses(strengthOfKey, STRENGTHS);
+
+        strengthOfKey = strengthsOfKeys(RANK_KEYS_5, FIVE_CARD_HAND_SIZE);
+        STRENGTHS_5 = distinctStrengths(strengthOfKey);
+        RANK_CLASSES_5 = rankClasses(strengthOfKey, STRENGTHS_5);
+
+        for (int ranks = 0; ranks < FLUSHES.length; ranks++) {
+            if (Integer.bitCount(ranks) >= 5) {
+                FLUSHES[ranks] = TexasHold_em.evaluateHand((long) ranks); // all clubs
+            }
+        }
+    }
+
+
+    /*********************************************************
+     ****************** PUBLIC CLASS METHODS *****************
+     *********************************************************/
+
+    /**
+     * Returns the strength of the best hand that can be made from the seven given card ids
+     * (see Card.getId()). A larger strength always beats a smaller one.
+     *
+     * @param c1
+     * @param c2
+     * @param c3
+     * @param c4
+     * @param c5
+     * @param c6
+     * @param c7
+     * @return
+     */
+    public static int evaluate(int c1, int c2, int c3, int c4, int c5, int c6, int c7) {
+        int suits = SUIT_KEYS[c1] + SUIT_KEYS[c2] + SUIT_KEYS[c3] + SUIT_KEYS[c4]
+                + SUIT_KEYS[c5] + SUIT_KEYS[c6] + SUIT_KEYS[c7];
+        int flush = (suits + SUIT_ADJUST) & FLUSH_CHECK;
+        if (flush != 0) {
+            long cardMask = 1L << c1 | 1L << c2 | 1L << c3 | 1L << c4 | 1L << c5 | 1L << c6 | 1L << c7;
+            return flushStrength(flush, cardMask);
+        }
+        int key = CARD_KEYS[c1] + CARD_KEYS[c2] + CARD_KEYS[c3] + CARD_KEYS[c4]
+                + CARD_KEYS[c5] + CARD_KEYS[c6] + CARD_KEYS[c7];
+        return STRENGTHS[RANK_CLASSES[key] - 1];
+    }
+
+    /**
+     * Same as evaluate(int, int, int, int, int, int, int) with the card ids in an array,
+     * which must hold exactly seven cards
+     *
+     * @param cards
+     * @return
+     */
+    public static int evaluate(int[] cards) {
+        return evaluate(cards[0], cards[1], cards[2], cards[3], cards[4], cards[5], cards[6]);
+    }
+
+    /**
+     * Returns the strength of the best hand that can be made from the cards in a card mask
+     * (see Card.mask()). Masks of seven cards are looked up in the tables, any other number
+     * of cards is handed to TexasHold_em.evaluateHand(long).
+     *
+     * @param cardMask
+     * @return
+     */
+    public static int evaluate(long cardMask) {
+        if (Long.bitCount(cardMask) != HAND_SIZE) {
+            return TexasHold_em.evaluateHand(cardMask);
+        }
+        int suits = 0;
+        int key = 0;
+        for (long cards = cardMask; cards != 0; cards &= cards - 1) {
+            int id = Long.numberOfTrailingZeros(cards);
+            suits += SUIT_KEYS[id];
+            key += CARD_KEYS[id];
+        }
+        return evaluate(key, suits, cardMask);
+    }
+
+    /**
+     * Returns the rank key of a card. The rank keys of seven cards add up to the key that
+     * evaluate(int, int, long) expects, so the sum for cards shared by many hands, such as
+     * the community cards, can be computed once and reused.
+     *
+     * @param id
+     * @return
+     */
+    public static int rankKey(int id) {
+        return CARD_KEYS[id];
+    }
+
+    /**
+     * Returns the suit key of a card, to be added up like rankKey()
+     *
+     * @param id
+     * @return
+     */
+    public static int suitKey(int id) {
+        return SUIT_KEYS[id];
+    }
+
+    /**
+     * Returns the strength of seven cards given the sums of their rank keys and suit keys and
+     * their card mask
+     *
+     * @param rankKey
+     * @param suitKey
+     * @param cardMask
+     * @return
+     */
+    public static int evaluate(int rankKey, int suitKey, long cardMask) {
+        int flush = (suitKey + SUIT_ADJUST) & FLUSH_CHECK;
+        if (flush != 0) {
+            return flushStrength(flush, cardMask);
+        }
+        return STRENGTHS[RANK_CLASSES[rankKey] - 1];
+    }
+
+    /**
+     * Returns the strength of seven cards that can't make a flush, given the sum of their
+     * rank keys
+     *
+     * @param rankKey
+     * @return
+     */
+    public static int evaluateRanks(int rankKey) {
+        return STRENGTHS[RANK_CLASSES[rankKey] - 1];
+    }
+
+    /**
+     * Returns the rank key of a card in hands of exactly five cards, to be added up like
+     * rankKey() into the key that evaluateRanks5() expects
+     *
+     * @param id
+     * @return int
+     */
+    public static int rankKey5(int id) {
+        return CARD_KEYS_5[id];
+    }
+
+    /**
+     * Returns the strength of five cards that don't make a flush, given the sum of their
+     * rankKey5() keys
+     *
+     * @param rankKey5
+     * @return int
+     */
+    public static int evaluateRanks5(int rankKey5) {
+        return STRENGTHS_5[RANK_CLASSES_5[rankKey5] - 1];
+    }
+
+    /**
+     * Returns the class of five cards that don't make a flush, given the sum of their
+     * rankKey5() keys: the classes number the strengths of such hands from 1 for the weakest
+     * up, so that a greater class is a better hand, and fit in a char
+     *
+     * @param rankKey5
+     * @return int
+     */
+    public static int rankClass5(int rankKey5) {
+        return RANK_CLASSES_5[rankKey5];
+    }
+
+    /**
+     * Returns the strength of the five card hands of a class, see rankClass5()
+     *
+     * @param rankClass
+     * @return int
+     */
+    public static int strengthOfClass5(int rankClass) {
+        return STRENGTHS_5[rankClass - 1];
+    }
+
+    /**
+     * Returns the strength of five to seven cards of one suit, given their rank bits (bit i
+     * set for rank index i, from 0 for a 2 to 12 for an ace)
+     *
+     * @param ranks
+     * @return int
+     */
+    public static int evaluateFlush(int ranks) {
+        return FLUSHES[ranks];
+    }
+
+
+    /*********************************************************
+     ****************** PRIVATE CLASS METHODS ****************
+     *********************************************************/
+
+    /**
+     * Looks up the flush of the suit whose counter bit is set in flush
+     *
+     * @param flush
+     * @param cardMask
+     * @return
+     */
+    private static int flushStrength(int flush, long cardMask) {
+        int suit = Integer.numberOfTrailingZeros(flush) >>> 2;
+        return FLUSHES[(int) (cardMask >>> (suit * Card.NUM_RANKS)) & (FLUSHES.length - 1)];
+    }
+
+    /**
+     * Returns the strength of every hand of the given size without a flush, indexed by the
+     * sum of the rank keys of its cards, 0 for sums that can't occur
+     *
+     * @param rankKeys
+     * @param handSize
+     * @return
+     */
+    private static int[] strengthsOfKeys(int[] rankKeys, int handSize) {
+        int maxKey = 4 * rankKeys[12] + (handSize - 4) * rankKeys[11];
+        int[] strengthOfKey = new int[maxKey + 1];
+        addRankCombinations(strengthOfKey, rankKeys, new int[Card.NUM_RANKS], 0, handSize);
+        return strengthOfKey;
+    }
+
+    private static int[] distinctStrengths(int[] strengthOfKey) {
+        return Arrays.stream(strengthOfKey).filter(x -> x != 0).distinct().sorted().toArray();
+    }
+
+    /**
+     * Maps every rank key sum to the index of its strength in strengths, plus one
+     *
+     * @param strengthOfKey
+     * @param strengths
+     * @return
+     */
+    private static char[] rankClasses(int[] strengthOfKey, int[] strengths) {
+        char[] rankClasses = new char[strengthOfKey.length];
+        for (int key = 0; key < strengthOfKey.length; key++) {
+            if (strengthOfKey[key] != 0) {
+                rankClasses[key] = (char) (Arrays.binarySearch(strengths, strengthOfKey[key]) + 1);
+            }
+        }
+        return rankClasses;
+    }
+
+    /**
+     * Recursively visits every way of choosing the remaining cards from the ranks starting
+     * at rankIndex, and records the strength of each complete hand by its rank key sum
+     *
+     * @param strengthOfKey
+     * @param rankKeys
+     * @param counts
+     * @param rankIndex
+     * @param remaining
+     */
+    private static void addRankCombinations(int[] strengthOfKey, int[] rankKeys, int[] counts, int rankIndex,
+                                            int remaining) {
+        if (remaining == 0) {
+            int key = 0;
+            long cardMask = 0L;
+            int suit = 0;
+            for (int r = 0; r < counts.length; r++) {
+                key += counts[r] * rankKeys[r];
+                // deal the copies of the ranks round robin over the suits, so that no suit
+                // gets more than two cards and the hand can't be a flush
+                for (int i = 0; i < counts[r]; i++) {
+                    cardMask |= 1L << Card.id(r, suit);
+                    suit = (suit + 1) % Card.NUM_SUITS;
+                }
+            }
+            int strength = TexasHold_em.evaluateHand(cardMask);
+            if (strengthOfKey[key] != 0 && strengthOfKey[key] != strength) {
+                throw new IllegalStateException("Rank keys collide at " + key);
+            }
+            strengthOfKey[key] = strength;
+            return;
+        }
+        if (rankIndex == counts.length) {
+            return;
+        }
+        for (int count = Math.min(4, remaining); count >= 0; count--) {
+            counts[rankIndex] = count;
+            addRankCombinations(strengthOfKey, rankKeys, counts, rankIndex + 1, remaining - count);
+        }
+        counts[rankIndex] = 0;
+    }
+
+
+    /*********************************************************
+     ****************** MAIN METHOD **************************
+     *********************************************************/
+
+    /**
+     * java HandRankTable [hands] [--seed n]
+     *
+     * Evaluates random seven card hands, 1000000 by default, with evaluate(int[]),
+     * evaluate(long), TexasHold_em.evaluateHand(long) and the legacy
+     * TexasHold_em.evaluateHand(ArrayList), printing every hand they disagree on
+     */
+    public static void main(String[] args) {
+        long count = 1000000;
+        long seed = 42;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--seed") && i + 1 < args.length) {
+                    seed = Long.parseLong(args[++i]);
+                } else if (args[i].startsWith("--")) {
+                    throw new IllegalArgumentException("Unknown option or missing value: " + args[i]);
+                } else {
+                    count = Long.parseLong(args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException included
+            System.err.println("ERROR. " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] deck = new int[Card.NUM_CARDS];
+        for (int id = 0; id < deck.length; id++) {
+            deck[id] = id;
+        }
+        int[] hand = new int[HAND_SIZE];
+        long[] categories = new long[11]; // hands by the rank of their hand, 1 to 10
+        long mismatches = 0;
+        for (long n = 0; n < count; n++) {
+            // a partial Fisher-Yates shuffle: the first seven cards of the deck make the hand
+            ArrayList<Card> cards = new ArrayList<>();
+            for (int i = 0; i < HAND_SIZE; i++) {
+                int j = i + random.nextInt(deck.length - i);
+                int card = deck[j];
+                deck[j] = deck[i];
+                deck[i] = card;
+                hand[i] = card;
+                cards.add(Card.of(card));
+            }
+            long cardMask = Card.mask(hand);
+            int expected = TexasHold_em.evaluateHand(cardMask);
+            int legacy = TexasHold_em.handStrength(TexasHold_em.evaluateHand(cards));
+            int fromArray = evaluate(hand);
+            int fromMask = evaluate(cardMask);
+            categories[TexasHold_em.handCategory(expected)]++;
+            if (legacy != expected || fromArray != expected || fromMask != expected) {
+                mismatches++;
+                System.out.printf("%s: evaluateHand(long) %x, legacy %x, evaluate(int[]) %x, evaluate(long) %x%n",
+                        cards, expected, legacy, fromArray, fromMask);
+            }
+        }
+
+        for (int category = 1; category < categories.length; category++) {
+            System.out.printf("%-16s %d%n", TexasHold_em.categoryName(category), categories[category]);
+        }
+        System.out.println("hands " + count + " mismatches " + mismatches);
+        if (mismatches > 0) {
+            System.exit(1);
+        }
+    }
+}
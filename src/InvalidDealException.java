@@ -0,0 +1,55 @@
+import java.io.IOException;
+
+/************************ INVALID DEAL EXCEPTION ***********************
+ * Thrown by a DealSource for a deal that is malformed or breaks the
+ * rules, with one of the error codes of DealValidator saying why.
+ *
+ * Only that deal is lost: the source moves past it, so reading can go
+ * on with the next deal.
+ *
+ ***********************************************************************
+ */
+public class InvalidDealException extends IOException {
+
+
+    /********************************************************
+     ************** PRIVATE CLASS VARIABLES *****************
+     ********************************************************/
+    private static final long serialVersionUID = 1L;
+
+
+    /********************************************************
+     ************** PRIVATE INSTANCE VARIABLES *****************
+     ********************************************************/
+    private final int code;
+
+
+    /********************************************************
+     ******************** CONSTRUCTOR ***********************
+     ********************************************************/
+
+    /**
+     * Constructor that creates an InvalidDealException with an error code and a message
+     *
+     * @param code one of the error codes of DealValidator
+     * @param message
+     */
+    public InvalidDealException(int code, String message) {
+        super(message);
+        this.code = code;
+    }
+
+
+    /*********************************************************
+     **************** PUBLIC INSTANCE METHODS ****************
+     *********************************************************/
+
+    /**
+     * Getter to return the error code, see DealValidator
+     *
+     * @return int
+     */
+    public int getCode() {
+        return code;
+    }
+}
@@ -0,0 +1,232 @@
+import java.io.PrintStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**************************** JUDGE METRICS ****************************
+ * Counters and latency histograms for the judging hot path, shared by
+ * every thread of the process:
+ *     - the number of deals judged, and how many ended in a tie
+ *     - the number of invalid deals, by error code (see DealValidator)
+ *     - the number of hands of each category (royal flush ... high card)
+ *     - the latency of parsing a deal (DealReader.next()), of evaluating
+ *       every hand of a deal, and of choosing its winners
+ *
+ * Metrics are off unless the system property judger.metrics is true, and
+ * can be turned on and off at any time with setEnabled(). While they are
+ * off, the instrumented code only reads one volatile flag per deal.
+ * Counters are LongAdders and histograms LatencyHistograms, so threads
+ * record without contending.
+ *
+ ***********************************************************************
+ */
+public class JudgeMetrics {
+
+
+    /********************************************************
+     ************** PRIVATE CLASS VARIABLES *****************
+     ********************************************************/
+    private static volatile boolean enabled = Boolean.getBoolean("judger.metrics");
+
+    private static final LongAdder DEALS = new LongAdder();
+    private static final LongAdder TIES = new LongAdder();
+    private static final LongAdder[] HANDS = new LongAdder[11]; // by category, 1 - 10
+    private static final LongAdder[] INVALID = new LongAdder[DealValidator.NUM_CODES]; // by error code
+
+    private static final LatencyHistogram PARSE = new LatencyHistogram();
+    private static final LatencyHistogram EVALUATE = new LatencyHistogram();
+    private static final LatencyHistogram WINNER = new LatencyHistogram();
+
+    static {
+        for (int category = 1; category < HANDS.length; category++) {
+            HANDS[category] = new LongAdder();
+        }
+        for (int code = 0; code < INVALID.length; code++) {
+            INVALID[code] = new LongAdder();
+        }
+    }
+
+
+    /*********************************************************
+     ****************** PUBLIC CLASS METHODS *****************
+     *********************************************************/
+
+    /**
+     * Returns whether metrics are being recorded
+     *
+     * @return boolean
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns recording of metrics on or off; what was recorded so far is kept
+     *
+     * @param on
+     */
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    /**
+     * Records the time taken to parse one deal
+     *
+     * @param nanos
+     */
+    public static void recordParse(long nanos) {
+        PARSE.record(nanos);
+    }
+
+    /**
+     * Records a deal that wasn't judged because it was malformed or invalid
+     *
+     * @param code the error code, see DealValidator
+     */
+    public static void recordInvalid(int code) {
+        INVALID[code].increment();
+    }
+
+    /**
+     * Records a judged deal: the category of every hand, whether it was a tie, and the time
+     * taken to evaluate the hands and to choose the winners
+     *
+     * @param strengths the strength of each seat's hand, 0 for seats that weren't evaluated
+     *                  (see Showdown)
+     * @param numPlayers
+     * @param winners the winning seats
+     * @param start System.nanoTime() before evaluating the hands
+     * @param evaluated System.nanoTime() after evaluating the hands
+     * @param end System.nanoTime() after choosing the winners
+     */
+    public static void recordDeal(int[] strengths, int numPlayers, long winners, long start, long evaluated,
+                                  long end) {
+        DEALS.increment();
+        if (Long.bitCount(winners) > 1) {
+            TIES.increment();
+        }
+        for (int seat = 0; seat < numPlayers; seat++) {
+            if (strengths[seat] != 0) {
+                HANDS[TexasHold_em.handCategory(strengths[seat])].increment();
+            }
+        }
+        EVALUATE.record(evaluated - start);
+        WINNER.record(end - evaluated);
+    }
+
+    /**
+     * Forgets everything recorded
+     */
+    public static void reset() {
+        DEALS.reset();
+        TIES.reset();
+        for (int category = 1; category < HANDS.length; category++) {
+            HANDS[category].reset();
+        }
+        for (int code = 0; code < INVALID.length; code++) {
+            INVALID[code].reset();
+        }
+        PARSE.reset();
+        EVALUATE.reset();
+        WINNER.reset();
+    }
+
+    /**
+     * Returns the metrics recorded so far as lines of text
+     *
+     * @return String
+     */
+    public static String snapshot() {
+        long deals = DEALS.sum();
+        long ties = TIES.sum();
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("deals %d ties %d (%.3f%%)%n", deals, ties, deals == 0 ? 0.0 : 100.0 * ties / deals));
+        sb.append("hands");
+        for (int category = 1; category < HANDS.length; category++) {
+            sb.append(' ').append(TexasHold_em.categoryName(category)).append(' ').append(HANDS[category].sum());
+        }
+        sb.append(String.format("%n"));
+        sb.append("invalid");
+        for (int code = 1; code < INVALID.length; code++) {
+            sb.append(' ').append(DealValidator.codeName(code)).append(' ').append(INVALID[code].sum());
+        }
+        sb.append(String.format("%n"));
+        sb.append("parse    ").append(PARSE).append(String.format("%n"));
+        sb.append("evaluate ").append(EVALUATE).append(String.format("%n"));
+        sb.append("winner   ").append(WINNER).append(String.format("%n"));
+        return sb.toString();
+    }
+
+    /**
+     * Returns the metrics recorded so far as one JSON object
+     *
+     * @return String
+     */
+    public static String snapshotJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"deals\":").append(DEALS.sum());
+        sb.append(",\"ties\":").append(TIES.sum());
+        sb.append(",\"hands\":{");
+        for (int category = 1; category < HANDS.length; category++) {
+            if (category > 1) {
+                sb.append(',');
+            }
+            sb.append('"').append(TexasHold_em.categoryName(category)).append("\":").append(HANDS[category].sum());
+        }
+        sb.append("},\"invalid\":{");
+        for (int code = 1; code < INVALID.length; code++) {
+            if (code > 1) {
+                sb.append(',');
+            }
+            sb.append('"').append(DealValidator.codeName(code)).append("\":").append(INVALID[code].sum());
+        }
+        sb.append("},\"latency_ns\":{\"parse\":").append(PARSE.toJson());
+        sb.append(",\"evaluate\":").append(EVALUATE.toJson());
+        sb.append(",\"winner\":").append(WINNER.toJson());
+        sb.append("}}");
+        return sb.toString();
+    }
+
+    /**
+     * Starts printing a snapshot to a stream every given number of milliseconds, on a daemon
+     * thread, until the returned Reporter is closed
+     *
+     * @param out
+     * @param periodMillis
+     * @param json whether to print snapshotJson() rather than snapshot()
+     * @return Reporter
+     */
+    public static Reporter startReporter(PrintStream out, long periodMillis, boolean json) {
+        return new Reporter(out, periodMillis, json);
+    }
+
+
+    /*********************************************************
+     ******************** NESTED CLASSES *********************
+     *********************************************************/
+
+    /**
+     * Prints snapshots periodically until closed
+     */
+    public static class Reporter implements AutoCloseable {
+        private final ScheduledExecutorService timer;
+
+        private Reporter(PrintStream out, long periodMillis, boolean json) {
+            timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "judge-metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            timer.scheduleAtFixedRate(() -> out.println(json ? snapshotJson() : snapshot()),
+                    periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Stops printing snapshots
+         */
+        public void close() {
+            timer.shutdownNow();
+        }
+    }
+}
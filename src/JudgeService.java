@@ -0,0 +1,408 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**************************** JUDGE SERVICE ****************************
+ * A long-lived HTTP service that judges deals, built on the HTTP server
+ * of the JDK, so a warmed-up process can answer many requests.
+ *
+ *     POST /judge      the body holds one or more deals in the README
+ *                      format; the response holds one line per deal
+ *                      with the ids of its winners, as in batch mode.
+ *                      With ?format=json the response is instead
+ *                      {"winners":[[1],[2,3]]}. A malformed or
+ *                      invalid deal gets an error in its place, the
+ *                      line "ERROR <code> <message>" (see BatchJudger)
+ *                      or {"error":"<code>","message":"<message>"},
+ *                      and the other deals are still judged.
+ *                      ?engine=<name> judges the request with another
+ *                      HandEvaluator than the service's own, and
+ *                      ?showdown=true skips the seats that can't win
+ *                      (see Showdown).
+ *     GET  /metrics    the JudgeMetrics snapshot, ?format=json for JSON,
+ *                      followed by the ShadowEvaluator report if a
+ *                      candidate engine is shadowed
+ *     GET  /health     "OK"
+ *
+ * Each request is handled on its own virtual thread when the JDK has
+ * them (21 and later), and on a cached thread pool otherwise. Engines
+ * aren't thread safe and some take long to build (an EvaluationCache
+ * allocates over a megabyte), so a request borrows one from a pool kept
+ * for each engine name and returns it when done; a pool keeps up to
+ * MAX_POOLED_ENGINES idle engines, and a request that finds its pool
+ * empty builds a new one.
+ *
+ ***********************************************************************
+ */
+public class JudgeService implements AutoCloseable {
+
+
+    /********************************************************
+     ************** PRIVATE CLASS VARIABLES *****************
+     ********************************************************/
+    private static final int DEFAULT_PORT = 8080;
+    private static final String TEXT = "text/plain; charset=utf-8";
+    private static final String JSON = "application/json";
+    private static final int MAX_POOLED_ENGINES = 64; // idle engines kept per engine name
+
+
+    /********************************************************
+     ************** PRIVATE INSTANCE VARIABLES *****************
+     ********************************************************/
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String engine; // the engine requests are judged with by default
+    private final String shadow; // the engine run alongside it, or null
+    private final ShadowEvaluator.Report shadowReport;
+    // idle engines by name, see borrowEngine(); only names that built an engine get a pool
+    private final ConcurrentMap<String, BlockingQueue<HandEvaluator>> engines = new ConcurrentHashMap<>();
+
+
+    /********************************************************
+     ******************** CONSTRUCTOR ***********************
+     ********************************************************/
+
+    /**
+     * Constructor that creates a JudgeService listening on the given port, or on any free
+     * port if it is 0. The service doesn't answer requests until start() is called.
+     *
+     * @param port
+     * @throws IOException if the port can't be bound
+     */
+    public JudgeService(int port) throws IOException {
+        this(port, HandEvaluator.DEFAULT_ENGINE, null);
+    }
+
+    /**
+     * Constructor that creates a JudgeService judging with the given engine, see
+     * HandEvaluator.create(), and running the shadow engine alongside it if it isn't null
+     *
+     * @param port
+     * @param engine
+     * @param shadow
+     * @throws IOException if the port can't be bound
+     * @throws IllegalArgumentException if there is no such engine
+     */
+    public JudgeService(int port, String engine, String shadow) throws IOException {
+        HandEvaluator.create(engine);
+        if (shadow != null) {
+            HandEvaluator.create(shadow);
+        }
+        this.engine = engine;
+        this.shadow = shadow;
+        this.shadowReport = shadow == null ? null : new ShadowEvaluator.Report(engine, shadow);
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/judge", this::judge);
+        server.createContext("/metrics", this::metrics);
+        server.createContext("/health", exchange -> respond(exchange, 200, TEXT, "OK\n"));
+    }
+
+
+    /*********************************************************
+     **************** PUBLIC INSTANCE METHODS ****************
+     *********************************************************/
+
+    /**
+     * Starts answering requests
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Getter to return the port the service listens on
+     *
+     * @return int
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Getter to return the report of the shadowed engine, null if there is none
+     *
+     * @return ShadowEvaluator.Report
+     */
+    public ShadowEvaluator.Report getShadowReport() {
+        return shadowReport;
+    }
+
+    /**
+     * Stops the service, without waiting for requests in progress
+     */
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+
+    /*********************************************************
+     ****************** PUBLIC CLASS METHODS *****************
+     *********************************************************/
+
+    /**
+     * Judges every deal in a request body, returning one line of winners per deal as
+     * BatchJudger.run() writes them
+     *
+     * @param body
+     * @return
+     * @throws IOException if the body can't be read
+     */
+    public static byte[] judge(InputStream body) throws IOException {
+        return judge(body, new BoardState());
+    }
+
+    /**
+     * Judges every deal in a request body with the given engine, like judge(InputStream)
+     *
+     * @param body
+     * @param evaluator
+     * @return
+     * @throws IOException if the body can't be read
+     */
+    public static byte[] judge(InputStream body, HandEvaluator evaluator) throws IOException {
+        return judge(body, evaluator, false);
+    }
+
+    /**
+     * Same as judge(InputStream, HandEvaluator), with Showdown.judge() if showdown is set
+     *
+     * @param body
+     * @param evaluator
+     * @param showdown
+     * @return
+     * @throws IOException if the body can't be read
+     */
+    public static byte[] judge(InputStream body, HandEvaluator evaluator, boolean showdown) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BatchJudger.run(new DealReader(body), out, evaluator, showdown);
+        return out.toByteArray();
+    }
+
+
+    /*********************************************************
+     *************** PRIVATE INSTANCE METHODS ****************
+     *********************************************************/
+
+    private void judge(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("POST")) {
+            exchange.getResponseHeaders().set("Allow", "POST");
+            respond(exchange, 405, TEXT, "ERROR. Use POST\n");
+            return;
+        }
+        // requests are handled on many threads, so each borrows an engine no other uses meanwhile
+        String requested = queryParameter(exchange, "engine");
+        String name = requested != null ? requested : shadow != null ? engine + "+" + shadow : engine;
+        HandEvaluator evaluator;
+        try {
+            evaluator = borrowEngine(name, requested);
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, TEXT, "ERROR. " + e.getMessage() + "\n");
+            return;
+        }
+
+        byte[] winners;
+        try (InputStream body = exchange.getRequestBody()) {
+            winners = judge(body, evaluator, "true".equals(queryParameter(exchange, "showdown")));
+        } catch (IOException e) {
+            respond(exchange, 400, TEXT, "ERROR. " + e.getMessage() + "\n");
+            return;
+        } finally {
+            returnEngine(name, evaluator);
+        }
+        if (wantsJson(exchange)) {
+            respond(exchange, 200, JSON, toJson(winners));
+        } else {
+            respond(exchange, 200, TEXT, winners);
+        }
+    }
+
+    /**
+     * Takes an idle engine from the pool of the given name, or builds a new one if there is
+     * none: the requested engine, or the service's own, shadowed if it has a shadow engine
+     *
+     * @param name the pool's name, the requested engine or the service's engines joined by '+'
+     * @param requested the engine asked for by the request, or null
+     * @return
+     * @throws IllegalArgumentException if there is no such engine
+     */
+    private HandEvaluator borrowEngine(String name, String requested) {
+        BlockingQueue<HandEvaluator> pool = engines.get(name);
+        HandEvaluator evaluator = pool == null ? null : pool.poll();
+        if (evaluator != null) {
+            return evaluator;
+        } else if (requested != null) {
+            return HandEvaluator.create(requested);
+        } else if (shadow != null) {
+            return new ShadowEvaluator(HandEvaluator.create(engine), HandEvaluator.create(shadow), shadowReport);
+        } else {
+            return HandEvaluator.create(engine);
+        }
+    }
+
+    /**
+     * Puts an engine back into the pool of the given name, or drops it if the pool is full
+     *
+     * @param name
+     * @param evaluator
+     */
+    private void returnEngine(String name, HandEvaluator evaluator) {
+        engines.computeIfAbsent(name, key -> new ArrayBlockingQueue<>(MAX_POOLED_ENGINES)).offer(evaluator);
+    }
+
+    private void metrics(HttpExchange exchange) throws IOException {
+        if (wantsJson(exchange)) {
+            String json = JudgeMetrics.snapshotJson();
+            if (shadowReport != null) {
+                json = json.substring(0, json.length() - 1) + ",\"shadow\":" + shadowReport.toJson() + "}";
+            }
+            respond(exchange, 200, JSON, json);
+        } else {
+            respond(exchange, 200, TEXT, JudgeMetrics.snapshot() + (shadowReport != null ? shadowReport : ""));
+        }
+    }
+
+
+    /*********************************************************
+     ****************** PRIVATE CLASS METHODS ****************
+     *********************************************************/
+
+    /**
+     * Returns an executor starting a virtual thread per task if the JDK has them, looked up
+     * reflectively so this still compiles and runs on older JDKs, or a cached thread pool
+     *
+     * @return
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    private static boolean wantsJson(HttpExchange exchange) {
+        return "json".equals(queryParameter(exchange, "format"));
+    }
+
+    /**
+     * Returns the value of a parameter of the query string of a request, or null
+     *
+     * @param exchange
+     * @param name
+     * @return
+     */
+    private static String queryParameter(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith(name + "=")) {
+                return parameter.substring(name.length() + 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Turns lines of space-separated winner ids into {"winners":[[...],...]}, and error lines
+     * into {"error":"<code>","message":"<message>"}
+     *
+     * @param winners
+     * @return
+     */
+    private static String toJson(byte[] winners) {
+        StringBuilder sb = new StringBuilder("{\"winners\":[");
+        int start = 0;
+        for (int end = 0; end < winners.length; end++) {
+            if (winners[end] != '\n') {
+                continue;
+            }
+            if (start > 0) {
+                sb.append(',');
+            }
+            String line = new String(winners, start, end - start, StandardCharsets.UTF_8);
+            if (line.startsWith("ERROR ")) {
+                int space = line.indexOf(' ', 6);
+                sb.append("{\"error\":\"").append(line, 6, space).append("\",\"message\":\"");
+                for (int i = space + 1; i < line.length(); i++) {
+                    char c = line.charAt(i);
+                    if (c == '"' || c == '\\') {
+                        sb.append('\\');
+                    }
+                    sb.append(c < ' ' ? ' ' : c);
+                }
+                sb.append("\"}");
+            } else {
+                sb.append('[').append(line.replace(' ', ',')).append(']');
+            }
+            start = end + 1;
+        }
+        return sb.append("]}").toString();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body)
+            throws IOException {
+        respond(exchange, status, contentType, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, byte[] body)
+            throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+
+    /*********************************************************
+     ****************** MAIN METHOD **************************
+     *********************************************************/
+
+    /**
+     * java JudgeService [port] [--metrics] [--engine name] [--shadow name]
+     */
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        String engine = HandEvaluator.DEFAULT_ENGINE;
+        String shadow = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--metrics")) {
+                JudgeMetrics.setEnabled(true);
+            } else if (args[i].equals("--engine") && i + 1 < args.length) {
+                engine = args[++i];
+            } else if (args[i].equals("--shadow") && i + 1 < args.length) {
+                shadow = args[++i];
+            } else {
+                port = Integer.parseInt(args[i]);
+            }
+        }
+        JudgeService service;
+        try {
+            service = new JudgeService(port, engine, shadow);
+        } catch (IllegalArgumentException e) {
+            System.err.println("ERROR. " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(service::close));
+        service.start();
+        System.out.println("Judging deals on http://localhost:" + service.getPort() + "/judge");
+    }
+}
@@ -0,0 +1,193 @@
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/************************** LATENCY HISTOGRAM **************************
+ * Counts recorded latencies, in nanoseconds, in logarithmic buckets in
+ * the manner of an HDR histogram: every power of two is split into
+ * SUB_BUCKETS equal buckets, so any value is known to within 1 part in
+ * SUB_BUCKETS (12.5%) from 1 ns up to Long.MAX_VALUE, in a fixed number
+ * of buckets.
+ *
+ * Each bucket is a LongAdder, so many threads can record at once without
+ * contending on a shared counter. Reading while others record gives a
+ * close but not necessarily exact snapshot.
+ *
+ ***********************************************************************
+ */
+public class LatencyHistogram {
+
+
+    /********************************************************
+     ************** PRIVATE CLASS VARIABLES *****************
+     ********************************************************/
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // the values below SUB_BUCKETS get a bucket each, then SUB_BUCKETS per power of two
+    private static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+
+    /********************************************************
+     ************** PRIVATE INSTANCE VARIABLES *****************
+     ********************************************************/
+    private final LongAdder[] buckets = new LongAdder[NUM_BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+
+    /********************************************************
+     ******************** CONSTRUCTOR ***********************
+     ********************************************************/
+
+    /**
+     * Constructor that creates an empty LatencyHistogram
+     */
+    public LatencyHistogram() {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+
+    /*********************************************************
+     **************** PUBLIC INSTANCE METHODS ****************
+     *********************************************************/
+
+    /**
+     * Records one latency; negative values count as 0
+     *
+     * @param nanos
+     */
+    public void record(long nanos) {
+        long value = Math.max(0L, nanos);
+        buckets[bucketOf(value)].increment();
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Getter to return the number of latencies recorded
+     *
+     * @return long
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Getter to return the mean of the latencies recorded, 0 if there are none
+     *
+     * @return double
+     */
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0.0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Getter to return the largest latency recorded
+     *
+     * @return long
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns a latency that at least the given percentage of the recorded latencies don't
+     * exceed, rounded up to the top of its bucket, or 0 if nothing was recorded
+     *
+     * @param percentile between 0 and 100
+     * @return long
+     */
+    public long getValueAtPercentile(double percentile) {
+        long n = 0;
+        long[] counts = new long[NUM_BUCKETS];
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            n += counts[i];
+        }
+        long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * n));
+        long seen = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), getMax());
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Forgets everything recorded
+     */
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    /**
+     * String representation of a LatencyHistogram: its count, mean, common percentiles and
+     * maximum, in nanoseconds
+     *
+     * @return String
+     */
+    public String toString() {
+        return String.format("count %d mean %.1f p50 %d p90 %d p99 %d p99.9 %d max %d ns", getCount(),
+                getMean(), getValueAtPercentile(50), getValueAtPercentile(90), getValueAtPercentile(99),
+                getValueAtPercentile(99.9), getMax());
+    }
+
+    /**
+     * JSON representation of a LatencyHistogram, with the same fields as toString()
+     *
+     * @return String
+     */
+    public String toJson() {
+        return String.format("{\"count\":%d,\"mean\":%.1f,\"p50\":%d,\"p90\":%d,\"p99\":%d,\"p999\":%d,\"max\":%d}",
+                getCount(), getMean(), getValueAtPercentile(50), getValueAtPercentile(90),
+                getValueAtPercentile(99), getValueAtPercentile(99.9), getMax());
+    }
+
+
+    /*********************************************************
+     ****************** PRIVATE CLASS METHODS ****************
+     *********************************************************/
+
+    /**
+     * Returns the bucket of a non-negative value: the values below SUB_BUCKETS have one each,
+     * and a value with its highest bit at position b >= SUB_BUCKET_BITS goes by its next
+     * SUB_BUCKET_BITS bits into one of SUB_BUCKETS buckets for that power of two
+     *
+     * @param value
+     * @return
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int highestBit = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (highestBit - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (highestBit - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the largest value that goes into a bucket
+     *
+     * @param bucket
+     * @return
+     */
+    private static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int highestBit = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (highestBit - SUB_BUCKET_BITS);
+        return lowest + (1L << (highestBit - SUB_BUCKET_BITS)) - 1;
+    }
+}
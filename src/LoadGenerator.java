@@ -0,0 +1,327 @@
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/*************************** LOAD GENERATOR ****************************
+ * Judges generated deals in process at a target rate, to measure what
+ * one machine can take before judging more deals costs latency:
+ *
+ *     java LoadGenerator [--rate deals/s] [--seconds n] [--deals n] [--threads n]
+ *                        [--engine name] [--showdown] [--players n or min-max]
+ *                        [--variant name] [--hole-cards n] [--seed n] [--warmup n]
+ *                        [--metrics]
+ *
+ * Every thread deals from its own DealGenerator, split off one seeded
+ * generator, and judges with its own engine. With a rate, the threads
+ * share it evenly and the i-th deal of a thread is due i intervals after
+ * the start: its latency is counted from when it was due, not from when
+ * the thread got to it, so a judger that can't keep up shows growing
+ * latencies instead of quietly judging fewer deals. Without a rate, deals
+ * are judged as fast as they can be, and the latency is the time taken to
+ * judge one.
+ *
+ * The run ends after the given number of deals or seconds, whichever
+ * comes first, or after 10 seconds if neither is given; deals still due
+ * at the end are dropped. The winners of every deal are summed into a
+ * checksum: runs of the same number of deals, with the same seed, threads
+ * and players, judge the same deals and give the same checksum, whatever
+ * the engine.
+ *
+ * Until the JIT has compiled the judging code, a deal takes many times
+ * longer to judge, so a rate the machine keeps up with later can build a
+ * backlog in the first second. --warmup judges other deals as fast as it
+ * can for the given number of seconds before the run.
+ *
+ ***********************************************************************
+ */
+public class LoadGenerator {
+
+
+    /********************************************************
+     ************** PRIVATE CLASS VARIABLES *****************
+     ********************************************************/
+    // a deal due further ahead than this is waited for by parking, a nearer one by spinning
+    private static final long SPIN_NANOS = 50000L;
+
+
+    /********************************************************
+     ************** PRIVATE INSTANCE VARIABLES *****************
+     ********************************************************/
+    private final int numThreads;
+    private final Supplier<HandEvaluator> engines; // a new engine for each thread
+    private final boolean showdown; // whether deals are judged with Showdown.judge()
+
+
+    /********************************************************
+     ******************** CONSTRUCTOR ***********************
+     ********************************************************/
+
+    /**
+     * Constructor that creates a LoadGenerator judging on the given number of threads, each
+     * with its own engine from the given supplier, with Showdown.judge() if showdown is set
+     *
+     * @param numThreads
+     * @param engines
+     * @param showdown
+     */
+    public LoadGenerator(int numThreads, Supplier<HandEvaluator> engines, boolean showdown) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive: " + numThreads);
+        }
+        this.numThreads = numThreads;
+        this.engines = engines;
+        this.showdown = showdown;
+    }
+
+
+    /*********************************************************
+     **************** PUBLIC INSTANCE METHODS ****************
+     *********************************************************/
+
+    /**
+     * Judges deals from generators split off the given one until maxDeals deals were judged
+     * or maxMillis milliseconds went by, at the given rate in deals per second, or as fast as
+     * possible if the rate is 0
+     *
+     * @param generator
+     * @param rate
+     * @param maxDeals Long.MAX_VALUE for no limit
+     * @param maxMillis Long.MAX_VALUE for no limit
+     * @return Result
+     * @throws InterruptedException
+     */
+    public Result run(DealGenerator generator, double rate, long maxDeals, long maxMillis)
+            throws InterruptedException {
+        Result result = new Result(rate);
+        long[] deals = new long[numThreads];
+        long[] checksums = new long[numThreads];
+        // spread the interval and the deals over the threads; the generators are split off in
+        // thread order before any is used, so every thread deals the same deals every run
+        double interval = rate > 0 ? numThreads * 1e9 / rate : 0;
+        long deadline = maxMillis == Long.MAX_VALUE ? Long.MAX_VALUE : maxMillis * 1000000L;
+        // the engines are created up front, so building their tables isn't counted as latency
+        DealGenerator[] generators = new DealGenerator[numThreads];
+        HandEvaluator[] evaluators = new HandEvaluator[numThreads];
+        for (int t = 0; t < numThreads; t++) {
+            generators[t] = generator.split();
+            evaluators[t] = engines.get();
+        }
+
+        Thread[] threads = new Thread[numThreads];
+        long start = System.nanoTime();
+        for (int t = 0; t < numThreads; t++) {
+            int thread = t;
+            long limit = maxDeals / numThreads + (t < maxDeals % numThreads ? 1 : 0);
+            threads[t] = new Thread(() -> {
+                HandEvaluator evaluator = evaluators[thread];
+                DealGenerator dealer = generators[thread];
+                Deal deal = new Deal();
+                int[] strengths = new int[Deal.MAX_PLAYERS];
+                long checksum = 0L;
+                long n = 0;
+                while (n < limit) {
+                    dealer.next(deal);
+                    long now = System.nanoTime();
+                    long due = interval > 0 ? start + (long) (n * interval) : now;
+                    if (Math.max(now, due) - start >= deadline) {
+                        break;
+                    }
+                    waitUntil(due);
+                    long winners = showdown ? Showdown.judge(deal, evaluator, strengths)
+                            : TexasHold_em.judge(deal, evaluator, strengths);
+                    result.latency.record(System.nanoTime() - due);
+                    checksum = 31 * checksum + winners;
+                    n++;
+                }
+                deals[thread] = n;
+                checksums[thread] = checksum;
+            }, "load-" + t);
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        result.elapsedNanos = System.nanoTime() - start;
+        for (int t = 0; t < numThreads; t++) {
+            result.deals += deals[t];
+            result.checksum += checksums[t];
+        }
+        return result;
+    }
+
+
+    /*********************************************************
+     ****************** PRIVATE CLASS METHODS ****************
+     *********************************************************/
+
+    /**
+     * Waits until System.nanoTime() reaches the given time
+     *
+     * @param time
+     */
+    private static void waitUntil(long time) {
+        long wait;
+        while ((wait = time - System.nanoTime()) > 0) {
+            if (wait > SPIN_NANOS) {
+                LockSupport.parkNanos(wait - SPIN_NANOS);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+
+    /*********************************************************
+     ******************** NESTED CLASSES *********************
+     *********************************************************/
+
+    /**
+     * What a run judged and how fast
+     */
+    public static class Result {
+        private final double targetRate;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private long deals;
+        private long elapsedNanos;
+        private long checksum;
+
+        private Result(double targetRate) {
+            this.targetRate = targetRate;
+        }
+
+        /**
+         * Getter to return the number of deals judged
+         *
+         * @return long
+         */
+        public long getDeals() {
+            return deals;
+        }
+
+        /**
+         * Returns the deals judged per second
+         *
+         * @return double
+         */
+        public double getRate() {
+            return deals * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * Getter to return the latencies of the deals, in nanoseconds, see above
+         *
+         * @return LatencyHistogram
+         */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        /**
+         * Getter to return the sum over the threads of the winners of their deals, see above
+         *
+         * @return long
+         */
+        public long getChecksum() {
+            return checksum;
+        }
+
+        /**
+         * String representation of a Result: the deals, rate and latency, one to a line
+         *
+         * @return String
+         */
+        public String toString() {
+            return String.format("deals %d in %.3f s, %.1f deals/s%s%nlatency %s%nchecksum %016x", deals,
+                    elapsedNanos / 1e9, getRate(), targetRate > 0 ? String.format(" (target %.1f)", targetRate) : "",
+                    latency, checksum);
+        }
+    }
+
+
+    /*********************************************************
+     ****************** MAIN METHOD **************************
+     *********************************************************/
+
+    /**
+     * java LoadGenerator [--rate deals/s] [--seconds n] [--deals n] [--threads n] [--engine name]
+     *                    [--showdown] [--players n or min-max] [--variant name] [--hole-cards n]
+     *                    [--seed n] [--warmup n] [--metrics]
+     */
+    public static void main(String[] args) throws InterruptedException {
+        double rate = 0;
+        long seconds = -1; // 10 unless a number of deals is given
+        long maxDeals = Long.MAX_VALUE;
+        int numThreads = 1;
+        String engine = HandEvaluator.DEFAULT_ENGINE;
+        boolean showdown = false;
+        int minPlayers = DealGenerator.DEFAULT_PLAYERS;
+        int maxPlayers = DealGenerator.DEFAULT_PLAYERS;
+        int variant = Deal.HOLDEM;
+        int holeSize = -1; // the variant's default
+        long seed = 42;
+        long warmup = 0; // seconds
+        boolean metrics = false;
+        DealGenerator generator;
+        DealGenerator warmupGenerator;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--rate") && i + 1 < args.length) {
+                    rate = Double.parseDouble(args[++i]);
+                } else if (args[i].equals("--seconds") && i + 1 < args.length) {
+                    seconds = Long.parseLong(args[++i]);
+                } else if (args[i].equals("--deals") && i + 1 < args.length) {
+                    maxDeals = Long.parseLong(args[++i]);
+                } else if (args[i].equals("--threads") && i + 1 < args.length) {
+                    numThreads = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--engine") && i + 1 < args.length) {
+                    engine = args[++i];
+                } else if (args[i].equals("--showdown")) {
+                    showdown = true;
+                } else if (args[i].equals("--players") && i + 1 < args.length) {
+                    String[] range = args[++i].split("-", 2);
+                    minPlayers = Integer.parseInt(range[0]);
+                    maxPlayers = range.length > 1 ? Integer.parseInt(range[1]) : minPlayers;
+                } else if (args[i].equals("--variant") && i + 1 < args.length) {
+                    variant = Deal.variantOf(args[++i]);
+                    if (variant < 0) {
+                        throw new IllegalArgumentException("Unknown variant: " + args[i]);
+                    }
+                } else if (args[i].equals("--hole-cards") && i + 1 < args.length) {
+                    holeSize = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--seed") && i + 1 < args.length) {
+                    seed = Long.parseLong(args[++i]);
+                } else if (args[i].equals("--warmup") && i + 1 < args.length) {
+                    warmup = Long.parseLong(args[++i]);
+                } else if (args[i].equals("--metrics")) {
+                    metrics = true;
+                } else {
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            HandEvaluator.create(engine);
+            int size = holeSize < 0 ? Deal.minHoleSize(variant) : holeSize;
+            generator = new DealGenerator(seed, minPlayers, maxPlayers, variant, size);
+            // other deals than the run's, so they are the same whether or not there is a warmup
+            warmupGenerator = new DealGenerator(seed + 1, minPlayers, maxPlayers, variant, size);
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException included
+            System.err.println("ERROR. " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        String active = engine;
+        LoadGenerator load = new LoadGenerator(numThreads, () -> HandEvaluator.create(active), showdown);
+        if (warmup > 0) {
+            load.run(warmupGenerator, 0, Long.MAX_VALUE, warmup * 1000L);
+        }
+        if (metrics) {
+            JudgeMetrics.setEnabled(true);
+        }
+        long maxMillis = seconds >= 0 ? seconds * 1000L : maxDeals == Long.MAX_VALUE ? 10000L : Long.MAX_VALUE;
+        System.out.println(load.run(generator, rate, maxDeals, maxMillis));
+        if (metrics) {
+            System.err.println(JudgeMetrics.snapshot());
+        }
+    }
+}
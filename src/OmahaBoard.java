@@ -0,0 +1,338 @@
+import java.util.ArrayList;
+
+/***************************** OMAHA BOARD *****************************
+ * The five community cards of an Omaha deal, preprocessed once so that
+ * the best hand of each player can be found with a few lookups. In Omaha
+ * a hand is made of exactly two of the player's four to six hole cards
+ * and exactly three community cards, so a player with four hole cards
+ * has 6 pairs times 10 triples, 60 hands to choose from.
+ *
+ * Without a flush, the best hand a pair of hole cards makes with a board
+ * depends only on the ranks of the pair and of the board, so it is worked
+ * out in advance, from the 5-card tables of HandRankTable, for each of
+ * the 6175 sets of ranks a board can have and each pair of ranks, and
+ * stored as a row of 13 * 13 strength classes per board, holding every
+ * pair in either order so that no pair has to be sorted. Setting the
+ * board finds its row, and a player then takes one lookup in that row
+ * per pair of hole cards: 6 for four hole cards instead of 60.
+ *
+ * A flush takes three community cards of one suit, which at most one
+ * suit can have. If none has, no flush is looked for at all; otherwise
+ * only the player's pairs of hole cards of that suit are tried, against
+ * the triples of that suit only.
+ *
+ * The tables take about 3MB and are built when the class is first used,
+ * so only Omaha deals pay for them. An OmahaBoard is reusable: set()
+ * overwrites it with the next board. BoardState uses one for Omaha deals.
+ *
+ ***********************************************************************
+ */
+public class OmahaBoard {
+
+
+    /********************************************************
+     ************** PUBLIC CLASS VARIABLES ******************
+     ********************************************************/
+    public static final int HOLE_CARDS_USED = 2;
+    public static final int BOARD_CARDS_USED = 3;
+
+
+    /********************************************************
+     ************** PRIVATE CLASS VARIABLES *****************
+     ********************************************************/
+    private static final int NUM_TRIPLES = 10; // ways to take 3 of the 5 community cards
+    private static final int RANK_BITS = 0x1FFF; // one bit per rank index within a suit
+    private static final int NUM_PAIRS = Card.NUM_RANKS * Card.NUM_RANKS; // pairs of ranks, in either order
+
+    private static final byte[] RANKS = new byte[Card.NUM_CARDS]; // rank index of each card id
+    // rank key sum of a board (see HandRankTable.rankKey5()) -> index of its row
+    private static final char[] BOARD_ROWS;
+    // NUM_PAIRS per board, at 13 * rank + rank: the class (see HandRankTable.rankClass5()) of
+    // the best hand without a flush of each pair of ranks with the board, 0 if the board leaves
+    // no such pair
+    private static final char[] PAIR_CLASSES;
+
+    static {
+        for (int id = 0; id < Card.NUM_CARDS; id++) {
+            RANKS[id] = (byte) (id % Card.NUM_RANKS);
+        }
+
+        ArrayList<int[]> boards = new ArrayList<>();
+        addBoards(boards, new int[Card.NUM_RANKS], 0, Deal.BOARD_SIZE);
+        int maxKey = 0;
+        for (int[] counts : boards) {
+            maxKey = Math.max(maxKey, rankKey(counts));
+        }
+        BOARD_ROWS = new char[maxKey + 1];
+        PAIR_CLASSES = new char[boards.size() * NUM_PAIRS];
+        for (int row = 0; row < boards.size(); row++) {
+            BOARD_ROWS[rankKey(boards.get(row))] = (char) row;
+            addPairClasses(boards.get(row), row * NUM_PAIRS);
+        }
+    }
+
+
+    /********************************************************
+     ************** PRIVATE INSTANCE VARIABLES *****************
+     ********************************************************/
+    private int row; // offset of the board's row in PAIR_CLASSES
+    private final int[] flushTriples = new int[NUM_TRIPLES]; // rank bits of the triples of the flush suit
+    private int numFlushTriples;
+    private int flushSuit; // the suit with three or more community cards, or -1
+    private long flushCards; // mask of the cards of that suit, 0 if there is none
+    private final int[] ranks = new int[Deal.MAX_HOLE_SIZE]; // of the player being evaluated
+
+
+    /*********************************************************
+     **************** PUBLIC INSTANCE METHODS ****************
+     *********************************************************/
+
+    /**
+     * Sets this board to the five community cards given as card ids
+     *
+     * @param board
+     * @return this OmahaBoard
+     */
+    public OmahaBoard set(int[] board) {
+        int rankKey = 0;
+        int suitCounts = 0;
+        for (int i = 0; i < Deal.BOARD_SIZE; i++) {
+            rankKey += HandRankTable.rankKey5(board[i]);
+            suitCounts += HandRankTable.suitKey(board[i]);
+        }
+        row = BOARD_ROWS[rankKey] * NUM_PAIRS;
+
+        flushSuit = -1;
+        flushCards = 0L;
+        numFlushTriples = 0;
+        for (int suit = 0; suit < Card.NUM_SUITS; suit++) {
+            if ((suitCounts >>> (4 * suit) & 0xF) >= BOARD_CARDS_USED) {
+                flushSuit = suit;
+                flushCards = (long) RANK_BITS << (suit * Card.NUM_RANKS);
+            }
+        }
+        if (flushSuit < 0) {
+            return this;
+        }
+        for (int i = 0; i < Deal.BOARD_SIZE; i++) {
+            for (int j = i + 1; j < Deal.BOARD_SIZE; j++) {
+                for (int k = j + 1; k < Deal.BOARD_SIZE; k++) {
+                    if (board[i] / Card.NUM_RANKS == flushSuit && board[j] / Card.NUM_RANKS == flushSuit
+                            && board[k] / Card.NUM_RANKS == flushSuit) {
+                        flushTriples[numFlushTriples++] = 1 << board[i] % Card.NUM_RANKS
+                                | 1 << board[j] % Card.NUM_RANKS | 1 << board[k] % Card.NUM_RANKS;
+                    }
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns the strength of the best hand a player can make with exactly two of the given
+     * hole cards and three of the community cards
+     *
+     * @param holeCards
+     * @param from index of the player's first hole card
+     * @param count number of hole cards
+     * @return int
+     */
+    public int evaluate(int[] holeCards, int from, int count) {
+        long hole = 0L;
+        int bestClass;
+        if (count == 4) {
+            // the usual case, unrolled: the 6 pairs of 4 hole cards
+            int c1 = holeCards[from];
+            int c2 = holeCards[from + 1];
+            int c3 = holeCards[from + 2];
+            int c4 = holeCards[from + 3];
+            hole = 1L << c1 | 1L << c2 | 1L << c3 | 1L << c4;
+            int p1 = row + RANKS[c1] * Card.NUM_RANKS;
+            int p2 = row + RANKS[c2] * Card.NUM_RANKS;
+            int p3 = row + RANKS[c3] * Card.NUM_RANKS;
+            bestClass = Math.max(Math.max(PAIR_CLASSES[p1 + RANKS[c2]], PAIR_CLASSES[p1 + RANKS[c3]]),
+                    Math.max(Math.max(PAIR_CLASSES[p1 + RANKS[c4]], PAIR_CLASSES[p2 + RANKS[c3]]),
+                            Math.max(PAIR_CLASSES[p2 + RANKS[c4]], PAIR_CLASSES[p3 + RANKS[c4]])));
+        } else {
+            for (int i = 0; i < count; i++) {
+                int id = holeCards[from + i];
+                hole |= 1L << id;
+                ranks[i] = RANKS[id];
+            }
+            bestClass = 0;
+            for (int i = 0; i < count; i++) {
+                int pairs = row + ranks[i] * Card.NUM_RANKS;
+                for (int j = i + 1; j < count; j++) {
+                    bestClass = Math.max(bestClass, PAIR_CLASSES[pairs + ranks[j]]);
+                }
+            }
+        }
+        int best = HandRankTable.strengthOfClass5(bestClass);
+
+        // rank bits of the hole cards of the flush suit
+        int suited = flushSuit < 0 ? 0 : (int) ((hole & flushCards) >>> (flushSuit * Card.NUM_RANKS));
+        if (Integer.bitCount(suited) >= HOLE_CARDS_USED) {
+            for (int rest = suited; rest != 0; rest &= rest - 1) {
+                int first = rest & -rest;
+                for (int others = rest & (rest - 1); others != 0; others &= others - 1) {
+                    int pair = first | (others & -others);
+                    for (int t = 0; t < numFlushTriples; t++) {
+                        best = Math.max(best, HandRankTable.evaluateFlush(pair | flushTriples[t]));
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Sets this board to the board of an Omaha deal and fills in the strength of each seat's
+     * best hand
+     *
+     * @param deal
+     * @param strengths must have room for every seat; overwritten
+     */
+    public void evaluate(Deal deal, int[] strengths) {
+        set(deal.getBoard());
+        int[] holeCards = deal.getHoleCards();
+        int holeSize = deal.getHoleSize();
+        int numPlayers = deal.getNumPlayers();
+        for (int seat = 0; seat < numPlayers; seat++) {
+            strengths[seat] = evaluate(holeCards, holeSize * seat, holeSize);
+        }
+    }
+
+    /**
+     * Returns whether a flush can be made with this board, i.e. whether some suit has at
+     * least three community cards
+     *
+     * @return boolean
+     */
+    public boolean isFlushPossible() {
+        return flushSuit >= 0;
+    }
+
+
+    /*********************************************************
+     ****************** PUBLIC CLASS METHODS *****************
+     *********************************************************/
+
+    /**
+     * Returns the strength of the best Omaha hand of a player by evaluating each of its
+     * combinations of two hole cards and three community cards with the given engine, without
+     * any of the preprocessing above. This is how engines other than lookup evaluate Omaha
+     * deals, so that they can be checked against an OmahaBoard.
+     *
+     * @param evaluator
+     * @param board
+     * @param holeCards
+     * @param from index of the player's first hole card
+     * @param count number of hole cards
+     * @return int
+     */
+    public static int evaluateCombinations(HandEvaluator evaluator, int[] board, int[] holeCards, int from,
+                                           int count) {
+        int best = 0;
+        for (int i = 0; i < Deal.BOARD_SIZE; i++) {
+            for (int j = i + 1; j < Deal.BOARD_SIZE; j++) {
+                for (int k = j + 1; k < Deal.BOARD_SIZE; k++) {
+                    long triple = 1L << board[i] | 1L << board[j] | 1L << board[k];
+                    for (int h1 = from; h1 < from + count; h1++) {
+                        for (int h2 = h1 + 1; h2 < from + count; h2++) {
+                            best = Math.max(best, evaluator.evaluate(triple | 1L << holeCards[h1] | 1L << holeCards[h2]));
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+
+    /*********************************************************
+     ****************** PRIVATE CLASS METHODS ****************
+     *********************************************************/
+
+    /**
+     * Recursively collects every set of ranks a board can have, as the number of cards of
+     * each rank, choosing the remaining cards from the ranks starting at rankIndex
+     *
+     * @param boards
+     * @param counts
+     * @param rankIndex
+     * @param remaining
+     */
+    private static void addBoards(ArrayList<int[]> boards, int[] counts, int rankIndex, int remaining) {
+        if (remaining == 0) {
+            boards.add(counts.clone());
+            return;
+        }
+        if (rankIndex == counts.length) {
+            return;
+        }
+        for (int count = Math.min(4, remaining); count >= 0; count--) {
+            counts[rankIndex] = count;
+            addBoards(boards, counts, rankIndex + 1, remaining - count);
+        }
+        counts[rankIndex] = 0;
+    }
+
+    /**
+     * Stores in PAIR_CLASSES, from offset on, the class of the best hand without a flush of
+     * each pair of ranks with a board of the given ranks, trying each distinct triple of the
+     * board
+     *
+     * @param counts number of cards of each rank on the board
+     * @param offset
+     */
+    private static void addPairClasses(int[] counts, int offset) {
+        for (int r1 = 0; r1 < Card.NUM_RANKS; r1++) {
+            if (counts[r1] == 0) {
+                continue;
+            }
+            for (int r2 = r1; r2 < Card.NUM_RANKS; r2++) {
+                if (counts[r2] == 0) {
+                    continue;
+                }
+                for (int r3 = r2; r3 < Card.NUM_RANKS; r3++) {
+                    // take a triple only if the board has its ranks as many times
+                    if (counts[r1] < 1 + (r1 == r2 ? 1 : 0) + (r1 == r3 ? 1 : 0)
+                            || counts[r2] < 1 + (r2 == r3 ? 1 : 0) || counts[r3] < 1) {
+                        continue;
+                    }
+                    int tripleKey = HandRankTable.rankKey5(r1) + HandRankTable.rankKey5(r2)
+                            + HandRankTable.rankKey5(r3);
+                    for (int high = 0; high < Card.NUM_RANKS; high++) {
+                        for (int low = 0; low <= high; low++) {
+                            // a pair can't add a fifth card of a rank
+                            if (counts[high] + (high == low ? 2 : 1) > 4 || counts[low] + 1 > 4) {
+                                continue;
+                            }
+                            int key = tripleKey + HandRankTable.rankKey5(low) + HandRankTable.rankKey5(high);
+                            char rankClass = (char) HandRankTable.rankClass5(key);
+                            int pair = offset + high * Card.NUM_RANKS + low;
+                            if (rankClass > PAIR_CLASSES[pair]) {
+                                PAIR_CLASSES[pair] = rankClass;
+                                PAIR_CLASSES[offset + low * Card.NUM_RANKS + high] = rankClass;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the sum of the 5-card rank keys of cards with the given number of each rank
+     *
+     * @param counts
+     * @return
+     */
+    private static int rankKey(int[] counts) {
+        int key = 0;
+        for (int rank = 0; rank < Card.NUM_RANKS; rank++) {
+            key += counts[rank] * HandRankTable.rankKey5(rank); // card id rank is that rank of clubs
+        }
+        return key;
+    }
+}
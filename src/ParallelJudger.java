@@ -0,0 +1,283 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+/*************************** PARALLEL JUDGER ***************************
+ * Judges deals on a pool of worker threads.
+ *
+ * Deals are read into blocks of reusable Deal objects; each block is
+ * judged as one task on a ForkJoinPool while the next blocks are read,
+ * and the results are written out block by block in the order the deals
+ * were read. Every worker thread keeps its own engine (see HandEvaluator)
+ * and strengths buffer, so the workers share nothing but the read-only
+ * evaluation tables. Invalid deals keep their place in their block and get an error
+ * line in order, as in BatchJudger.
+ *
+ ***********************************************************************
+ */
+public class ParallelJudger implements AutoCloseable {
+
+
+    /********************************************************
+     ************** PRIVATE CLASS VARIABLES *****************
+     ********************************************************/
+    private static final int BLOCK_SIZE = 4096; // deals per task
+    private static final int SPLIT_THRESHOLD = 1024; // deals below which a task isn't split
+
+    // per thread scratch space for the strength of each seat
+    private static final ThreadLocal<int[]> STRENGTHS = ThreadLocal.withInitial(() -> new int[Deal.MAX_PLAYERS]);
+
+
+    /********************************************************
+     ************** PRIVATE INSTANCE VARIABLES *****************
+     ********************************************************/
+    private final ForkJoinPool pool;
+    private final int numThreads;
+    private final ThreadLocal<HandEvaluator> evaluators; // each worker's own engine
+    private final boolean showdown; // whether deals are judged with Showdown.judge()
+
+
+    /********************************************************
+     ******************** CONSTRUCTOR ***********************
+     ********************************************************/
+
+    /**
+     * Constructor that creates a ParallelJudger with the given number of worker threads
+     *
+     * @param numThreads
+     */
+    public ParallelJudger(int numThreads) {
+        this(numThreads, BoardState::new);
+    }
+
+    /**
+     * Constructor that creates a ParallelJudger with the given number of worker threads, each
+     * judging with its own engine from the given factory
+     *
+     * @param numThreads
+     * @param engines called once by every worker thread
+     */
+    public ParallelJudger(int numThreads, Supplier<HandEvaluator> engines) {
+        this(numThreads, engines, false);
+    }
+
+    /**
+     * Same as ParallelJudger(int, Supplier), judging every deal with Showdown.judge(), which
+     * skips the seats that can't win, if showdown is set
+     *
+     * @param numThreads
+     * @param engines called once by every worker thread
+     * @param showdown
+     */
+    public ParallelJudger(int numThreads, Supplier<HandEvaluator> engines, boolean showdown) {
+        this.numThreads = numThreads;
+        this.pool = new ForkJoinPool(numThreads);
+        this.evaluators = ThreadLocal.withInitial(engines);
+        this.showdown = showdown;
+    }
+
+
+    /*********************************************************
+     **************** PUBLIC INSTANCE METHODS ****************
+     *********************************************************/
+
+    /**
+     * Judges the first count deals of an array in parallel, storing the winning seats of
+     * deals[i] (see TexasHold_em.chooseWinner()) in winners[i]
+     *
+     * @param deals
+     * @param count
+     * @param winners
+     */
+    public void judge(Deal[] deals, int count, long[] winners) {
+        pool.invoke(new JudgeTask(evaluators, showdown, deals, null, winners, 0, count));
+    }
+
+    /**
+     * Judges every deal in the input and writes one line of winners per deal to the output,
+     * in the same order as the deals, like BatchJudger.run()
+     *
+     * @param in
+     * @param out
+     * @return the number of deals judged
+     * @throws IOException
+     */
+    public long run(InputStream in, OutputStream out) throws IOException {
+        return run(new DealReader(in), out);
+    }
+
+    /**
+     * Judges every deal from a source and writes one line of winners per deal to the output,
+     * in the same order as the deals
+     *
+     * @param reader
+     * @param out
+     * @return the number of deals judged, not counting invalid ones
+     * @throws IOException
+     */
+    public long run(DealSource reader, OutputStream out) throws IOException {
+        BatchJudger writer = new BatchJudger(out);
+
+        // blocks being judged, oldest first, and blocks free to be filled again
+        ArrayDeque<Block> pending = new ArrayDeque<>();
+        ArrayDeque<Block> free = new ArrayDeque<>();
+        int maxPending = 2 * numThreads;
+        long count = 0;
+
+        // an invalid deal is only skipped, but an error reading the input ends it; the deals
+        // before it are still judged and written
+        IOException failure = null;
+        boolean more = true;
+        while (more) {
+            Block block = free.isEmpty() ? new Block() : free.poll();
+            while (block.count < BLOCK_SIZE && more) {
+                try {
+                    if (more = reader.next(block.deals[block.count])) {
+                        block.count++;
+                    }
+                } catch (InvalidDealException e) {
+                    block.errors[block.count++] = e;
+                } catch (IOException e) {
+                    failure = e;
+                    more = false;
+                }
+            }
+            if (block.count > 0) {
+                block.future = pool.submit(new JudgeTask(evaluators, showdown, block.deals, block.errors,
+                        block.winners, 0, block.count));
+                pending.add(block);
+            }
+            while (!pending.isEmpty() && (pending.size() >= maxPending || !more)) {
+                Block done = pending.poll();
+                count += write(done, writer);
+                free.add(done);
+            }
+        }
+        writer.flush();
+
+        if (failure != null) {
+            throw failure;
+        }
+        return count;
+    }
+
+    /**
+     * Shuts down the worker threads
+     */
+    public void close() {
+        pool.shutdown();
+    }
+
+
+    /*********************************************************
+     *************** PRIVATE INSTANCE METHODS ****************
+     *********************************************************/
+
+    /**
+     * Waits for a block to be judged, writes its results and resets it for reuse
+     *
+     * @param block
+     * @param writer
+     * @return the number of valid deals in the block
+     * @throws IOException
+     */
+    private int write(Block block, BatchJudger writer) throws IOException {
+        waitFor(block);
+        int count = 0;
+        for (int i = 0; i < block.count; i++) {
+            if (block.errors[i] != null) {
+                writer.writeError(block.errors[i]);
+                block.errors[i] = null;
+            } else {
+                writer.writeWinners(block.deals[i], block.winners[i]);
+                count++;
+            }
+        }
+        block.count = 0;
+        block.future = null;
+        return count;
+    }
+
+    private void waitFor(Block block) throws IOException {
+        try {
+            block.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while judging", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to judge deals", e.getCause());
+        }
+    }
+
+
+    /*********************************************************
+     ******************** NESTED CLASSES *********************
+     *********************************************************/
+
+    /**
+     * A block of deals read together, judged as one task
+     */
+    private static class Block {
+        final Deal[] deals = new Deal[BLOCK_SIZE];
+        final InvalidDealException[] errors = new InvalidDealException[BLOCK_SIZE]; // null for valid deals
+        final long[] winners = new long[BLOCK_SIZE];
+        int count;
+        Future<?> future;
+
+        Block() {
+            for (int i = 0; i < BLOCK_SIZE; i++) {
+                deals[i] = new Deal();
+            }
+        }
+    }
+
+    /**
+     * Judges a range of deals, splitting it in halves while it is large, and skipping those
+     * with an error if errors isn't null
+     */
+    private static class JudgeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ThreadLocal<HandEvaluator> evaluators;
+        private final boolean showdown;
+        private final Deal[] deals;
+        private final InvalidDealException[] errors;
+        private final long[] winners;
+        private final int from;
+        private final int to;
+
+        JudgeTask(ThreadLocal<HandEvaluator> evaluators, boolean showdown, Deal[] deals, InvalidDealException[] errors,
+                  long[] winners, int from, int to) {
+            this.evaluators = evaluators;
+            this.showdown = showdown;
+            this.deals = deals;
+            this.errors = errors;
+            this.winners = winners;
+            this.from = from;
+            this.to = to;
+        }
+
+        protected void compute() {
+            if (to - from > SPLIT_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new JudgeTask(evaluators, showdown, deals, errors, winners, from, middle),
+                        new JudgeTask(evaluators, showdown, deals, errors, winners, middle, to));
+                return;
+            }
+            HandEvaluator evaluator = evaluators.get();
+            int[] strengths = STRENGTHS.get();
+            for (int i = from; i < to; i++) {
+                if (errors == null || errors[i] == null) {
+                    winners[i] = showdown ? Showdown.judge(deals[i], evaluator, strengths)
+                            : TexasHold_em.judge(deals[i], evaluator, strengths);
+                }
+            }
+        }
+    }
+}
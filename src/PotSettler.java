@@ -0,0 +1,156 @@
+/***************************** POT SETTLER *****************************
+ * Splits the chips of a judged deal between the players: given what
+ * every seat put in (see Deal.getContributions()), which seats folded,
+ * and the strength of every seat's hand, works out the main pot and the
+ * side pots created by all-in players, and pays each pot to the best
+ * hands among the seats that put in enough to be eligible for it.
+ *
+ * Pots are made from the distinct contributions of the players still
+ * in: the main pot takes up to the smallest of them from every seat,
+ * the first side pot up to the next one, and so on. Chips that folded
+ * seats put in above the largest of them go to the last pot. If every
+ * seat folded, everyone gets their chips back.
+ *
+ * A split pot is shared evenly, and the chips that don't divide evenly
+ * go one each to the winners closest to the left of the button, where
+ * seat 0 is the first seat left of the button.
+ *
+ * The strengths are compared as they are, so every pot is decided
+ * without evaluating any hand again. A PotSettler keeps scratch space
+ * between calls and is not thread safe.
+ *
+ ***********************************************************************
+ */
+public class PotSettler {
+
+
+    /********************************************************
+     ************** PRIVATE INSTANCE VARIABLES *****************
+     ********************************************************/
+    private final long[] levels = new long[Deal.MAX_PLAYERS]; // contribution each pot goes up to
+    private final long[] amounts = new long[Deal.MAX_PLAYERS]; // chips in each pot
+    private final long[] winners = new long[Deal.MAX_PLAYERS]; // seats each pot went to
+    private int numPots;
+
+
+    /*********************************************************
+     **************** PUBLIC INSTANCE METHODS ****************
+     *********************************************************/
+
+    /**
+     * Settles the pots of a deal, storing the chips won by each seat in payouts
+     *
+     * @param deal
+     * @param strengths the strength of each seat's hand, e.g. as filled in by
+     *                  TexasHold_em.judge()
+     * @param payouts must have room for every seat; overwritten
+     * @return the number of pots
+     */
+    public int settle(Deal deal, int[] strengths, long[] payouts) {
+        int numPlayers = deal.getNumPlayers();
+        long[] contributions = deal.getContributions();
+        long live = ((1L << numPlayers) - 1) & ~deal.getFolded();
+        numPots = 0;
+        if (live == 0) {
+            // nobody is left to win, so everyone gets their chips back
+            System.arraycopy(contributions, 0, payouts, 0, numPlayers);
+            return 0;
+        }
+
+        // the distinct contributions of the players still in, in ascending order
+        int numLevels = 0;
+        for (long rest = live; rest != 0; rest &= rest - 1) {
+            long level = contributions[Long.numberOfTrailingZeros(rest)];
+            int i = numLevels;
+            while (i > 0 && levels[i - 1] > level) {
+                i--;
+            }
+            if (level > 0 && (i == 0 || levels[i - 1] != level)) {
+                System.arraycopy(levels, i, levels, i + 1, numLevels - i);
+                levels[i] = level;
+                numLevels++;
+            }
+        }
+        if (numLevels == 0) {
+            // the players still in put nothing in: one pot of whatever the others did
+            levels[numLevels++] = 0L;
+        }
+
+        for (int seat = 0; seat < numPlayers; seat++) {
+            payouts[seat] = 0L;
+        }
+        long previous = 0L;
+        for (int pot = 0; pot < numLevels; pot++) {
+            long level = levels[pot];
+            boolean last = pot == numLevels - 1;
+            long amount = 0L;
+            long eligible = 0L;
+            for (int seat = 0; seat < numPlayers; seat++) {
+                long contribution = contributions[seat];
+                amount += last ? Math.max(0L, contribution - previous)
+                        : Math.min(contribution, level) - Math.min(contribution, previous);
+                if (contribution >= level) {
+                    eligible |= 1L << seat;
+                }
+            }
+            award(amount, TexasHold_em.chooseWinnerAmong(strengths, eligible & live), payouts);
+            previous = level;
+        }
+        return numPots;
+    }
+
+    /**
+     * Getter to return the number of pots of the last deal settled
+     *
+     * @return int
+     */
+    public int getNumPots() {
+        return numPots;
+    }
+
+    /**
+     * Returns the chips in a pot of the last deal settled, the main pot being pot 0
+     *
+     * @param pot
+     * @return long
+     */
+    public long getAmount(int pot) {
+        return amounts[pot];
+    }
+
+    /**
+     * Returns the seats that shared a pot of the last deal settled, as a bit mask
+     *
+     * @param pot
+     * @return long
+     */
+    public long getWinners(int pot) {
+        return winners[pot];
+    }
+
+
+    /*********************************************************
+     *************** PRIVATE INSTANCE METHODS ****************
+     *********************************************************/
+
+    /**
+     * Shares a pot evenly between its winners, giving the odd chips one each to the winners
+     * in seat order
+     *
+     * @param amount
+     * @param potWinners
+     * @param payouts
+     */
+    private void award(long amount, long potWinners, long[] payouts) {
+        amounts[numPots] = amount;
+        winners[numPots] = potWinners;
+        numPots++;
+
+        int count = Long.bitCount(potWinners);
+        long share = amount / count;
+        long oddChips = amount % count;
+        for (long rest = potWinners; rest != 0; rest &= rest - 1) {
+            payouts[Long.numberOfTrailingZeros(rest)] += share + (oddChips-- > 0 ? 1 : 0);
+        }
+    }
+}
@@ -0,0 +1,329 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/***************************** PREFLOP TABLE ***************************
+ * Heads-up preflop equities of every starting hand class against every
+ * other (see StartingHands), computed once and stored in a binary file
+ * that is memory-mapped for lookups.
+ *
+ * File layout, big-endian:
+ *     int     magic, "THPF"
+ *     int     version, 1
+ *     int     number of classes, 169
+ *     long    boards per matchup, 0 if the equities are exact
+ *     char[]  169 x 169 equities, row class against column class, as
+ *             the fraction of the pot won times 65535
+ *
+ * The equity of a class against another is the average over every pair
+ * of combinations of the two classes that don't share a card, with each
+ * matchup either sampled or, much more slowly, enumerated exactly.
+ *
+ ***********************************************************************
+ */
+public class PreflopTable {
+
+
+    /********************************************************
+     ************** PRIVATE CLASS VARIABLES *****************
+     ********************************************************/
+    private static final int MAGIC = 0x54485046; // "THPF"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8;
+    private static final int SCALE = 0xFFFF;
+
+
+    /********************************************************
+     ************** PRIVATE INSTANCE VARIABLES *****************
+     ********************************************************/
+    private final MappedByteBuffer equities;
+    private final long boardsPerMatchup;
+
+
+    /********************************************************
+     ******************** CONSTRUCTOR ***********************
+     ********************************************************/
+
+    private PreflopTable(MappedByteBuffer equities, long boardsPerMatchup) {
+        this.equities = equities;
+        this.boardsPerMatchup = boardsPerMatchup;
+    }
+
+
+    /*********************************************************
+     ****************** PUBLIC CLASS METHODS *****************
+     *********************************************************/
+
+    /**
+     * Memory-maps a table written by generate()
+     *
+     * @param file
+     * @return PreflopTable
+     * @throws IOException if the file can't be read or isn't a preflop table
+     */
+    public static PreflopTable load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = HEADER_SIZE + 2L * StartingHands.NUM_CLASSES * StartingHands.NUM_CLASSES;
+            if (channel.size() != size) {
+                throw new IOException("Not a preflop table, wrong size: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || buffer.getInt(8) != StartingHands.NUM_CLASSES) {
+                throw new IOException("Not a preflop table, wrong header: " + file);
+            }
+            return new PreflopTable(buffer, buffer.getLong(12));
+        }
+    }
+
+    /**
+     * Computes the equity of every class against every other and writes the table to a file
+     *
+     * @param file
+     * @param boardsPerMatchup boards sampled for each pair of classes, or 0 to enumerate every
+     *                         board of every pair of combinations, which takes hours
+     * @param seed
+     * @param numThreads
+     * @throws IOException
+     */
+    public static void generate(Path file, long boardsPerMatchup, long seed, int numThreads) throws IOException {
+        int n = StartingHands.NUM_CLASSES;
+        double[][] equity = new double[n][n];
+
+        if (boardsPerMatchup == 0) {
+            // every matchup in turn, each enumeration spread over all the threads
+            try (ExactEquity exactEquity = new ExactEquity(numThreads)) {
+                for (int a = 0; a < n; a++) {
+                    for (int b = a; b < n; b++) {
+                        setEquity(equity, a, b, exactMatchup(exactEquity, a, b));
+                    }
+                }
+            }
+        } else {
+            sampleAll(equity, boardsPerMatchup, seed, numThreads);
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(n);
+            out.writeLong(boardsPerMatchup);
+            for (int a = 0; a < n; a++) {
+                for (int b = 0; b < n; b++) {
+                    out.writeChar((int) Math.round(equity[a][b] * SCALE));
+                }
+            }
+        }
+    }
+
+
+    /*********************************************************
+     **************** PUBLIC INSTANCE METHODS ****************
+     *********************************************************/
+
+    /**
+     * Returns the equity of a hand of the first class against a hand of the second
+     *
+     * @param classA
+     * @param classB
+     * @return double
+     */
+    public double equity(int classA, int classB) {
+        int offset = HEADER_SIZE + 2 * (classA * StartingHands.NUM_CLASSES + classB);
+        return (double) equities.getChar(offset) / SCALE;
+    }
+
+    /**
+     * Returns the equity of the first pair of hole cards against the second, from their classes
+     *
+     * @param a1
+     * @param a2
+     * @param b1
+     * @param b2
+     * @return double
+     */
+    public double equity(int a1, int a2, int b1, int b2) {
+        return equity(StartingHands.classOf(a1, a2), StartingHands.classOf(b1, b2));
+    }
+
+    /**
+     * Getter to return the number of boards each matchup was sampled with, 0 if exact
+     *
+     * @return long
+     */
+    public long getBoardsPerMatchup() {
+        return boardsPerMatchup;
+    }
+
+
+    /*********************************************************
+     ****************** PRIVATE CLASS METHODS ****************
+     *********************************************************/
+
+    /**
+     * Samples every matchup, one task per row of the table, each matchup with its own random
+     * split off the seed in order
+     *
+     * @param equity
+     * @param boardsPerMatchup
+     * @param seed
+     * @param numThreads
+     * @throws IOException
+     */
+    private static void sampleAll(double[][] equity, long boardsPerMatchup, long seed, int numThreads)
+            throws IOException {
+        int n = equity.length;
+        ForkJoinPool pool = new ForkJoinPool(numThreads);
+        try {
+            SplittableRandom random = new SplittableRandom(seed);
+            ArrayList<Future<?>> rows = new ArrayList<>();
+            for (int a = 0; a < n; a++) {
+                int classA = a;
+                SplittableRandom[] randoms = new SplittableRandom[n];
+                for (int b = a; b < n; b++) {
+                    randoms[b] = random.split();
+                }
+                rows.add(pool.submit(() -> {
+                    for (int classB = classA; classB < n; classB++) {
+                        setEquity(equity, classA, classB,
+                                sampleMatchup(classA, classB, boardsPerMatchup, randoms[classB]));
+                    }
+                }));
+            }
+            for (Future<?> row : rows) {
+                row.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while generating", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to generate", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Stores the equity of class a against class b, and of b against a
+     */
+    private static void setEquity(double[][] equity, int a, int b, double e) {
+        equity[b][a] = 1.0 - e;
+        equity[a][b] = e; // on the diagonal, this is the one that counts
+    }
+
+    /**
+     * Estimates the equity of class a against class b by dealing random combinations of both
+     * and random boards
+     *
+     * @param a
+     * @param b
+     * @param boards
+     * @param random
+     * @return
+     */
+    private static double sampleMatchup(int a, int b, long boards, SplittableRandom random) {
+        int[][] combosA = StartingHands.combos(a);
+        int[][] combosB = StartingHands.combos(b);
+        int[] deck = new int[Card.NUM_CARDS];
+        for (int i = 0; i < deck.length; i++) {
+            deck[i] = i;
+        }
+        int[] board = new int[Deal.BOARD_SIZE];
+        BoardState boardState = new BoardState();
+        double share = 0;
+
+        for (long s = 0; s < boards; s++) {
+            int[] handA = combosA[random.nextInt(combosA.length)];
+            int[] handB;
+            long used;
+            do {
+                handB = combosB[random.nextInt(combosB.length)];
+                used = 1L << handA[0] | 1L << handA[1] | 1L << handB[0] | 1L << handB[1];
+            } while (Long.bitCount(used) < 4);
+
+            // partial Fisher-Yates shuffle over the whole deck, skipping the hole cards
+            for (int i = 0; i < Deal.BOARD_SIZE; ) {
+                int j = i + random.nextInt(deck.length - i);
+                int card = deck[j];
+                deck[j] = deck[i];
+                deck[i] = card;
+                if ((used & 1L << card) == 0) {
+                    board[i++] = card;
+                }
+            }
+
+            boardState.set(board);
+            int strengthA = boardState.evaluate(handA[0], handA[1]);
+            int strengthB = boardState.evaluate(handB[0], handB[1]);
+            share += strengthA > strengthB ? 1.0 : strengthA == strengthB ? 0.5 : 0.0;
+        }
+        return share / boards;
+    }
+
+    /**
+     * Computes the exact equity of class a against class b, averaged over every pair of
+     * combinations without a shared card
+     *
+     * @param exactEquity
+     * @param a
+     * @param b
+     * @return
+     */
+    private static double exactMatchup(ExactEquity exactEquity, int a, int b) {
+        double total = 0;
+        int count = 0;
+        for (int[] handA : StartingHands.combos(a)) {
+            for (int[] handB : StartingHands.combos(b)) {
+                long used = 1L << handA[0] | 1L << handA[1] | 1L << handB[0] | 1L << handB[1];
+                if (Long.bitCount(used) == 4) {
+                    int[] holeCards = {handA[0], handA[1], handB[0], handB[1]};
+                    total += exactEquity.calculate(holeCards, new int[0]).getEquity(0);
+                    count++;
+                }
+            }
+        }
+        return total / count;
+    }
+
+
+    /*********************************************************
+     ****************** MAIN METHOD **************************
+     *********************************************************/
+
+    /**
+     * java PreflopTable generate <file> [boards per matchup, 0 for exact] [seed]
+     * java PreflopTable lookup <file> <class> <class>, e.g. lookup preflop.bin AKs QQ
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 2 && args[0].equals("generate")) {
+            long boards = args.length > 2 ? Long.parseLong(args[2]) : 100000;
+            long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+            long start = System.nanoTime();
+            generate(Paths.get(args[1]), boards, seed, Runtime.getRuntime().availableProcessors());
+            System.out.printf("Generated %s in %.1f s%n", args[1], (System.nanoTime() - start) / 1e9);
+        } else if (args.length == 4 && args[0].equals("lookup")) {
+            PreflopTable table = load(Paths.get(args[1]));
+            int a = StartingHands.parse(args[2]);
+            int b = StartingHands.parse(args[3]);
+            if (a < 0 || b < 0) {
+                System.out.println("ERROR. Not a starting hand class: " + (a < 0 ? args[2] : args[3]));
+                return;
+            }
+            System.out.printf("%s vs %s: %.4f%n", StartingHands.name(a), StartingHands.name(b), table.equity(a, b));
+        } else {
+            System.out.println("Usage: java PreflopTable generate <file> [boards per matchup] [seed]");
+            System.out.println("       java PreflopTable lookup <file> <class> <class>");
+        }
+    }
+}
@@ -0,0 +1,447 @@
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/***************************** RANGE EQUITY ****************************
+ * Computes the heads-up equity of one range of hole cards against
+ * another (see HandRange), given none, three or four of the community
+ * cards: the average over every pair of combinations of the two ranges
+ * that don't share a card with each other or the board, each pair
+ * counting for the product of the weights of its two combinations.
+ *
+ * calculate() judges every completion of the board exactly. Rather than
+ * running each pair of combinations on its own, it deals each board once,
+ * evaluates every combination of both ranges against it, and compares
+ * the strengths of the pairs, so the hand evaluator runs once per
+ * combination per board rather than once per pair. The boards are split
+ * on the first card dealt and the parts are run in parallel. This takes
+ * milliseconds from the flop on, while before the flop estimate() is the
+ * practical choice.
+ *
+ * estimate() samples pairs of combinations by weight together with
+ * random boards, in chunks split off the seed in order like
+ * EquityCalculator, so the same seed gives the same result however many
+ * threads are used.
+ *
+ * Player 0 of the resulting Equity holds the first range, player 1 the
+ * second.
+ *
+ ***********************************************************************
+ */
+public class RangeEquity implements AutoCloseable {
+
+
+    /********************************************************
+     ************** PRIVATE CLASS VARIABLES *****************
+     ********************************************************/
+    private static final int CHUNK_SIZE = 1 << 16; // samples per task
+    private static final int MAX_ATTEMPTS = 1 << 20; // draws of a pair of combinations that share a card
+
+
+    /********************************************************
+     ************** PRIVATE INSTANCE VARIABLES *****************
+     ********************************************************/
+    private final ForkJoinPool pool;
+
+
+    /********************************************************
+     ******************** CONSTRUCTOR ***********************
+     ********************************************************/
+
+    /**
+     * Constructor that creates a RangeEquity running on the given number of threads
+     *
+     * @param numThreads
+     */
+    public RangeEquity(int numThreads) {
+        this.pool = new ForkJoinPool(numThreads);
+    }
+
+
+    /*********************************************************
+     **************** PUBLIC INSTANCE METHODS ****************
+     *********************************************************/
+
+    /**
+     * Judges every pair of combinations of the two ranges on every possible completion of
+     * the board
+     *
+     * @param range1
+     * @param range2
+     * @param board the card ids of the community cards known so far: 0, 3, 4 or 5 of them
+     * @return Equity
+     * @throws IllegalArgumentException if the board is invalid or no pair of combinations fits it
+     */
+    public Equity calculate(HandRange range1, HandRange range2, int[] board) {
+        Matchups matchups = new Matchups(range1, range2, board);
+        int missing = Deal.BOARD_SIZE - board.length;
+        if (missing == 0) {
+            return matchups.enumerate(-1);
+        }
+
+        ArrayList<Future<Equity>> parts = new ArrayList<>();
+        for (int first = 0; first <= matchups.deck.length - missing; first++) {
+            int firstCard = first;
+            parts.add(pool.submit(() -> matchups.enumerate(firstCard)));
+        }
+        return collect(parts);
+    }
+
+    /**
+     * Estimates the equity of the first range against the second from the given number of
+     * pairs of combinations, drawn by weight, and random boards
+     *
+     * @param range1
+     * @param range2
+     * @param board the card ids of the community cards known so far: 0, 3, 4 or 5 of them
+     * @param samples
+     * @param seed
+     * @return Equity
+     * @throws IllegalArgumentException if the board is invalid or no pair of combinations fits it
+     */
+    public Equity estimate(HandRange range1, HandRange range2, int[] board, long samples, long seed) {
+        Matchups matchups = new Matchups(range1, range2, board);
+
+        SplittableRandom random = new SplittableRandom(seed);
+        ArrayList<Future<Equity>> chunks = new ArrayList<>();
+        for (long start = 0; start < samples; start += CHUNK_SIZE) {
+            long count = Math.min(CHUNK_SIZE, samples - start);
+            SplittableRandom chunkRandom = random.split();
+            chunks.add(pool.submit(() -> matchups.sample(count, chunkRandom)));
+        }
+        return collect(chunks);
+    }
+
+    /**
+     * Shuts down the threads
+     */
+    public void close() {
+        pool.shutdown();
+    }
+
+
+    /*********************************************************
+     ****************** PRIVATE CLASS METHODS ****************
+     *********************************************************/
+
+    /**
+     * Adds up the Equity of every part of a calculation
+     *
+     * @param parts
+     * @return
+     */
+    private static Equity collect(ArrayList<Future<Equity>> parts) {
+        Equity equity = new Equity(2);
+        try {
+            for (Future<Equity> part : parts) {
+                equity.add(part.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while calculating", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to calculate", e.getCause());
+        }
+        return equity;
+    }
+
+
+    /*********************************************************
+     ******************** NESTED CLASSES *********************
+     *********************************************************/
+
+    /**
+     * The combinations of both ranges that fit one board, with their cards and weights, shared
+     * by all parts of a calculation
+     */
+    private static class Matchups {
+        final int[] board;
+        final int[] deck; // the cards left to complete the board with
+        final int missing; // number of community cards to deal
+        final int[] cards1; // the two card ids of each combination of range 1, 2i and 2i+1
+        final long[] masks1;
+        final double[] weights1;
+        final int[] cards2;
+        final long[] masks2;
+        final double[] weights2;
+        final double[] cumulative1; // running sums of the weights, for drawing by weight
+        final double[] cumulative2;
+
+        Matchups(HandRange range1, HandRange range2, int[] board) {
+            checkBoard(board);
+            this.board = board.clone();
+            this.deck = EquityCalculator.remainingDeck(new int[0], board);
+            this.missing = Deal.BOARD_SIZE - board.length;
+
+            long boardMask = Card.mask(board);
+            int[] combos1 = fitting(range1, boardMask);
+            int[] combos2 = fitting(range2, boardMask);
+            cards1 = new int[2 * combos1.length];
+            masks1 = new long[combos1.length];
+            weights1 = new double[combos1.length];
+            cumulative1 = new double[combos1.length];
+            cards2 = new int[2 * combos2.length];
+            masks2 = new long[combos2.length];
+            weights2 = new double[combos2.length];
+            cumulative2 = new double[combos2.length];
+            unpack(range1, combos1, cards1, masks1, weights1, cumulative1);
+            unpack(range2, combos2, cards2, masks2, weights2, cumulative2);
+
+            boolean fits = false;
+            for (int i = 0; i < masks1.length && !fits; i++) {
+                for (int j = 0; j < masks2.length && !fits; j++) {
+                    fits = (masks1[i] & masks2[j]) == 0;
+                }
+            }
+            if (!fits) {
+                throw new IllegalArgumentException("No combinations of the two ranges fit the board together");
+            }
+        }
+
+        /**
+         * Judges every pair of combinations on every board whose first dealt card is
+         * deck[first], or on the single complete board if first is -1
+         */
+        Equity enumerate(int first) {
+            Equity equity = new Equity(2);
+            BoardState boardState = new BoardState();
+            int[] cards = new int[Deal.BOARD_SIZE];
+            System.arraycopy(board, 0, cards, 0, board.length);
+            int[] strengths1 = new int[masks1.length];
+            int[] strengths2 = new int[masks2.length];
+            if (first < 0) {
+                judge(boardState.set(cards), strengths1, strengths2, equity);
+            } else {
+                cards[board.length] = deck[first];
+                deal(first + 1, board.length + 1, cards, boardState, strengths1, strengths2, equity);
+            }
+            return equity;
+        }
+
+        /**
+         * Draws count pairs of combinations by weight, each with a random completion of the
+         * board, and judges them
+         */
+        Equity sample(long count, SplittableRandom random) {
+            Equity equity = new Equity(2);
+            BoardState boardState = new BoardState();
+            int[] cards = new int[Deal.BOARD_SIZE];
+            System.arraycopy(board, 0, cards, 0, board.length);
+            int[] shuffled = deck.clone();
+
+            for (long s = 0; s < count; s++) {
+                int i;
+                int j;
+                int attempts = 0;
+                do {
+                    if (++attempts > MAX_ATTEMPTS) {
+                        throw new IllegalStateException("The two ranges hardly ever fit the board together");
+                    }
+                    i = draw(cumulative1, random);
+                    j = draw(cumulative2, random);
+                } while ((masks1[i] & masks2[j]) != 0);
+                long used = masks1[i] | masks2[j];
+
+                // partial Fisher-Yates shuffle of the deck, skipping the hole cards
+                for (int k = 0; k < missing; ) {
+                    int l = k + random.nextInt(shuffled.length - k);
+                    int card = shuffled[l];
+                    shuffled[l] = shuffled[k];
+                    shuffled[k] = card;
+                    if ((used & 1L << card) == 0) {
+                        cards[board.length + k++] = card;
+                    }
+                }
+
+                boardState.set(cards);
+                int strength1 = boardState.evaluate(cards1[2 * i], cards1[2 * i + 1]);
+                int strength2 = boardState.evaluate(cards2[2 * j], cards2[2 * j + 1]);
+                equity.add(strength1 > strength2 ? 1L : strength1 < strength2 ? 2L : 3L);
+            }
+            return equity;
+        }
+
+        /**
+         * Deals the remaining cards from deck[from] onwards in every possible way
+         */
+        private void deal(int from, int dealt, int[] cards, BoardState boardState, int[] strengths1,
+                          int[] strengths2, Equity equity) {
+            if (dealt == Deal.BOARD_SIZE) {
+                judge(boardState.set(cards), strengths1, strengths2, equity);
+                return;
+            }
+            for (int i = from; i <= deck.length - (Deal.BOARD_SIZE - dealt); i++) {
+                cards[dealt] = deck[i];
+                deal(i + 1, dealt + 1, cards, boardState, strengths1, strengths2, equity);
+            }
+        }
+
+        /**
+         * Judges every pair of combinations on one complete board, evaluating each combination
+         * once; combinations holding a card of the board are skipped
+         */
+        private void judge(BoardState boardState, int[] strengths1, int[] strengths2, Equity equity) {
+            long boardMask = boardState.getCardMask();
+            evaluate(boardState, boardMask, cards1, masks1, strengths1);
+            evaluate(boardState, boardMask, cards2, masks2, strengths2);
+
+            // the outcomes of all the pairs add up to three sums per board
+            double win1 = 0.0;
+            double win2 = 0.0;
+            double tie = 0.0;
+            long count1 = 0;
+            long count2 = 0;
+            long countTie = 0;
+            for (int i = 0; i < strengths1.length; i++) {
+                int strength1 = strengths1[i];
+                if (strength1 < 0) {
+                    continue;
+                }
+                long mask1 = masks1[i];
+                double w1 = 0.0;
+                double w2 = 0.0;
+                double wTie = 0.0;
+                for (int j = 0; j < strengths2.length; j++) {
+                    int strength2 = strengths2[j];
+                    if (strength2 < 0 || (mask1 & masks2[j]) != 0) {
+                        continue;
+                    }
+                    if (strength1 > strength2) {
+                        w1 += weights2[j];
+                        count1++;
+                    } else if (strength1 < strength2) {
+                        w2 += weights2[j];
+                        count2++;
+                    } else {
+                        wTie += weights2[j];
+                        countTie++;
+                    }
+                }
+                win1 += weights1[i] * w1;
+                win2 += weights1[i] * w2;
+                tie += weights1[i] * wTie;
+            }
+            equity.add(1L, win1, count1);
+            equity.add(2L, win2, count2);
+            equity.add(3L, tie, countTie);
+        }
+
+        /**
+         * Evaluates every combination of a range on a board, -1 for those holding one of its cards
+         */
+        private static void evaluate(BoardState boardState, long boardMask, int[] cards, long[] masks,
+                                     int[] strengths) {
+            for (int i = 0; i < masks.length; i++) {
+                strengths[i] = (masks[i] & boardMask) != 0 ? -1
+                        : boardState.evaluate(cards[2 * i], cards[2 * i + 1]);
+            }
+        }
+
+        /**
+         * Returns the index of a combination drawn with probability proportional to its weight
+         */
+        private static int draw(double[] cumulative, SplittableRandom random) {
+            double target = random.nextDouble() * cumulative[cumulative.length - 1];
+            int low = 0;
+            int high = cumulative.length - 1;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (cumulative[middle] > target) {
+                    high = middle;
+                } else {
+                    low = middle + 1;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Checks that a board has 0, 3, 4 or 5 distinct cards
+         */
+        private static void checkBoard(int[] board) {
+            if (board.length == 1 || board.length == 2 || board.length > Deal.BOARD_SIZE) {
+                throw new IllegalArgumentException("The board must have 0, 3, 4 or 5 cards, not " + board.length);
+            }
+            long used = 0L;
+            for (int id : board) {
+                if (id < 0 || id >= Card.NUM_CARDS) {
+                    throw new IllegalArgumentException("Not a card id: " + id);
+                }
+                if ((used & 1L << id) != 0) {
+                    throw new IllegalArgumentException("Card dealt twice: " + Card.of(id));
+                }
+                used |= 1L << id;
+            }
+        }
+
+        /**
+         * Returns the indexes of the combinations of a range that don't hold a card of the board
+         */
+        private static int[] fitting(HandRange range, long boardMask) {
+            int[] combos = range.getCombos();
+            int n = 0;
+            for (int combo : combos) {
+                long mask = 1L << StartingHands.highCard(combo) | 1L << StartingHands.lowCard(combo);
+                if ((mask & boardMask) == 0) {
+                    combos[n++] = combo;
+                }
+            }
+            int[] fitting = new int[n];
+            System.arraycopy(combos, 0, fitting, 0, n);
+            return fitting;
+        }
+
+        /**
+         * Fills in the cards, masks, weights and running sums of weights of some combinations
+         */
+        private static void unpack(HandRange range, int[] combos, int[] cards, long[] masks, double[] weights,
+                                   double[] cumulative) {
+            double sum = 0.0;
+            for (int i = 0; i < combos.length; i++) {
+                int high = StartingHands.highCard(combos[i]);
+                int low = StartingHands.lowCard(combos[i]);
+                cards[2 * i] = high;
+                cards[2 * i + 1] = low;
+                masks[i] = 1L << high | 1L << low;
+                weights[i] = range.getWeight(high, low);
+                sum += weights[i];
+                cumulative[i] = sum;
+            }
+        }
+    }
+
+
+    /*********************************************************
+     ****************** MAIN METHOD **************************
+     *********************************************************/
+
+    /**
+     * Prints the equity of one range against another, e.g.
+     *     java RangeEquity "QQ+, AKs" "22+, AQo:0.5" "2h 7h 9c" [samples] [seed]
+     * exactly, unless a number of samples is given or the board is empty
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: java RangeEquity \"<range>\" \"<range>\" [\"<board>\"] [samples] [seed]");
+            return;
+        }
+        HandRange range1 = HandRange.parse(args[0]);
+        HandRange range2 = HandRange.parse(args[1]);
+        int[] board = args.length > 2 ? EquityCalculator.parseCards(args[2]) : new int[0];
+        long samples = args.length > 3 ? Long.parseLong(args[3]) : board.length == 0 ? 1000000 : 0;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : System.nanoTime();
+
+        try (RangeEquity rangeEquity = new RangeEquity(Runtime.getRuntime().availableProcessors())) {
+            long start = System.nanoTime();
+            Equity equity = samples > 0 ? rangeEquity.estimate(range1, range2, board, samples, seed)
+                    : rangeEquity.calculate(range1, range2, board);
+            long elapsed = System.nanoTime() - start;
+            System.out.println(equity);
+            // getBoards() counts every pair of combinations judged on a board, so these are matchups
+            System.out.printf("%d x %d combinations, %d matchups in %.1f ms%n", range1.size(), range2.size(),
+                    equity.getBoards(), elapsed / 1e6);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**************************** SESSION LEDGER ***************************
+ * Running chip balances of the players of a session, updated deal by
+ * deal as the pots are settled, so a session of any length can be
+ * settled as a stream: only one balance per player is kept, never the
+ * deals themselves.
+ *
+ * A balance is what the player won minus what they put in, over every
+ * deal so far. Balances are kept in an open-addressing table of player
+ * ids, so updating them creates no objects.
+ *
+ * An invalid deal changes no balance and gets an error line, as in
+ * BatchJudger.
+ *
+ ***********************************************************************
+ */
+public class SessionLedger {
+
+
+    /********************************************************
+     ************** PRIVATE CLASS VARIABLES *****************
+     ********************************************************/
+    private static final int INITIAL_CAPACITY = 64; // a power of two
+    private static final int BUFFER_SIZE = 1 << 16;
+    // longest possible line: every player with a 10 digit id and a 20 character balance
+    private static final int MAX_LINE = Deal.MAX_PLAYERS * 32 + 1;
+
+
+    /********************************************************
+     ************** PRIVATE INSTANCE VARIABLES *****************
+     ********************************************************/
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private long[] balances = new long[INITIAL_CAPACITY];
+    private boolean[] used = new boolean[INITIAL_CAPACITY];
+    private int size;
+
+
+    /*********************************************************
+     **************** PUBLIC INSTANCE METHODS ****************
+     *********************************************************/
+
+    /**
+     * Adds the result of a settled deal to the balances of its players
+     *
+     * @param deal
+     * @param payouts the chips each seat won, as filled in by PotSettler.settle()
+     */
+    public void apply(Deal deal, long[] payouts) {
+        int[] playerIds = deal.getPlayerIds();
+        long[] contributions = deal.getContributions();
+        for (int seat = 0; seat < deal.getNumPlayers(); seat++) {
+            balances[slotOf(playerIds[seat])] += payouts[seat] - contributions[seat];
+        }
+    }
+
+    /**
+     * Returns the balance of a player, 0 if they haven't played
+     *
+     * @param playerId
+     * @return long
+     */
+    public long getBalance(int playerId) {
+        int slot = find(playerId);
+        return used[slot] ? balances[slot] : 0L;
+    }
+
+    /**
+     * Getter to return the number of players with a balance
+     *
+     * @return int
+     */
+    public int size() {
+        return size;
+    }
+
+
+    /*********************************************************
+     ****************** PUBLIC CLASS METHODS *****************
+     *********************************************************/
+
+    /**
+     * Judges and settles every deal from a source in order, writing after each deal a line
+     * with the running balance of each of its players in seat order, e.g. "0=150 1=-100 2=-50"
+     *
+     * @param reader
+     * @param out
+     * @return the ledger with the final balances
+     * @throws IOException
+     */
+    public static SessionLedger run(DealSource reader, OutputStream out) throws IOException {
+        return run(reader, out, new BoardState());
+    }
+
+    /**
+     * Judges, with the given engine, and settles every deal from a source in order, like
+     * run(DealSource, OutputStream)
+     *
+     * @param reader
+     * @param out
+     * @param evaluator
+     * @return the ledger with the final balances
+     * @throws IOException
+     */
+    public static SessionLedger run(DealSource reader, OutputStream out, HandEvaluator evaluator)
+            throws IOException {
+        SessionLedger ledger = new SessionLedger();
+        PotSettler settler = new PotSettler();
+        Deal deal = new Deal();
+        int[] strengths = new int[Deal.MAX_PLAYERS];
+        long[] payouts = new long[Deal.MAX_PLAYERS];
+        StringBuilder line = new StringBuilder(MAX_LINE);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int position = 0;
+
+        try {
+            while (true) {
+                line.setLength(0);
+                try {
+                    if (!reader.next(deal)) {
+                        break;
+                    }
+                    TexasHold_em.judge(deal, evaluator, strengths);
+                    settler.settle(deal, strengths, payouts);
+                    ledger.apply(deal, payouts);
+
+                    int[] playerIds = deal.getPlayerIds();
+                    for (int seat = 0; seat < deal.getNumPlayers(); seat++) {
+                        if (seat > 0) {
+                            line.append(' ');
+                        }
+                        line.append(playerIds[seat]).append('=').append(ledger.getBalance(playerIds[seat]));
+                    }
+                    line.append('\n');
+                } catch (InvalidDealException e) {
+                    line.append(BatchJudger.errorLine(e));
+                }
+
+                if (position + line.length() > buffer.length) {
+                    out.write(buffer, 0, position);
+                    position = 0;
+                }
+                for (int i = 0; i < line.length(); i++) {
+                    buffer[position++] = (byte) line.charAt(i);
+                }
+            }
+        } finally {
+            out.write(buffer, 0, position);
+            out.flush();
+        }
+        return ledger;
+    }
+
+
+    /*********************************************************
+     *************** PRIVATE INSTANCE METHODS ****************
+     *********************************************************/
+
+    /**
+     * Returns the slot of a player id, claiming a new one if the player has none yet
+     *
+     * @param playerId
+     * @return
+     */
+    private int slotOf(int playerId) {
+        int slot = find(playerId);
+        if (!used[slot]) {
+            if (2 * (size + 1) > ids.length) {
+                grow();
+                slot = find(playerId);
+            }
+            used[slot] = true;
+            ids[slot] = playerId;
+            size++;
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the slot holding a player id, or the free slot where it would go
+     *
+     * @param playerId
+     * @return
+     */
+    private int find(int playerId) {
+        int mask = ids.length - 1;
+        int hash = playerId * 0x9E3779B9;
+        int slot = (hash ^ hash >>> 16) & mask;
+        while (used[slot] && ids[slot] != playerId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Doubles the table, keeping it at most half full
+     */
+    private void grow() {
+        int[] oldIds = ids;
+        long[] oldBalances = balances;
+        boolean[] oldUsed = used;
+        ids = new int[2 * oldIds.length];
+        balances = new long[2 * oldIds.length];
+        used = new boolean[2 * oldIds.length];
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldUsed[i]) {
+                int slot = find(oldIds[i]);
+                used[slot] = true;
+                ids[slot] = oldIds[i];
+                balances[slot] = oldBalances[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,279 @@
+import java.util.ArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/*************************** SHADOW EVALUATOR **************************
+ * Runs a candidate engine alongside the active one on live traffic: every
+ * hand is evaluated by both, only the active engine's strength is used,
+ * and the latency of both engines and every hand they disagree on are
+ * recorded in a Report.
+ *
+ * This is how a new engine is rolled out: it sees the same deals as the
+ * engine in production, and judging can't change until the report shows
+ * it never disagrees.
+ *
+ * Like any engine, a ShadowEvaluator is used by one thread; the threads
+ * share one Report, which records without locking except for the first
+ * few mismatches it keeps as examples.
+ *
+ ***********************************************************************
+ */
+public class ShadowEvaluator implements HandEvaluator {
+
+
+    /********************************************************
+     ************** PRIVATE INSTANCE VARIABLES *****************
+     ********************************************************/
+    private final HandEvaluator active;
+    private final HandEvaluator candidate;
+    private final Report report;
+    private final int[] candidateStrengths = new int[Deal.MAX_PLAYERS];
+
+
+    /********************************************************
+     ******************** CONSTRUCTOR ***********************
+     ********************************************************/
+
+    /**
+     * Constructor that creates a ShadowEvaluator running candidate alongside active
+     *
+     * @param active the engine whose strengths are returned
+     * @param candidate the engine being checked
+     * @param report where both are recorded
+     */
+    public ShadowEvaluator(HandEvaluator active, HandEvaluator candidate, Report report) {
+        this.active = active;
+        this.candidate = candidate;
+        this.report = report;
+    }
+
+
+    /*********************************************************
+     **************** PUBLIC INSTANCE METHODS ****************
+     *********************************************************/
+
+    /**
+     * Evaluates a hand with both engines and returns the strength of the active one
+     *
+     * @param cardMask
+     * @return int
+     */
+    public int evaluate(long cardMask) {
+        long start = System.nanoTime();
+        int expected = active.evaluate(cardMask);
+        long evaluated = System.nanoTime();
+        int actual = candidate.evaluate(cardMask);
+        report.record(1, evaluated - start, System.nanoTime() - evaluated);
+        if (actual != expected) {
+            report.mismatch(cardMask, expected, actual);
+        }
+        return expected;
+    }
+
+    /**
+     * Same as evaluate(long) for short-deck Hold'em
+     *
+     * @param cardMask
+     * @return int
+     */
+    public int evaluateShortDeck(long cardMask) {
+        long start = System.nanoTime();
+        int expected = active.evaluateShortDeck(cardMask);
+        long evaluated = System.nanoTime();
+        int actual = candidate.evaluateShortDeck(cardMask);
+        report.record(1, evaluated - start, System.nanoTime() - evaluated);
+        if (actual != expected) {
+            report.mismatch(cardMask, expected, actual);
+        }
+        return expected;
+    }
+
+    /**
+     * Prepares both engines for a deal
+     *
+     * @param deal
+     */
+    public void prepare(Deal deal) {
+        active.prepare(deal);
+        candidate.prepare(deal);
+    }
+
+    /**
+     * Returns whether both engines evaluate a seat of the variant faster than Showdown bounds it
+     *
+     * @param variant
+     * @return boolean
+     */
+    public boolean isCheaperThanBound(int variant) {
+        return active.isCheaperThanBound(variant) && candidate.isCheaperThanBound(variant);
+    }
+
+    /**
+     * Evaluates one seat of a deal with both engines and returns the strength of the active one
+     *
+     * @param deal
+     * @param seat
+     * @return int
+     */
+    public int evaluateSeat(Deal deal, int seat) {
+        long start = System.nanoTime();
+        int expected = active.evaluateSeat(deal, seat);
+        long evaluated = System.nanoTime();
+        int actual = candidate.evaluateSeat(deal, seat);
+        report.record(1, evaluated - start, System.nanoTime() - evaluated);
+        if (actual != expected) {
+            report.mismatch(Card.mask(deal.getBoard()) | deal.getHoleMask(seat), expected, actual);
+        }
+        return expected;
+    }
+
+    /**
+     * Evaluates every seat of a deal with both engines, keeping the strengths of the active one
+     *
+     * @param deal
+     * @param strengths
+     */
+    public void evaluate(Deal deal, int[] strengths) {
+        long start = System.nanoTime();
+        active.evaluate(deal, strengths);
+        long evaluated = System.nanoTime();
+        candidate.evaluate(deal, candidateStrengths);
+        int numPlayers = deal.getNumPlayers();
+        report.record(numPlayers, evaluated - start, System.nanoTime() - evaluated);
+
+        for (int seat = 0; seat < numPlayers; seat++) {
+            if (candidateStrengths[seat] != strengths[seat]) {
+                report.mismatch(Card.mask(deal.getBoard()) | deal.getHoleMask(seat), strengths[seat],
+                        candidateStrengths[seat]);
+            }
+        }
+    }
+
+    /**
+     * Getter to return the report both engines are recorded in
+     *
+     * @return Report
+     */
+    public Report getReport() {
+        return report;
+    }
+
+
+    /*********************************************************
+     ******************** NESTED CLASSES *********************
+     *********************************************************/
+
+    /**
+     * What the engines of ShadowEvaluators did: the number of hands, the latency of each call
+     * to either engine, and the hands they disagreed on
+     */
+    public static class Report {
+        private static final int MAX_EXAMPLES = 10;
+
+        private final String activeName;
+        private final String candidateName;
+        private final LongAdder hands = new LongAdder();
+        private final LongAdder mismatches = new LongAdder();
+        private final LatencyHistogram activeLatency = new LatencyHistogram();
+        private final LatencyHistogram candidateLatency = new LatencyHistogram();
+        private final ArrayList<String> examples = new ArrayList<>(); // the first mismatches, guarded by itself
+
+        /**
+         * Constructor that creates an empty Report for the engines with the given names
+         *
+         * @param activeName
+         * @param candidateName
+         */
+        public Report(String activeName, String candidateName) {
+            this.activeName = activeName;
+            this.candidateName = candidateName;
+        }
+
+        /**
+         * Getter to return the number of hands evaluated by both engines
+         *
+         * @return long
+         */
+        public long getHands() {
+            return hands.sum();
+        }
+
+        /**
+         * Getter to return the number of hands the engines disagreed on
+         *
+         * @return long
+         */
+        public long getMismatches() {
+            return mismatches.sum();
+        }
+
+        /**
+         * Returns the first few hands the engines disagreed on, each as its cards and the
+         * strength given by each engine
+         *
+         * @return ArrayList<String>
+         */
+        public ArrayList<String> getExamples() {
+            synchronized (examples) {
+                return new ArrayList<>(examples);
+            }
+        }
+
+        /**
+         * String representation of a Report, as lines of text
+         *
+         * @return String
+         */
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("shadow %s against %s: hands %d mismatches %d%n", candidateName, activeName,
+                    getHands(), getMismatches()));
+            sb.append(String.format("%-9s", activeName)).append(activeLatency).append(String.format("%n"));
+            sb.append(String.format("%-9s", candidateName)).append(candidateLatency).append(String.format("%n"));
+            for (String example : getExamples()) {
+                sb.append("mismatch ").append(example).append(String.format("%n"));
+            }
+            return sb.toString();
+        }
+
+        /**
+         * Returns the report as one JSON object
+         *
+         * @return String
+         */
+        public String toJson() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("{\"active\":\"").append(activeName).append('"');
+            sb.append(",\"candidate\":\"").append(candidateName).append('"');
+            sb.append(",\"hands\":").append(getHands());
+            sb.append(",\"mismatches\":").append(getMismatches());
+            sb.append(",\"latency_ns\":{\"active\":").append(activeLatency.toJson());
+            sb.append(",\"candidate\":").append(candidateLatency.toJson());
+            sb.append("},\"examples\":[");
+            ArrayList<String> list = getExamples();
+            for (int i = 0; i < list.size(); i++) {
+                sb.append(i > 0 ? ",\"" : "\"").append(list.get(i)).append('"');
+            }
+            return sb.append("]}").toString();
+        }
+
+        private void record(int numHands, long activeNanos, long candidateNanos) {
+            hands.add(numHands);
+            activeLatency.record(activeNanos);
+            candidateLatency.record(candidateNanos);
+        }
+
+        private void mismatch(long cardMask, int expected, int actual) {
+            mismatches.increment();
+            synchronized (examples) {
+                if (examples.size() < MAX_EXAMPLES) {
+                    StringBuilder sb = new StringBuilder();
+                    for (long rest = cardMask; rest != 0; rest &= rest - 1) {
+                        sb.append(Card.of(Long.numberOfTrailingZeros(rest))).append(' ');
+                    }
+                    examples.add(sb.append(activeName).append(' ').append(Integer.toHexString(expected)).append(' ')
+                            .append(candidateName).append(' ').append(Integer.toHexString(actual)).toString());
+                }
+            }
+        }
+    }
+}
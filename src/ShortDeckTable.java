@@ -0,0 +1,194 @@
+import java.util.Arrays;
+
+/************************** SHORT DECK TABLE ********************************************
+ * A lookup-table evaluator for seven card hands of short-deck Hold'em, built the same way
+ * as HandRankTable but from the 36 cards from the six up and with the short-deck ranking
+ * of TexasHold_em.evaluateShortDeckHand(long).
+ *
+ * With only the nine ranks from the six up, the rank keys of HandRankTable for its nine
+ * lowest ranks are enough to keep the sums of any seven ranks unique, so the table of
+ * hands without a flush has 117,511 entries instead of 7.8 million, and the flush table
+ * is indexed by the 9 rank bits of the flush suit from the six up. As with 52 cards, no
+ * full house or four of a kind can be made alongside a flush from seven cards, so the
+ * flush table alone decides those hands.
+ *
+ * Cards below the six have no key: they must never be looked up, which DealValidator
+ * makes sure of for the deals it checks.
+ ***************************************************************************************
+ */
+public class ShortDeckTable {
+
+    /********************************************************
+     ************** PRIVATE CLASS VARIABLES *****************
+     ********************************************************/
+    private static final int HAND_SIZE = 7;
+    private static final int LOWEST_RANK = 4; // rank index of the six
+    private static final int NUM_RANKS = Card.NUM_RANKS - LOWEST_RANK;
+
+    // rank keys whose 7-card sums are all distinct, indexed by rank index minus LOWEST_RANK (6 - A)
+    private static final int[] RANK_KEYS = {0, 1, 5, 22, 98, 453, 2031, 8698, 22854};
+
+    // suit counters are kept in 4 bits per suit, as in HandRankTable
+    private static final int SUIT_ADJUST = 0x3333;
+    private static final int FLUSH_CHECK = 0x8888;
+
+    // per card id: the rank key and a count of one for the card's suit
+    private static final int[] CARD_KEYS = new int[Card.NUM_CARDS];
+    private static final int[] SUIT_KEYS = new int[Card.NUM_CARDS];
+
+    // rank key sum -> index into STRENGTHS (plus one, 0 marks sums that can't occur)
+    private static final char[] RANK_CLASSES;
+    // the distinct strengths of hands without a flush, in ascending order
+    private static final int[] STRENGTHS;
+    // 9 rank bits (six to ace) of a suit with at least 5 cards -> strength of the flush or
+    // straight flush
+    private static final int[] FLUSHES = new int[1 << NUM_RANKS];
+
+    static {
+        for (int id = 0; id < Card.NUM_CARDS; id++) {
+            int rankIndex = id % Card.NUM_RANKS;
+            CARD_KEYS[id] = rankIndex < LOWEST_RANK ? 0 : RANK_KEYS[rankIndex - LOWEST_RANK];
+            SUIT_KEYS[id] = 1 << (4 * (id / Card.NUM_RANKS));
+        }
+
+        int[] strengthOfKey = new int[4 * RANK_KEYS[NUM_RANKS - 1] + (HAND_SIZE - 4) * RANK_KEYS[NUM_RANKS - 2] + 1];
+        addRankCombinations(strengthOfKey, new int[NUM_RANKS], 0, HAND_SIZE);
+        STRENGTHS = Arrays.stream(strengthOfKey).filter(x -> x != 0).distinct().sorted().toArray();
+        RANK_CLASSES = new char[strengthOfKey.length];
+        for (int key = 0; key < strengthOfKey.length; key++) {
+            if (strengthOfKey[key] != 0) {
+                RANK_CLASSES[key] = (char) (Arrays.binarySearch(STRENGTHS, strengthOfKey[key]) + 1);
+            }
+        }
+
+        for (int ranks = 0; ranks < FLUSHES.length; ranks++) {
+            if (Integer.bitCount(ranks) >= 5) {
+                FLUSHES[ranks] = TexasHold_em.evaluateShortDeckHand((long) ranks << LOWEST_RANK); // all clubs
+            }
+        }
+    }
+
+
+    /*********************************************************
+     ****************** PUBLIC CLASS METHODS *****************
+     *********************************************************/
+
+    /**
+     * Returns the short-deck strength of the best hand that can be made from the cards in a
+     * card mask (see Card.mask()), all from the six up. Masks of seven cards are looked up in
+     * the tables, any other number of cards is handed to TexasHold_em.evaluateShortDeckHand().
+     *
+     * @param cardMask
+     * @return
+     */
+    public static int evaluate(long cardMask) {
+        if (Long.bitCount(cardMask) != HAND_SIZE) {
+            return TexasHold_em.evaluateShortDeckHand(cardMask);
+        }
+        int suits = 0;
+        int key = 0;
+        for (long cards = cardMask; cards != 0; cards &= cards - 1) {
+            int id = Long.numberOfTrailingZeros(cards);
+            suits += SUIT_KEYS[id];
+            key += CARD_KEYS[id];
+        }
+        return evaluate(key, suits, cardMask);
+    }
+
+    /**
+     * Returns the rank key of a card from the six up. The rank keys of seven cards add up to
+     * the key that evaluate(int, int, long) expects, so the sum for the community cards can
+     * be computed once and reused, as with HandRankTable.rankKey().
+     *
+     * @param id
+     * @return
+     */
+    public static int rankKey(int id) {
+        return CARD_KEYS[id];
+    }
+
+    /**
+     * Returns the suit key of a card, to be added up like rankKey()
+     *
+     * @param id
+     * @return
+     */
+    public static int suitKey(int id) {
+        return SUIT_KEYS[id];
+    }
+
+    /**
+     * Returns the short-deck strength of seven cards given the sums of their rank keys and
+     * suit keys and their card mask
+     *
+     * @param rankKey
+     * @param suitKey
+     * @param cardMask
+     * @return
+     */
+    public static int evaluate(int rankKey, int suitKey, long cardMask) {
+        int flush = (suitKey + SUIT_ADJUST) & FLUSH_CHECK;
+        if (flush != 0) {
+            int suit = Integer.numberOfTrailingZeros(flush) >>> 2;
+            return FLUSHES[(int) (cardMask >>> (suit * Card.NUM_RANKS + LOWEST_RANK)) & (FLUSHES.length - 1)];
+        }
+        return STRENGTHS[RANK_CLASSES[rankKey] - 1];
+    }
+
+    /**
+     * Returns the short-deck strength of seven cards that can't make a flush, given the sum
+     * of their rank keys
+     *
+     * @param rankKey
+     * @return
+     */
+    public static int evaluateRanks(int rankKey) {
+        return STRENGTHS[RANK_CLASSES[rankKey] - 1];
+    }
+
+
+    /*********************************************************
+     ****************** PRIVATE CLASS METHODS ****************
+     *********************************************************/
+
+    /**
+     * Recursively visits every way of choosing the remaining cards from the ranks starting
+     * at index (0 for the six), and records the strength of each complete hand by its rank
+     * key sum, as HandRankTable does
+     *
+     * @param strengthOfKey
+     * @param counts
+     * @param index
+     * @param remaining
+     */
+    private static void addRankCombinations(int[] strengthOfKey, int[] counts, int index, int remaining) {
+        if (remaining == 0) {
+            int key = 0;
+            long cardMask = 0L;
+            int suit = 0;
+            for (int r = 0; r < counts.length; r++) {
+                key += counts[r] * RANK_KEYS[r];
+                // deal the copies of the ranks round robin over the suits, so the hand can't
+                // be a flush
+                for (int i = 0; i < counts[r]; i++) {
+                    cardMask |= 1L << Card.id(r + LOWEST_RANK, suit);
+                    suit = (suit + 1) % Card.NUM_SUITS;
+                }
+            }
+            int strength = TexasHold_em.evaluateShortDeckHand(cardMask);
+            if (strengthOfKey[key] != 0 && strengthOfKey[key] != strength) {
+                throw new IllegalStateException("Rank keys collide at " + key);
+            }
+            strengthOfKey[key] = strength;
+            return;
+        }
+        if (index == counts.length) {
+            return;
+        }
+        for (int count = Math.min(4, remaining); count >= 0; count--) {
+            counts[index] = count;
+            addRankCombinations(strengthOfKey, counts, index + 1, remaining - count);
+        }
+        counts[index] = 0;
+    }
+}
@@ -0,0 +1,292 @@
+/******************************* SHOWDOWN ******************************
+ * Chooses the winners of a deal while evaluating as few seats as it
+ * can, for when only the winners are wanted and not every seat's hand.
+ *
+ * Before anything is evaluated, every seat gets an upper bound on the
+ * strength it can reach, worked out with a few bit operations from its
+ * hole cards and the board:
+ *     - without a pair on the board no one can make a full house or
+ *       four of a kind, and a seat makes at most three of a kind with a
+ *       pocket pair matching the board, two pair with two hole cards
+ *       matching it, one pair with one, and high card with none
+ *     - on a paired board, a seat whose hole cards neither pair nor
+ *       match the board can only make what the board makes by itself
+ *     - a seat makes a flush only with enough cards of a suit the board
+ *       has three of, and a straight only if its ranks and the board's
+ *       hold five in a row
+ * The seat with the highest bound is evaluated first, and then only the
+ * seats whose bound reaches the best hand found so far: the others can
+ * neither win nor tie, so they aren't evaluated at all. Folded seats are
+ * never evaluated.
+ *
+ * On a dry board most seats of a large table can make no more than a
+ * pair, and the few seats that pair the board are evaluated first and
+ * usually win: at 9 players only about a third of the seats are
+ * evaluated. That pays off when evaluating a seat costs more than
+ * bounding it, as with the legacy engine (over twice as fast) and with
+ * Omaha (every pair of hole cards with every three community cards),
+ * but the lookup tables of BoardState evaluate a seat, and the bitmask
+ * engine a Hold'em seat, in fewer operations than its bound takes. Such
+ * engines say so with HandEvaluator.isCheaperThanBound(), and for them
+ * judge() evaluates every seat as TexasHold_em.judge() does, so a
+ * showdown is never slower than judging normally.
+ *
+ * Skipped seats get no strength, which is why pots with side pots are
+ * settled from TexasHold_em.judge() instead (see PotSettler).
+ *
+ ***********************************************************************
+ */
+public class Showdown {
+
+
+    /********************************************************
+     ************** PRIVATE CLASS VARIABLES *****************
+     ********************************************************/
+    // ranks of hands, as in TexasHold_em.evaluateHand(ArrayList)
+    private static final int ROYAL_FLUSH = 1;
+    private static final int FOUR_OF_A_KIND = 3;
+    private static final int FULL_HOUSE = 4;
+    private static final int FLUSH = 5;
+    private static final int STRAIGHT = 6;
+    private static final int THREE_OF_A_KIND = 7;
+    private static final int TWO_PAIR = 8;
+    private static final int ONE_PAIR = 9;
+    private static final int HIGH_CARD = 10;
+
+    private static final int RANK_BITS = 0x1FFF; // one bit per rank index within a suit
+    private static final int WHEEL = 0x100F; // A, 2, 3, 4, 5
+    private static final int SHORT_DECK_WHEEL = 0x10F0; // A, 6, 7, 8, 9
+    private static final int SEAT_BITS = 5; // enough for Deal.MAX_PLAYERS seats
+
+    // rank of hand -> TexasHold_em.maxStrength() of it, in Hold'em and in short deck
+    private static final int[] CEILINGS = new int[HIGH_CARD + 1];
+    private static final int[] SHORT_DECK_CEILINGS = new int[HIGH_CARD + 1];
+    // the most a seat can make on an unpaired board, indexed by bit 3 set if a pocket pair
+    // matches the board, bits 1-2 for how many of its ranks match the board (at most 2) and
+    // bit 0 set if it has a pocket pair
+    private static final int[] UNPAIRED_CATEGORIES = new int[16];
+
+    static {
+        for (int category = ROYAL_FLUSH; category <= HIGH_CARD; category++) {
+            CEILINGS[category] = TexasHold_em.maxStrength(category, false);
+            SHORT_DECK_CEILINGS[category] = TexasHold_em.maxStrength(category, true);
+        }
+        for (int index = 0; index < UNPAIRED_CATEGORIES.length; index++) {
+            if ((index & 8) != 0) {
+                UNPAIRED_CATEGORIES[index] = THREE_OF_A_KIND;
+            } else if ((index & 6) == 4) {
+                UNPAIRED_CATEGORIES[index] = TWO_PAIR;
+            } else if (index != 0) {
+                UNPAIRED_CATEGORIES[index] = ONE_PAIR;
+            } else {
+                UNPAIRED_CATEGORIES[index] = HIGH_CARD;
+            }
+        }
+    }
+
+
+    /*********************************************************
+     ****************** PUBLIC CLASS METHODS *****************
+     *********************************************************/
+
+    /**
+     * Judges a deal like TexasHold_em.judge(), returning the same winning seats, but only
+     * evaluates the seats that could win, see above. The strengths of the seats that were
+     * evaluated are filled in, and the others, folded seats included, are set to 0. The deal
+     * is recorded in JudgeMetrics if they are enabled, counting the hands of evaluated seats
+     * only. With an engine that is cheaper than the bounds of the deal's variant, it is handed to
+     * TexasHold_em.judge(), which evaluates every seat.
+     *
+     * @param deal
+     * @param evaluator
+     * @param strengths must have room for every seat; overwritten
+     * @return long
+     */
+    public static long judge(Deal deal, HandEvaluator evaluator, int[] strengths) {
+        if (evaluator.isCheaperThanBound(deal.getVariant())) {
+            return TexasHold_em.judge(deal, evaluator, strengths);
+        }
+        boolean timed = JudgeMetrics.isEnabled();
+        long start = timed ? System.nanoTime() : 0L;
+
+        int numPlayers = deal.getNumPlayers();
+        long seats = (1L << numPlayers) - 1;
+        long unfolded = seats & ~deal.getFolded();
+        int first = bound(deal, unfolded, strengths);
+
+        long winners = 0L;
+        long evaluated = 0L;
+        if (first >= 0) {
+            // the seat with the highest bound first, as it usually has the best hand, then
+            // every other seat whose bound reaches the best hand so far
+            evaluator.prepare(deal);
+            int best = evaluator.evaluateSeat(deal, first);
+            strengths[first] = best;
+            winners = 1L << first;
+            evaluated = winners;
+            // the seats whose bound reaches that hand, picked out without branching on each
+            // seat, as most of them are usually left out
+            long candidates = 0L;
+            for (long rest = unfolded & ~evaluated; rest != 0; rest &= rest - 1) {
+                int seat = Long.numberOfTrailingZeros(rest);
+                candidates |= (long) (~(strengths[seat] - best) >>> 31) << seat;
+            }
+            for (long rest = candidates; rest != 0; rest &= rest - 1) {
+                int seat = Long.numberOfTrailingZeros(rest);
+                if (strengths[seat] < best) {
+                    continue;
+                }
+                evaluated |= 1L << seat;
+                int strength = evaluator.evaluateSeat(deal, seat);
+                strengths[seat] = strength;
+                if (strength > best) {
+                    best = strength;
+                    winners = 1L << seat;
+                } else if (strength == best) {
+                    winners |= 1L << seat;
+                }
+            }
+        }
+        for (long rest = seats & ~evaluated; rest != 0; rest &= rest - 1) {
+            strengths[Long.numberOfTrailingZeros(rest)] = 0;
+        }
+
+        if (timed) {
+            long end = System.nanoTime();
+            JudgeMetrics.recordDeal(strengths, numPlayers, winners, start, end, end);
+        }
+        return winners;
+    }
+
+
+    /*********************************************************
+     ****************** PRIVATE CLASS METHODS ****************
+     *********************************************************/
+
+    /**
+     * Stores the upper bound of each of the given seats of a deal in strengths, see above,
+     * and returns the seat with the highest bound, or -1 if there are no seats. Everything
+     * that depends on the board alone is worked out once, so the bound of a seat takes a few
+     * table lookups and no branches that depend on its cards.
+     *
+     * @param deal
+     * @param seats
+     * @param strengths
+     * @return
+     */
+    private static int bound(Deal deal, long seats, int[] strengths) {
+        boolean shortDeck = deal.getVariant() == Deal.SHORT_DECK;
+        int[] ceilings = shortDeck ? SHORT_DECK_CEILINGS : CEILINGS;
+        long boardMask = deal.getBoardMask();
+        int c = (int) boardMask & RANK_BITS;
+        int d = (int) (boardMask >>> 13) & RANK_BITS;
+        int h = (int) (boardMask >>> 26) & RANK_BITS;
+        int s = (int) (boardMask >>> 39) & RANK_BITS;
+        int boardRanks = c | d | h | s;
+        int boardCategory = boardCategory(c, d, h, s);
+        boolean boardPaired = boardCategory != HIGH_CARD;
+
+        // at most one suit can have three of the five community cards
+        int flushSuit = -1;
+        int flushNeed = 0; // cards of the suit a seat needs to make a flush
+        for (int suit = 0; suit < Card.NUM_SUITS; suit++) {
+            int count = Long.bitCount(boardMask >>> (Card.NUM_RANKS * suit) & RANK_BITS);
+            if (count >= 3) {
+                flushSuit = suit;
+                flushNeed = deal.getVariant() == Deal.OMAHA ? OmahaBoard.HOLE_CARDS_USED : 5 - count;
+            }
+        }
+
+        // a straight takes three of the board's ranks within five ranks in a row
+        int wheel = shortDeck ? SHORT_DECK_WHEEL : WHEEL;
+        boolean straightPossible = Integer.bitCount(boardRanks & wheel) >= 3;
+        for (int low = 0; low + 5 <= Card.NUM_RANKS && !straightPossible; low++) {
+            straightPossible = Integer.bitCount(boardRanks & 0x1F << low) >= 3;
+        }
+
+        int[] holeCards = deal.getHoleCards();
+        boolean twoHoleCards = deal.getHoleSize() == Deal.HOLE_SIZE;
+        int plainBound = ceilings[boardCategory]; // a seat that neither pairs nor matches a paired board
+        int straightBound = straightPossible ? ceilings[STRAIGHT] : 0;
+        int flushShift = Card.NUM_RANKS * Math.max(flushSuit, 0);
+        int flushBound = flushSuit >= 0 ? ceilings[FLUSH] : 0;
+        int straightFlushBound = flushSuit >= 0 ? ceilings[ROYAL_FLUSH] : 0;
+        // the bound of a seat shifted left, with the seat in the low bits, so the seat with the
+        // highest bound is found with Math.max()
+        int highest = -1;
+        for (long rest = seats; rest != 0; rest &= rest - 1) {
+            int seat = Long.numberOfTrailingZeros(rest);
+            long holeMask = twoHoleCards ? 1L << holeCards[2 * seat] | 1L << holeCards[2 * seat + 1]
+                    : deal.getHoleMask(seat);
+            int hc = (int) holeMask & RANK_BITS;
+            int hd = (int) (holeMask >>> 13) & RANK_BITS;
+            int hh = (int) (holeMask >>> 26) & RANK_BITS;
+            int hs = (int) (holeMask >>> 39) & RANK_BITS;
+            int holeRanks = hc | hd | hh | hs;
+            int holePairs = (hc & hd) | (hc & hh) | (hc & hs) | (hd & hh) | (hd & hs) | (hh & hs);
+            int matches = holeRanks & boardRanks;
+
+            int bound;
+            if (boardPaired) {
+                bound = plainBound + (ceilings[FOUR_OF_A_KIND] - plainBound) * nonZero(holePairs | matches);
+            } else {
+                int pairs = Math.min(Integer.bitCount(matches), 2) << 1 | nonZero(holePairs);
+                bound = ceilings[UNPAIRED_CATEGORIES[nonZero(holePairs & boardRanks) << 3 | pairs]];
+            }
+            bound = Math.max(bound, straightBound & -straight(boardRanks | holeRanks, wheel));
+            int suitRanks = (int) ((boardMask | holeMask) >>> flushShift) & RANK_BITS;
+            int flush = flushBound + (straightFlushBound - flushBound) * straight(suitRanks, wheel);
+            int missing = Integer.bitCount((int) (holeMask >>> flushShift) & RANK_BITS) - flushNeed;
+            bound = Math.max(bound, flush & ~(missing >> 31));
+
+            strengths[seat] = bound;
+            highest = Math.max(highest, bound << SEAT_BITS | seat);
+        }
+        return highest < 0 ? -1 : highest & (1 << SEAT_BITS) - 1;
+    }
+
+    /**
+     * Returns the rank of the hand made by the ranks of the board alone, given one bit per
+     * rank for each suit: HIGH_CARD if no two cards pair
+     *
+     * @param c
+     * @param d
+     * @param h
+     * @param s
+     * @return
+     */
+    private static int boardCategory(int c, int d, int h, int s) {
+        int twoOrMore = (c & d) | (c & h) | (c & s) | (d & h) | (d & s) | (h & s);
+        int threeOrMore = (c & d & h) | (c & d & s) | (c & h & s) | (d & h & s);
+        if ((c & d & h & s) != 0) {
+            return FOUR_OF_A_KIND;
+        } else if (threeOrMore != 0) {
+            return (twoOrMore & ~threeOrMore) != 0 ? FULL_HOUSE : THREE_OF_A_KIND;
+        } else if (twoOrMore != 0) {
+            return Integer.bitCount(twoOrMore) > 1 ? TWO_PAIR : ONE_PAIR;
+        }
+        return HIGH_CARD;
+    }
+
+    /**
+     * Returns 1 if a rank mask holds five ranks in a row, counting the ace as low in the
+     * given wheel (WHEEL or SHORT_DECK_WHEEL), 0 otherwise
+     *
+     * @param ranks
+     * @param wheel
+     * @return
+     */
+    private static int straight(int ranks, int wheel) {
+        return nonZero(ranks & ranks << 1 & ranks << 2 & ranks << 3 & ranks << 4) | nonZero(~ranks & wheel) ^ 1;
+    }
+
+    /**
+     * Returns 1 if a value has any bit set, 0 otherwise
+     *
+     * @param bits
+     * @return
+     */
+    private static int nonZero(int bits) {
+        return (bits | -bits) >>> 31;
+    }
+}
@@ -0,0 +1,169 @@
+/**************************** STARTING HANDS ***************************
+ * The 169 classes of starting hands, which are the two hole cards up to
+ * their suits: the 13 pairs ("QQ"), 78 suited hands ("AKs") and 78
+ * offsuit hands ("AKo").
+ *
+ * Classes are numbered like the cells of the usual 13 x 13 chart: with
+ * rank indexes high >= low (2:0, ..., A:12), a pair is high * 13 + high,
+ * a suited hand high * 13 + low and an offsuit hand low * 13 + high.
+ *
+ ***********************************************************************
+ */
+public class StartingHands {
+
+
+    /********************************************************
+     ************** PUBLIC CLASS VARIABLES ******************
+     ********************************************************/
+    public static final int NUM_CLASSES = Card.NUM_RANKS * Card.NUM_RANKS;
+    public static final int NUM_COMBOS = Card.NUM_CARDS * (Card.NUM_CARDS - 1) / 2;
+
+
+    /********************************************************
+     ************** PRIVATE CLASS VARIABLES *****************
+     ********************************************************/
+    // the two card ids of each combination, indexed by comboIndex()
+    private static final byte[] HIGH_CARD = new byte[NUM_COMBOS];
+    private static final byte[] LOW_CARD = new byte[NUM_COMBOS];
+
+    static {
+        for (int high = 1; high < Card.NUM_CARDS; high++) {
+            for (int low = 0; low < high; low++) {
+                HIGH_CARD[comboIndex(high, low)] = (byte) high;
+                LOW_CARD[comboIndex(high, low)] = (byte) low;
+            }
+        }
+    }
+
+
+    /*********************************************************
+     ****************** PUBLIC CLASS METHODS *****************
+     *********************************************************/
+
+    /**
+     * Returns the class of the starting hand made of the two given card ids
+     *
+     * @param card1
+     * @param card2
+     * @return int
+     */
+    public static int classOf(int card1, int card2) {
+        int rank1 = card1 % Card.NUM_RANKS;
+        int rank2 = card2 % Card.NUM_RANKS;
+        int high = Math.max(rank1, rank2);
+        int low = Math.min(rank1, rank2);
+        boolean suited = card1 / Card.NUM_RANKS == card2 / Card.NUM_RANKS;
+        return suited || high == low ? high * Card.NUM_RANKS + low : low * Card.NUM_RANKS + high;
+    }
+
+    /**
+     * Returns the name of a class, such as "QQ", "AKs" or "AKo"
+     *
+     * @param handClass
+     * @return String
+     */
+    public static String name(int handClass) {
+        int row = handClass / Card.NUM_RANKS;
+        int column = handClass % Card.NUM_RANKS;
+        if (row == column) {
+            return "" + Card.valueChar(row) + Card.valueChar(row);
+        } else if (row > column) {
+            return "" + Card.valueChar(row) + Card.valueChar(column) + 's';
+        } else {
+            return "" + Card.valueChar(column) + Card.valueChar(row) + 'o';
+        }
+    }
+
+    /**
+     * Returns the class with the given name, such as "QQ", "AKs" or "KAo", or -1 if it isn't
+     * one
+     *
+     * @param name
+     * @return int
+     */
+    public static int parse(String name) {
+        if (name.length() < 2 || name.length() > 3) {
+            return -1;
+        }
+        int rank1 = Card.rankIndex(name.charAt(0));
+        int rank2 = Card.rankIndex(name.charAt(1));
+        if (rank1 < 0 || rank2 < 0) {
+            return -1;
+        }
+        int high = Math.max(rank1, rank2);
+        int low = Math.min(rank1, rank2);
+        if (high == low) {
+            return name.length() == 2 ? high * Card.NUM_RANKS + low : -1;
+        } else if (name.length() == 3 && name.charAt(2) == 's') {
+            return high * Card.NUM_RANKS + low;
+        } else if (name.length() == 3 && name.charAt(2) == 'o') {
+            return low * Card.NUM_RANKS + high;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns every combination of two cards in a class, as an array of card id pairs
+     *
+     * @param handClass
+     * @return int[][]
+     */
+    public static int[][] combos(int handClass) {
+        int row = handClass / Card.NUM_RANKS;
+        int column = handClass % Card.NUM_RANKS;
+        int high = Math.max(row, column);
+        int low = Math.min(row, column);
+        int[][] combos = new int[row == column ? 6 : row > column ? 4 : 12][];
+        int n = 0;
+        for (int suit1 = 0; suit1 < Card.NUM_SUITS; suit1++) {
+            for (int suit2 = 0; suit2 < Card.NUM_SUITS; suit2++) {
+                boolean take;
+                if (row == column) {
+                    take = suit1 < suit2;
+                } else if (row > column) {
+                    take = suit1 == suit2;
+                } else {
+                    take = suit1 != suit2;
+                }
+                if (take) {
+                    combos[n++] = new int[] {Card.id(high, suit1), Card.id(low, suit2)};
+                }
+            }
+        }
+        return combos;
+    }
+
+    /**
+     * Returns the index (0 - 1325) of the combination of two distinct card ids, the same for
+     * either order of the cards
+     *
+     * @param card1
+     * @param card2
+     * @return int
+     */
+    public static int comboIndex(int card1, int card2) {
+        int high = Math.max(card1, card2);
+        int low = Math.min(card1, card2);
+        return high * (high - 1) / 2 + low;
+    }
+
+    /**
+     * Returns the larger of the two card ids of a combination, see comboIndex()
+     *
+     * @param comboIndex
+     * @return int
+     */
+    public static int highCard(int comboIndex) {
+        return HIGH_CARD[comboIndex];
+    }
+
+    /**
+     * Returns the smaller of the two card ids of a combination, see comboIndex()
+     *
+     * @param comboIndex
+     * @return int
+     */
+    public static int lowCard(int comboIndex) {
+        return LOW_CARD[comboIndex];
+    }
+}
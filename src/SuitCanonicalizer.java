@@ -0,0 +1,60 @@
+/************************** SUIT CANONICALIZER *************************
+ * Maps sets of cards to a canonical representative of all the sets that
+ * are the same up to relabeling the suits. For example Ah Kh 2c and
+ * As Ks 2d have the same canonical form. Such sets make hands of the
+ * same strength, so the canonical form can stand in for any of them.
+ *
+ * A hand plus a board is canonicalized as the set of all its cards: the
+ * strength of the hand doesn't depend on which cards are on the board.
+ * The canonical form puts the suit with the highest 13 rank bits first
+ * (as clubs), the next highest second, and so on.
+ *
+ ***********************************************************************
+ */
+public class SuitCanonicalizer {
+
+
+    /********************************************************
+     ************** PRIVATE CLASS VARIABLES *****************
+     ********************************************************/
+    private static final int RANK_BITS = (1 << Card.NUM_RANKS) - 1;
+
+
+    /*********************************************************
+     ****************** PUBLIC CLASS METHODS *****************
+     *********************************************************/
+
+    /**
+     * Returns the canonical form of a card mask (see Card.mask())
+     *
+     * @param cardMask
+     * @return long
+     */
+    public static long canonicalize(long cardMask) {
+        long a = cardMask & RANK_BITS;
+        long b = (cardMask >>> Card.NUM_RANKS) & RANK_BITS;
+        long c = (cardMask >>> (2 * Card.NUM_RANKS)) & RANK_BITS;
+        long d = (cardMask >>> (3 * Card.NUM_RANKS)) & RANK_BITS;
+
+        // sorting network for four values, largest first
+        long t;
+        if (a < b) { t = a; a = b; b = t; }
+        if (c < d) { t = c; c = d; d = t; }
+        if (a < c) { t = a; a = c; c = t; }
+        if (b < d) { t = b; b = d; d = t; }
+        if (b < c) { t = b; b = c; c = t; }
+
+        return a | b << Card.NUM_RANKS | c << (2 * Card.NUM_RANKS) | d << (3 * Card.NUM_RANKS);
+    }
+
+    /**
+     * Returns the canonical form of a player's hole cards together with the board
+     *
+     * @param holeMask
+     * @param boardMask
+     * @return long
+     */
+    public static long canonicalize(long holeMask, long boardMask) {
+        return canonicalize(holeMask | boardMask);
+    }
+}
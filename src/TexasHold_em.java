@@ -1,6 +1,7 @@
-import com.sun.deploy.util.StringUtils;
-
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.function.Supplier;
 
 /************************** TEXAS HOLD'EM *********************************************
  * Created by Elizabeth Hau on 3/7/16.
@@ -12,7 +13,9 @@ import java.util.*;
  * This program accepts as its input a collection of hands of cards,
  * and selects the winner from among those hands.
  *
- * This program assumes that the input format and strings are correct.
+ * Every deal is checked before it is judged (see DealValidator): a malformed
+ * line, a player count out of range or a card dealt twice is reported as an
+ * error instead of producing wrong winners.
  ***************************************************************************************
  */
 public class TexasHold_em {
@@ -25,6 +28,45 @@ public class TexasHold_em {
     private static final int THREE = 3;
     private static final int FOUR = 4;
 
+    // A hand strength, as returned by the primitive evaluateHand() overloads, packs the kind
+    // of hand into bits 20 - 23 and up to five card ranks (2 - 14, ace high) into the lower
+    // 4-bit groups, most significant first, so a larger strength always beats a smaller one.
+    // The kind is 11 minus the rank of the hand returned by evaluateHand(ArrayList), i.e.
+    // 10 for a royal flush down to 1 for a high card.
+    // Short-deck strengths (see evaluateShortDeckHand()) also set bit 24 for the kinds that
+    // beat a full house there, so that a flush beats a full house.
+    private static final int CATEGORY_SHIFT = 20;
+    private static final int CATEGORY_BITS = 0xF;
+    private static final int SHORT_DECK_ORDER = 1 << 24;
+    private static final int RANK_BITS = 0x1FFF; // one bit per rank index within a suit
+    private static final int WHEEL = 0x100F; // A, 2, 3, 4, 5
+    private static final int SHORT_DECK_WHEEL = 0x10F0; // A, 6, 7, 8, 9
+    private static final int ROYAL = 0x1F00; // T, J, Q, K, A
+    // indexes of rankCounter in evaluateHand(ArrayList) from the highest rank to the lowest
+    private static final int[] HIGH_TO_LOW = {0, 12, 11, 10, 9, 8, 7, 6, 5, 4, 3, 2, 1};
+    // for each rank of hand (1 - 10), how many cards of each rank packed in its strength it is
+    // made of, e.g. 3 of the first rank and 2 of the second for a full house
+    private static final int[][] CARDS_PER_RANK = {null,
+            {1, 1, 1, 1, 1}, {1, 1, 1, 1, 1}, {4, 1}, {3, 2}, {1, 1, 1, 1, 1},
+            {1, 1, 1, 1, 1}, {3, 1, 1}, {2, 2, 1}, {2, 1, 1, 1}, {1, 1, 1, 1, 1}};
+    private static final String[] CATEGORY_NAMES = {"royal_flush", "straight_flush", "four_of_a_kind",
+            "full_house", "flush", "straight", "three_of_a_kind", "two_pair", "one_pair", "high_card"};
+
+    // the rank (2 - 14) of the highest card of the highest straight in each 13-bit rank mask,
+    // 5 for the wheel, or 0 if the mask holds no straight
+    private static final byte[] STRAIGHT_HIGH = new byte[RANK_BITS + 1];
+
+    static {
+        for (int rankMask = 0; rankMask <= RANK_BITS; rankMask++) {
+            int runs = rankMask & (rankMask << 1) & (rankMask << 2) & (rankMask << 3) & (rankMask << 4);
+            if (runs != 0) {
+                STRAIGHT_HIGH[rankMask] = (byte) rankOfBit(highestBit(runs));
+            } else if ((rankMask & WHEEL) == WHEEL) {
+                STRAIGHT_HIGH[rankMask] = 5;
+            }
+        }
+    }
+
     /*********************************************************
      ****************** PUBLIC CLASS METHODS *****************
      *********************************************************/
@@ -42,41 +84,35 @@ public class TexasHold_em {
         String hand;
         String[] result = new String[2]; // to return
 
-        // counters for ranks and suits such that each index corresponds to a rank and the value
-        // is the number of cards with the rank. e.g. rankCounter[0] = # of Aces in availCards
-        // and suitCounter[0] = # of spades in availCards
+        // counter for ranks such that each index corresponds to a rank and the value is the
+        // number of cards with the rank. e.g. rankCounter[0] = # of Aces in availCards
         int[] rankCounter = new int[13]; // A, 2, 3, 4, 5, ..., J, Q, K
-        int[] suitCounter = new int[4]; // c, d, h, s
 
-        // initialize the counters
+        // initialize the counter
         for(int i = 0; i < rankCounter.length; i++) {
             rankCounter[i] = 0;
         }
 
-        for (int j = 0; j < suitCounter.length; j++) {
-            suitCounter[j] = 0;
-        }
+        // one 13-bit mask per suit with a bit set for each rank index held in that suit
+        // (2 is bit 0, ace is bit 12), so flushes and straights are found with bit operations
+        int[] suitRanks = new int[4]; // c, d, h, s
 
         // populate the counters
         for(Card c : availCards) {
             rankCounter[c.getRank()-1]++;
-            suitCounter[c.getSuitRank()-1]++;
+            suitRanks[c.getSuitRank()-1] |= 1 << (c.getRank() == 1 ? 12 : c.getRank() - 2);
         }
 
-        Card[] cards = availCards.toArray(new Card[availCards.size()]);
-        sortbyRank(cards);
-        sortBySuit(cards);
-
 
         // check each type of possible hand, in their ranks from best to least
-        hand = checkRoyalFlush(rankCounter, suitCounter, cards);
+        hand = checkRoyalFlush(suitRanks);
         if (hand != null && hand != "") {
             result[0] = "1"; // best possible play
             result[1] = hand;
         }
 
         if (hand == null || hand == "") {
-            hand = checkStraightFlush(suitCounter, cards);
+            hand = checkStraightFlush(suitRanks);
             if (hand != null && hand != "") {
                 result[0] = "2"; // second best possible play
                 result[1] = hand;
@@ -100,7 +136,7 @@ public class TexasHold_em {
         }
 
         if (hand == null || hand == "") {
-            hand = checkFlush(suitCounter, cards);
+            hand = checkFlush(suitRanks);
             if (hand != null && hand != "") {
                 result[0] = "5"; // fifth best possible play
                 result[1] = hand;
@@ -108,7 +144,7 @@ public class TexasHold_em {
         }
 
         if (hand == null || hand == "") {
-            hand = checkStraight(rankCounter);
+            hand = checkStraight(suitRanks[0] | suitRanks[1] | suitRanks[2] | suitRanks[3]);
             if (hand != null && hand != "") {
                 result[0] = "6"; // sixth best possible play
                 result[1] = hand;
@@ -152,80 +188,264 @@ public class TexasHold_em {
 
 
     /**
-     * Given a hashmap containing information about each player and their best hand, return the winner(s)
-     * as a list (in case there is a tie)
-     * TODO: fix it so that it allows more than two players to tie...
-     * @param bestPlaysForAllPlayer
+     * Given the ids of the available cards (see Card.getId()), returns the strength of the best
+     * hand that can be made from them. The strength is a single integer such that a larger
+     * strength always beats a smaller one and equal strengths tie, and handCategory() recovers
+     * the rank of the hand used by evaluateHand(ArrayList). No objects are created.
+     *
+     * @param cards
      * @return
      */
-    public static ArrayList<String> chooseWinner (HashMap<Integer, String[]> bestPlaysForAllPlayer) {
+    public static int evaluateHand(int[] cards) {
+        long cardMask = 0L;
+        for (int i = 0; i < cards.length; i++) {
+            cardMask |= 1L << cards[i];
+        }
+        return evaluateHand(cardMask);
+    }
+
+    /**
+     * Same as evaluateHand(int[]), but with the available cards given as a bit mask with one bit
+     * per card id (see Card.mask())
+     *
+     * @param cardMask
+     * @return
+     */
+    public static int evaluateHand(long cardMask) {
+        return evaluateHand(cardMask, false);
+    }
 
-        // keeps track of potential winners at all times
-        Queue<String> potential_winners = new PriorityQueue<>();
+    /**
+     * Same as evaluateHand(long) for short-deck Hold'em, dealt from the 36 cards from the six
+     * up: an ace also makes the straight A, 6, 7, 8, 9 (the ace counting as a five), and a
+     * flush beats a full house. The strength is only comparable with other short-deck
+     * strengths; handCategory() works on it as usual.
+     *
+     * @param cardMask
+     * @return
+     */
+    public static int evaluateShortDeckHand(long cardMask) {
+        int strength = evaluateHand(cardMask, true);
+        return beatsFullHouseInShortDeck(handCategory(strength)) ? strength | SHORT_DECK_ORDER : strength;
+    }
 
-        // information about the best player so far used to compare across players
-        String bestPlayerSoFar = null;
-        int rankOfBestHandSoFar = Integer.MAX_VALUE; // the lower the better
-        String bestHandSoFar = "";
+    /**
+     * Given a strength returned by evaluateHand(int[]), evaluateHand(long) or
+     * evaluateShortDeckHand(), returns the rank of the hand as in evaluateHand(ArrayList), with
+     * a royal flush having a rank of 1 and a high card a rank of 10
+     *
+     * @param strength
+     * @return
+     */
+    public static int handCategory(int strength) {
+        return 11 - (strength >>> CATEGORY_SHIFT & CATEGORY_BITS);
+    }
 
-        // compare each player to the best so far
-        for (Map.Entry<Integer, String[]> entry : bestPlaysForAllPlayer.entrySet()) {
-            int pid = entry.getKey();
-            String[] hand = entry.getValue();
-            int rankOfBest = Integer.parseInt(hand[0]);
-
-            // if the current player's rank is better, update best so far
-            if (rankOfBest < rankOfBestHandSoFar) {
-                rankOfBestHandSoFar = rankOfBest;
-                bestPlayerSoFar = String.valueOf(pid);
-                bestHandSoFar = hand[1];
-                while (!potential_winners.isEmpty()) {
-                    potential_winners.remove();
-                }
-                potential_winners.add(String.valueOf(pid));
+    /**
+     * Given the rank of a hand (1 for a royal flush to 10 for a high card), returns the
+     * greatest strength evaluateHand(long) can return for a hand of that rank, or
+     * evaluateShortDeckHand() if shortDeck is set, so that any hand of that rank or a worse
+     * one is at most this strong
+     *
+     * @param category
+     * @param shortDeck
+     * @return
+     */
+    public static int maxStrength(int category, boolean shortDeck) {
+        int strength = (11 - category) << CATEGORY_SHIFT | ((1 << CATEGORY_SHIFT) - 1);
+        return shortDeck && beatsFullHouseInShortDeck(category) ? strength | SHORT_DECK_ORDER : strength;
+    }
 
-            } else if (rankOfBest == rankOfBestHandSoFar) { // if the ranks of their hands are the same, compare the ranks of the cards
+    /**
+     * Given the rank of a hand (1 for a royal flush to 10 for a high card), returns its name,
+     * such as "full_house"
+     *
+     * @param category
+     * @return
+     */
+    public static String categoryName(int category) {
+        return CATEGORY_NAMES[category - 1];
+    }
 
-                // parse ranks of best so far
-                String[] bestSoFar = bestHandSoFar.split(" ");
-                int[] ranksOfBestSoFar = new int[bestSoFar.length-1];
-                for (int i = 1; i < bestSoFar.length; i++) {
-                    ranksOfBestSoFar[i-1] = Integer.parseInt(bestSoFar[i]);
-                }
+    /**
+     * Given a card mask of at least five cards, stores the ids of the five cards that make the
+     * best hand in out and returns the strength of the hand, as evaluateHand(long) does. The
+     * cards are stored most significant first: e.g. the three of a kind of a full house, then
+     * its pair, or a pair, then its kickers from the highest down. No objects are created, so
+     * this can be called for every seat with the same buffer.
+     *
+     * @param cardMask
+     * @param out must have room for five cards
+     * @return
+     */
+    public static int bestFiveCards(long cardMask, int[] out) {
+        int strength = evaluateHand(cardMask);
+        long cards = bestFive(cardMask, strength);
+        for (int i = 0; i < 5; i++) {
+            out[i] = (int) (cards >>> (8 * i)) & 0xFF;
+        }
+        return strength;
+    }
 
-                // parse current hand
-                String[] curr_hand = hand[1].split(" ");
-                int[] rankOfCurrHand = new int[curr_hand.length-1];
-                for (int i = 1; i < rankOfCurrHand.length; i++) {
-                    rankOfCurrHand[i-1] = Integer.parseInt(curr_hand[i]);
-                }
+    /**
+     * Same as bestFiveCards(long, int[]), storing the card ids as bytes
+     *
+     * @param cardMask
+     * @param out must have room for five cards
+     * @return
+     */
+    public static int bestFiveCards(long cardMask, byte[] out) {
+        int strength = evaluateHand(cardMask);
+        long cards = bestFive(cardMask, strength);
+        for (int i = 0; i < 5; i++) {
+            out[i] = (byte) (cards >>> (8 * i));
+        }
+        return strength;
+    }
 
-                boolean allSameRank = true;
+    /**
+     * Given a hashmap containing information about each player and their best hand (as returned
+     * by evaluateHand(ArrayList)), return the winner(s) as a list of player ids in ascending order
+     * (more than one in case of a tie). Every hand is turned into its strength, see handStrength(),
+     * so hands are compared with all their kickers by one int comparison.
+     *
+     * @param bestPlaysForAllPlayer
+     * @return
+     */
+    public static ArrayList<String> chooseWinner (HashMap<Integer, String[]> bestPlaysForAllPlayer) {
+        ArrayList<Integer> winners = new ArrayList<>();
+        int best = Integer.MIN_VALUE;
 
-                // compare the ranks of the cards of the two hands
-                for (int i = 0; i < ranksOfBestSoFar.length ; i++) {
-                    if (rankOfCurrHand[i] > ranksOfBestSoFar[i]) {
-                        bestPlayerSoFar = String.valueOf(pid);
-                        bestHandSoFar = hand[1];
+        // compare each player to the best so far
+        for (Map.Entry<Integer, String[]> entry : bestPlaysForAllPlayer.entrySet()) {
+            int strength = handStrength(entry.getValue());
+            if (strength > best) {
+                best = strength;
+                winners.clear();
+                winners.add(entry.getKey());
+            } else if (strength == best) {
+                winners.add(entry.getKey());
+            }
+        }
 
-                        while (!potential_winners.isEmpty()) {
-                            potential_winners.remove();
-                        }
-                        potential_winners.add(String.valueOf(pid));
-                        break;
-                    }
+        Collections.sort(winners);
+        ArrayList<String> result = new ArrayList<>();
+        for (int id : winners) {
+            result.add(String.valueOf(id));
+        }
+        return result;
+    }
 
-                    // if the last cards are the same and all cards have been the same so far, we have a tie!
-                    if (i == ranksOfBestSoFar.length-1 && allSameRank) {
-                        if (!potential_winners.contains(bestPlayerSoFar))
-                            potential_winners.add(bestPlayerSoFar);
-                        potential_winners.add(String.valueOf(pid));
+    /**
+     * Given a hand as returned by evaluateHand(ArrayList), returns its strength: the same int
+     * as evaluateHand(long) returns for the same cards, packing the rank of the hand and the
+     * ranks of the cards in its detail string so that a larger strength always wins
+     *
+     * @param play
+     * @return
+     */
+    public static int handStrength(String[] play) {
+        int category = Integer.parseInt(play[0]);
+        if (category == 1) {
+            return strength(1, straightRanks(14, false), 5); // "royal flush" has no ranks
+        }
+        String[] details = play[1].split(" ");
+        int ranks = 0;
+        for (int i = 1; i < details.length; i++) {
+            ranks = ranks << 4 | Integer.parseInt(details[i]);
+        }
+        return strength(category, ranks, details.length - 1);
+    }
 
-                    }
-                }
+
+    /**
+     * Given the hand strengths of the players indexed by seat (see evaluateHand(long)), returns
+     * the winning seats as a bit mask, with bit i set if seat i has the best hand. More than
+     * one bit is set in case of a tie. Takes one pass over the strengths and creates no objects.
+     * Supports up to 64 seats.
+     *
+     * @param strengths
+     * @return
+     */
+    public static long chooseWinner(int[] strengths) {
+        return chooseWinner(strengths, strengths.length);
+    }
+
+    /**
+     * Same as chooseWinner(int[]), but only looks at the first numSeats strengths, so the same
+     * array can be reused for tables of different sizes
+     *
+     * @param strengths
+     * @param numSeats
+     * @return
+     */
+    public static long chooseWinner(int[] strengths, int numSeats) {
+        int best = Integer.MIN_VALUE;
+        long winners = 0L;
+        for (int seat = 0; seat < numSeats; seat++) {
+            int strength = strengths[seat];
+            if (strength > best) {
+                best = strength;
+                winners = 1L << seat;
+            } else if (strength == best) {
+                winners |= 1L << seat;
             }
         }
-        return new ArrayList<String>(potential_winners);
+        return winners;
+    }
+
+    /**
+     * Same as chooseWinner(int[]), but only looks at the seats whose bits are set in a mask,
+     * e.g. the players still in a hand or those eligible for a side pot. Returns 0 if the mask
+     * is empty.
+     *
+     * @param strengths
+     * @param seats
+     * @return
+     */
+    public static long chooseWinnerAmong(int[] strengths, long seats) {
+        int best = Integer.MIN_VALUE;
+        long winners = 0L;
+        for (long rest = seats; rest != 0; rest &= rest - 1) {
+            int seat = Long.numberOfTrailingZeros(rest);
+            int strength = strengths[seat];
+            if (strength > best) {
+                best = strength;
+                winners = 1L << seat;
+            } else if (strength == best) {
+                winners |= 1L << seat;
+            }
+        }
+        return winners;
+    }
+
+    /**
+     * Judges a deal: fills in the strength of each seat's best hand and returns the winning
+     * seats as a bit mask, see chooseWinner(int[]). Seats that folded can't win. The hands are
+     * evaluated by the given engine, e.g. a BoardState, which preprocesses the community cards
+     * once, and strengths must have room for every seat; both are overwritten and can be
+     * reused from deal to deal. The deal is recorded in JudgeMetrics if they are enabled.
+     *
+     * @param deal
+     * @param evaluator
+     * @param strengths
+     * @return
+     */
+    public static long judge(Deal deal, HandEvaluator evaluator, int[] strengths) {
+        boolean timed = JudgeMetrics.isEnabled();
+        long start = timed ? System.nanoTime() : 0L;
+
+        evaluator.evaluate(deal, strengths);
+        int numPlayers = deal.getNumPlayers();
+
+        long evaluated = timed ? System.nanoTime() : 0L;
+        long folded = deal.getFolded();
+        long winners = folded == 0 ? chooseWinner(strengths, numPlayers)
+                : chooseWinnerAmong(strengths, ((1L << numPlayers) - 1) & ~folded);
+        if (timed) {
+            JudgeMetrics.recordDeal(strengths, numPlayers, winners, start, evaluated, System.nanoTime());
+        }
+        return winners;
     }
 
 
@@ -237,51 +457,17 @@ public class TexasHold_em {
      * This private helper method checks whether a given set of cards contain a royal flush,
      * i.e. Ace, K, Q, J, 10 all in the same suit
      *
-     * @param rankCounter
-     * @param suitCounter
-     * @param cards
+     * @param suitRanks
      * @return
      */
-    private static String checkRoyalFlush(int[] rankCounter, int[] suitCounter, Card[] cards) {
+    private static String checkRoyalFlush(int[] suitRanks) {
         String result = "";
-        // Check for Royal Flush (10 - Ace of the same suit).
-        // check if there are 5 of one suit, if not royal is impossible
-        if ((rankCounter[9] >= 1 &&       /* 10 */
-                rankCounter[10] >= 1 &&   /* Jack */
-                rankCounter[11] >= 1 &&  /* Queen */
-                rankCounter[12] >= 1 &&  /* King */
-                rankCounter[0] >= 1)    /* Ace */
-                && (suitCounter[0] > 4 || suitCounter[1] > 4 ||
-                suitCounter[2] > 4 || suitCounter[3] > 4)){
-
-            // now loop through the rankCounter for an ace and check subsequent cards.
-            // Loop through the aces first since they are the first card to
-            // appear in the sorted array of 7 cards.
-                royalSearch:
-                    for (int i=0;i<3;i++){
-                        // Check if first card is the ace.
-                        // Ace must be in position 0, 1 or 2
-                        if (cards[i].getRank() == 1){
-                            // because the ace could be the first card in the array
-                            // but the remaining 4 cards could start at position 1,
-                            // 2 or 3 loop through checking each possibility.
-                            for (int j=1;j<4-i;j++){
-                                if ((cards[i+j].getRank() == 10 &&
-                                        cards[i+j+1].getRank() == 11 &&
-                                        cards[i+j+2].getRank() == 12 &&
-                                        cards[i+j+3].getRank() == 13)
-                                        &&
-                                        (cards[i].getSuitRank() == cards[i+j].getSuitRank() &&
-                                                cards[i].getSuitRank() == cards[i+j+1].getSuitRank() &&
-                                                cards[i].getSuitRank() == cards[i+j+2].getSuitRank() &&
-                                                cards[i].getSuitRank() == cards[i+j+3].getSuitRank())){
-                                    // Found royal flush, break and return.
-                                        result = "royal flush";
-                                        break royalSearch;
-                                    }
-                                }
-                            }
-                    }
+        // Check for Royal Flush (10 - Ace of the same suit): all five rank bits in one suit
+        for (int suit = 0; suit < suitRanks.length; suit++) {
+            if ((suitRanks[suit] & ROYAL) == ROYAL) {
+                result = "royal flush";
+                break;
+            }
         }
         return result;
     }
@@ -292,35 +478,23 @@ public class TexasHold_em {
      * This private helper method checks whether the set of cards contains a straight flush,
      * but doesn't check for the royal flush. This method returns a String indicating whether
      * straight flush has been found along with the 5 cards that made the straight flush.
+     * The ace counts as 1 in a five high straight flush (5, 4, 3, 2, A).
      *
-     * @param suitCounter
-     * @param cards
+     * @param suitRanks
      * @return
      */
-    private static String checkStraightFlush(int[] suitCounter, Card[] cards){
+    private static String checkStraightFlush(int[] suitRanks){
         String result = "";
 
-        if (suitCounter[0] > 4 || suitCounter[1] > 4 ||
-                suitCounter[2] > 4 || suitCounter[3] > 4){
-
-            // minimum requirements for a straight flush have been met.
-            // Loop through available cards looking for 5 consecutive cards of the same suit,
-            // start in reverse to get the highest value straight flush
-            for (int i=cards.length-1;i>3;i--){
-                if ((cards[i].getRank()-ONE == cards[i-ONE].getRank() &&
-                        cards[i].getRank()-TWO == cards[i-TWO].getRank() &&
-                        cards[i].getRank()-THREE == cards[i-THREE].getRank() &&
-                        cards[i].getRank()-FOUR == cards[i-FOUR].getRank())
-                        &&
-                        (cards[i].getSuit().equals(cards[i-ONE].getSuit())  &&
-                                cards[i].getSuit().equals(cards[i-TWO].getSuit()) &&
-                                cards[i].getSuit().equals(cards[i-THREE].getSuit()) &&
-                                cards[i].getSuit().equals(cards[i-FOUR].getSuit()))){
-                    // Found straight flush, break and return.
-                    result = "straight_flush " + cards[i].getRank() + " " + cards[i-ONE].getRank() +
-                            " " + cards[i-TWO].getRank() + " " + cards[i-THREE].getRank() + " " + cards[i-FOUR].getRank();
-                    break;
+        // only a suit with at least five cards can hold a straight flush
+        for (int suit = 0; suit < suitRanks.length; suit++) {
+            if (Integer.bitCount(suitRanks[suit]) > 4) {
+                int high = straightHigh(suitRanks[suit]);
+                if (high != 0) {
+                    result = "straight_flush " + high + " " + (high-ONE) + " " + (high-TWO) +
+                            " " + (high-THREE) + " " + (high-FOUR);
                 }
+                break; // seven cards can't make flushes in two suits
             }
         }
         return result;
@@ -330,9 +504,8 @@ public class TexasHold_em {
      * Four of a Kind: four cards of the same rank
      *
      * This method returns a String indicating a four of a kind is found (if found)
-     * along with the rank of the four cards. Since I am evaluating all 7 cards at
-     * at the same time, there is no way to keep track of which two cards were originally
-     * in the player's hands, so can't determine which card is the kicker.
+     * along with the rank of the four cards and the rank of the highest other card,
+     * the kicker.
      *
      * @param rankCounter
      * @return
@@ -343,9 +516,9 @@ public class TexasHold_em {
         // loop through the rank counters and if any rank has exactly four cards
         // return a string indicating four of a kind has been found along with the rank
         // of the cards
-        for (int i = 0; i < rankCounter.length; i++) {
+        for (int i : HIGH_TO_LOW) {
             if(rankCounter[i] == FOUR) {
-                result = "four_of_a_kind " + (i+1);
+                result = "four_of_a_kind " + highRank(i) + kickers(rankCounter, 1, i, i);
                 break;
             }
         }
@@ -358,33 +531,28 @@ public class TexasHold_em {
      *
      * This method returns a String indicating whether the cards could make a full house.
      * If it can, it also returns the ranks of the three of a kind and the pair for further
-     * comparison in case of a tie
+     * comparison in case of a tie. With two three of a kinds, the lower one makes the pair.
      *
      * @param rankCounter
      * @return
      */
     private static String checkFullHouse(int[] rankCounter) {
         String result = "";
-        boolean hasThree = false; // keeps track of whether we've found a three of a kind
-        boolean hasPair = false; // keeps track of whether found a pair
-        int threeRank= -1; // the rank of the three of the kind (if found)
-        int pairRank = -1; // the rank of the pair (if found)
-
-        // loop through the rank counters and try to find ranks that have a count of two or three
-        for (int i = rankCounter.length-1; i > 0; i--) {
-            if (!hasThree || !hasPair) {
-                if (rankCounter[i] == THREE) {
-                    hasThree = true;
-                    threeRank = i+1;
-                } else if (rankCounter[i] == TWO) {
-                    hasPair = true;
-                    pairRank = i+1;
-                }
-            } else {
-                result = "full_house " + threeRank + " " + pairRank;
-                break;
+        int threeIndex = -1; // the rank index of the highest three of a kind (if found)
+        int pairIndex = -1; // the rank index of the highest other pair (if found)
+
+        // loop through the rank counters from the ace down, the first rank with three cards
+        // makes the three of a kind and the next rank with at least two the pair
+        for (int i : HIGH_TO_LOW) {
+            if (threeIndex < 0 && rankCounter[i] >= THREE) {
+                threeIndex = i;
+            } else if (pairIndex < 0 && rankCounter[i] >= TWO) {
+                pairIndex = i;
             }
         }
+        if (threeIndex >= 0 && pairIndex >= 0) {
+            result = "full_house " + highRank(threeIndex) + " " + highRank(pairIndex);
+        }
         return result;
     }
 
@@ -397,48 +565,27 @@ public class TexasHold_em {
      * can be used to break the tie. If all five cards are the same ranks, the pot is split.
      * The suit itself is never used to break a tie in poker.
      *
-     * @param suitCounter
-     * @param cards
+     * @param suitRanks
      * @return
      */
-    private static String checkFlush(int[] suitCounter, Card[] cards) {
-        ArrayList<Integer> rank_list = new ArrayList<>(); // list of the ranks of the cards
-
+    private static String checkFlush(int[] suitRanks) {
         String result = "";
-        String suit = "";
 
         // if any of the suits have more than 4 cards (>= 5 cards), we have a Flush!
-        if (suitCounter[0] > 4 || suitCounter[1] > 4 || suitCounter[2] > 4 ||
-                suitCounter[3] > 4) {
-            result = "flush";
-
-            if (suitCounter[0] > 4) {
-                suit = "c";
-            }
-
-            if (suitCounter[1] > 4) {
-                suit = "d";
-            }
-
-            if (suitCounter[2] > 4) {
-                suit = "h";
-            }
-
-            if (suitCounter[3] > 4) {
-                suit = "s";
-            }
-
-            // get the ranks of the cards
-            for (int i = cards.length-1; i >= 0; i--) {
-                if(cards[i].getSuit().equals(suit)) {
-                    rank_list.add(cards[i].getRank());
+        for (int suit = 0; suit < suitRanks.length; suit++) {
+            int ranks = suitRanks[suit];
+            if (Integer.bitCount(ranks) > 4) {
+                result = "flush";
+
+                // get the ranks of the five highest cards of the suit, from the ace down
+                int count = 0;
+                for (int bit = 12; bit >= 0 && count < 5; bit--) {
+                    if ((ranks & (1 << bit)) != 0) {
+                        result += " " + (bit + 2);
+                        count++;
+                    }
                 }
-            }
-
-            assert(rank_list.size() == 5); // make sure the rank list contains 5 cards
-
-            for (int rank : rank_list) {
-                result += " " + rank;
+                break;
             }
         }
         return result;
@@ -453,22 +600,16 @@ public class TexasHold_em {
      * which can act in this manner. A,K,Q,J,T is the highest (Ace high) straight;
      * 5,4,3,2,A is the lowest (Five high) straight.
      *
-     * @param rankCounter
+     * @param rankMask
      * @return
      */
-    private static String checkStraight (int[] rankCounter) {
+    private static String checkStraight (int rankMask) {
         String result = "";
 
-        // check for Ace high. Let the high ace be represented by the number 14
-        if (rankCounter[0] > 0 && rankCounter[9] > 0 && rankCounter[10] > 0 && rankCounter[11] > 0 && rankCounter[12] > 0) {
-            result = "straight 14 13 12 11 10";
-        } else {
-            for (int i = rankCounter.length-1; i > 3; i--) {
-                if (rankCounter[i] > 0 && rankCounter[i-1] > 0 && rankCounter[i-2] > 0 && rankCounter[i-3] > 0 && rankCounter[i-4] > 0) {
-                    result = "straight " + (i+1) + " " + i + " " + (i-1) + " " + (i-2) + " " + (i-3);
-                    break;
-                }
-            }
+        // the high ace is represented by the number 14, the low ace of a wheel by 1
+        int high = straightHigh(rankMask);
+        if (high != 0) {
+            result = "straight " + high + " " + (high-ONE) + " " + (high-TWO) + " " + (high-THREE) + " " + (high-FOUR);
         }
 
         return result;
@@ -477,20 +618,20 @@ public class TexasHold_em {
     /**
      * Three of a kind: Three cards of the same rank, and two unrelated side cards.
      *
-     * In the event of a tie: Highest ranking three of a kind wins.
+     * In the event of a tie: Highest ranking three of a kind wins, then the highest side card,
+     * then the second highest side card.
      *
-     * Since we don't know which two cards belonged to the player, can't REALLY determine
-     * the two side cards...
-     * Search from the back so that if we have two three of a kinds, choose the one with the higher rank
+     * Search from the ace down so that if we have two three of a kinds, choose the one with
+     * the higher rank
      *
      * @param rankCounter
      * @return
      */
     private static String checkThreeOfAKind(int[] rankCounter) {
         String result = "";
-        for (int i = rankCounter.length-1; i >= 0; i--) {
+        for (int i : HIGH_TO_LOW) {
             if(rankCounter[i] == THREE) {
-                result = "three_of_a_kind " + (i+1);
+                result = "three_of_a_kind " + highRank(i) + kickers(rankCounter, 2, i, i);
                 break;
             }
         }
@@ -500,27 +641,23 @@ public class TexasHold_em {
     /**
      * Two pair: Two cards of a matching rank, another two cards of a different matching rank, and one side card.
      *
-     * In the event of a tie: Highest pair wins. If players have the same highest pair, highest second pair wins.
+     * In the event of a tie: Highest pair wins. If players have the same highest pair, highest second pair wins,
+     * then the highest side card, which can come from a third pair.
      *
      * @param rankCounter
      * @return
      */
     private static String checkTwoPair(int[] rankCounter) {
         String result = "";
-        int numPairs = 0;
-        ArrayList<Integer> rank_list = new ArrayList<>();
+        int firstIndex = -1; // the rank index of the highest pair (if found)
 
-        for (int i = rankCounter.length-1; i >= 0; i--) {
+        for (int i : HIGH_TO_LOW) {
             if (rankCounter[i] == TWO) {
-                numPairs++;
-                rank_list.add(i+1);
-                if (numPairs == TWO) {
-                    result = "two_pair";
-
-                    for (int j = 0; j < 2; j++) {
-                        int rank = rank_list.get(j);
-                        result += " " + rank;
-                    }
+                if (firstIndex < 0) {
+                    firstIndex = i;
+                } else {
+                    result = "two_pair " + highRank(firstIndex) + " " + highRank(i)
+                            + kickers(rankCounter, 1, firstIndex, i);
                     break;
                 }
             }
@@ -531,16 +668,16 @@ public class TexasHold_em {
     /**
      * One pair: Two cards of a matching rank, and three unrelated side cards.
      *
-     * In the event of a tie: Highest pair wins.
+     * In the event of a tie: Highest pair wins, then the highest side cards in order.
      *
      * @param rankCounter
      * @return
      */
     private static String checkOnePair (int[] rankCounter) {
         String result = "";
-        for (int i = rankCounter.length-1; i >= 0; i--) {
+        for (int i : HIGH_TO_LOW) {
             if (rankCounter[i] == TWO) {
-                result = "one_pair " + (i+1);
+                result = "one_pair " + highRank(i) + kickers(rankCounter, 3, i, i);
                 break;
             }
         }
@@ -552,122 +689,482 @@ public class TexasHold_em {
      *
      * The High Card is the card with the highest rank.
      *
-     * This method only returns a string indicating it's a high card and the rank of the highest ranked card
+     * This method returns a string indicating it's a high card and the ranks of the five highest
+     * ranked cards, which decide a tie in that order
      *
      * @param rankCounter
      * @return
      */
     private static String getHighCard (int[] rankCounter) {
+        return "high_card" + kickers(rankCounter, 5, -1, -1);
+    }
+
+    /**
+     * Returns the ranks (2 - 14, ace high) of the given number of highest ranked cards in
+     * rankCounter, one per rank and leaving out the ranks at the two given indexes, each
+     * preceded by a space
+     *
+     * @param rankCounter
+     * @param count
+     * @param skip1
+     * @param skip2
+     * @return
+     */
+    private static String kickers(int[] rankCounter, int count, int skip1, int skip2) {
         String result = "";
-        for (int i = rankCounter.length-1; i >= 0; i--) {
-            if (rankCounter[i] == ONE) {
-                result = "high_card " + (i+1);
+        for (int i : HIGH_TO_LOW) {
+            if (count == 0) {
                 break;
             }
+            if (rankCounter[i] > 0 && i != skip1 && i != skip2) {
+                result += " " + highRank(i);
+                count--;
+            }
         }
         return result;
     }
 
     /**
-     * Given a String with spaces separating each card, return an ArrayList of cards
+     * Returns the rank (2 - 14) of the cards at an index of rankCounter, the ace counting as 14
      *
-     * @param s
+     * @param index
      * @return
      */
-    private static ArrayList<Card> listOfCards(String s) {
-        ArrayList<Card> cards = new ArrayList<>();
-        String[] allCards = s.split(" ");
+    private static int highRank(int index) {
+        return index == 0 ? 14 : index + 1;
+    }
 
-        // for each card, create a new instance of Card and add it to the list
-        for (int i = 0; i < allCards.length; i++) {
-            char[] value_suit = allCards[i].toCharArray();
-            String value = String.valueOf(value_suit[0]);
-            String suit = String.valueOf(value_suit[1]);
-            Card c = new Card(value, suit);
-            cards.add(c);
+    /**
+     * Returns whether a hand of the given rank beats a full house in short deck: a royal flush,
+     * straight flush, four of a kind or flush
+     *
+     * @param category
+     * @return
+     */
+    private static boolean beatsFullHouseInShortDeck(int category) {
+        return category <= 3 || category == 5;
+    }
+
+    /**
+     * Returns the strength of the best hand in a card mask, see evaluateHand(long), ranked as in
+     * short deck if shortDeck is set, but without the bit evaluateShortDeckHand() adds
+     *
+     * @param cardMask
+     * @param shortDeck
+     * @return
+     */
+    private static int evaluateHand(long cardMask, boolean shortDeck) {
+        // one bit per rank for each suit: c, d, h, s
+        int c = (int) cardMask & RANK_BITS;
+        int d = (int) (cardMask >>> 13) & RANK_BITS;
+        int h = (int) (cardMask >>> 26) & RANK_BITS;
+        int s = (int) (cardMask >>> 39) & RANK_BITS;
+
+        // ranks held by at least one, two, three and four cards
+        int any = c | d | h | s;
+        int twoOrMore = (c & d) | (c & h) | (c & s) | (d & h) | (d & s) | (h & s);
+        int threeOrMore = (c & d & h) | (c & d & s) | (c & h & s) | (d & h & s);
+        int four = c & d & h & s;
+
+        int flushRanks = 0;
+        if (Integer.bitCount(c) > 4) {
+            flushRanks = c;
+        } else if (Integer.bitCount(d) > 4) {
+            flushRanks = d;
+        } else if (Integer.bitCount(h) > 4) {
+            flushRanks = h;
+        } else if (Integer.bitCount(s) > 4) {
+            flushRanks = s;
         }
-        return cards;
+
+        if (flushRanks != 0) {
+            int high = shortDeck ? shortDeckStraightHigh(flushRanks) : straightHigh(flushRanks);
+            if (high == 14) {
+                return strength(1, 14 << 16 | 13 << 12 | 12 << 8 | 11 << 4 | 10, 5);
+            } else if (high != 0) {
+                return strength(2, straightRanks(high, shortDeck), 5);
+            }
+        }
+
+        if (four != 0) {
+            int quads = highestBit(four);
+            return strength(3, rankOfBit(quads) << 4 | topRanks(any & ~quads, 1), 2);
+        }
+
+        // in short deck a flush beats a full house
+        if (shortDeck && flushRanks != 0) {
+            return strength(5, topRanks(flushRanks, 5), 5);
+        }
+
+        if (threeOrMore != 0) {
+            int trips = highestBit(threeOrMore);
+            int pairs = twoOrMore & ~trips;
+            if (pairs != 0) {
+                return strength(4, rankOfBit(trips) << 4 | rankOfBit(highestBit(pairs)), 2);
+            }
+        }
+
+        if (flushRanks != 0) {
+            return strength(5, topRanks(flushRanks, 5), 5);
+        }
+
+        int high = shortDeck ? shortDeckStraightHigh(any) : straightHigh(any);
+        if (high != 0) {
+            return strength(6, straightRanks(high, shortDeck), 5);
+        }
+
+        if (threeOrMore != 0) {
+            int trips = highestBit(threeOrMore);
+            return strength(7, rankOfBit(trips) << 8 | topRanks(any & ~trips, 2), 3);
+        }
+
+        if (Integer.bitCount(twoOrMore) > 1) {
+            int firstPair = highestBit(twoOrMore);
+            int secondPair = highestBit(twoOrMore & ~firstPair);
+            return strength(8, rankOfBit(firstPair) << 8 | rankOfBit(secondPair) << 4
+                    | topRanks(any & ~(firstPair | secondPair), 1), 3);
+        }
+
+        if (twoOrMore != 0) {
+            return strength(9, rankOfBit(twoOrMore) << 12 | topRanks(any & ~twoOrMore, 3), 4);
+        }
+
+        return strength(10, topRanks(any, 5), 5);
+    }
+
+    /**
+     * Packs the rank of a hand (1 - 10, as in evaluateHand(ArrayList)) and the given number of
+     * 4-bit card ranks into a hand strength
+     *
+     * @param category
+     * @param ranks
+     * @param numRanks
+     * @return
+     */
+    private static int strength(int category, int ranks, int numRanks) {
+        return (11 - category) << CATEGORY_SHIFT | ranks << (4 * (5 - numRanks));
     }
 
     /**
-     * Sort a hand based on the values in ascending order
+     * Given a mask with one bit per rank index, returns the rank (2 - 14) of the highest card
+     * of the highest straight in it, or 0 if there is no straight
      *
-     * @param hand
+     * @param rankMask
+     * @return
      */
-    private static void sortbyRank(Card[] hand) {
-        Arrays.sort(hand, new valueComparator());
+    private static int straightHigh(int rankMask) {
+        return STRAIGHT_HIGH[rankMask];
     }
 
+    /**
+     * Same as straightHigh() for short deck, where A, 6, 7, 8, 9 is the lowest straight,
+     * with a high card of 9
+     *
+     * @param rankMask
+     * @return
+     */
+    private static int shortDeckStraightHigh(int rankMask) {
+        int high = STRAIGHT_HIGH[rankMask];
+        if (high == 0 && (rankMask & SHORT_DECK_WHEEL) == SHORT_DECK_WHEEL) {
+            return 9;
+        }
+        return high;
+    }
 
     /**
-     * Sort a hand based on the suit (ascending order), so clubs, diamonds, hearts, spades
+     * Returns the five 4-bit ranks of the straight with the given high card, with the ace of
+     * a wheel counting as 1
      *
-     * @param hand
+     * @param high
+     * @param shortDeck whether a 9 high straight is A, 6, 7, 8, 9
+     * @return
      */
-    private static void sortBySuit(Card[] hand) {
-        Arrays.sort(hand, new suitComparator());
+    private static int straightRanks(int high, boolean shortDeck) {
+        if (shortDeck && high == 9) {
+            return 9 << 16 | 8 << 12 | 7 << 8 | 6 << 4 | 1;
+        }
+        return high << 16 | (high - 1) << 12 | (high - 2) << 8 | (high - 3) << 4 | (high - 4);
     }
 
+    /**
+     * Picks the five cards of a card mask that make the hand of the given strength, returning
+     * their ids packed one per byte, the first card in the lowest byte
+     *
+     * @param cardMask
+     * @param strength
+     * @return
+     */
+    private static long bestFive(long cardMask, int strength) {
+        int category = handCategory(strength);
+        int[] cardsPerRank = CARDS_PER_RANK[category];
+
+        // a flush or straight flush only takes cards of the flush suit
+        long cards = cardMask;
+        if (category == 1 || category == 2 || category == 5) {
+            for (int suit = 0; suit < Card.NUM_SUITS; suit++) {
+                long suitMask = (long) RANK_BITS << (Card.NUM_RANKS * suit);
+                if (Long.bitCount(cardMask & suitMask) > 4) {
+                    cards = cardMask & suitMask;
+                }
+            }
+        }
+
+        long five = 0L;
+        int n = 0;
+        for (int i = 0; i < cardsPerRank.length; i++) {
+            int rank = strength >>> (4 * (4 - i)) & 0xF;
+            int rankIndex = rank == 1 ? 12 : rank - 2; // the ace of a wheel is packed as 1
+            for (int suit = 0, taken = 0; suit < Card.NUM_SUITS && taken < cardsPerRank[i]; suit++) {
+                long id = Card.NUM_RANKS * suit + rankIndex;
+                if ((cards & 1L << id) != 0) {
+                    five |= id << (8 * n++);
+                    taken++;
+                }
+            }
+        }
+        return five;
+    }
+
+    /**
+     * Returns the ranks of the highest count ranks in a rank mask as 4-bit groups,
+     * highest first
+     *
+     * @param rankMask
+     * @param count
+     * @return
+     */
+    private static int topRanks(int rankMask, int count) {
+        int ranks = 0;
+        for (int i = 0; i < count; i++) {
+            int bit = highestBit(rankMask);
+            ranks = ranks << 4 | rankOfBit(bit);
+            rankMask &= ~bit;
+        }
+        return ranks;
+    }
+
+    private static int highestBit(int rankMask) {
+        return Integer.highestOneBit(rankMask);
+    }
+
+    private static int rankOfBit(int bit) {
+        return Integer.numberOfTrailingZeros(bit) + 2;
+    }
+
+    /**
+     * Given a String with spaces separating each card, return an ArrayList of cards
+     *
+     * @param s
+     * @return
+     * @throws IllegalArgumentException if one of them isn't a card
+     */
+    static ArrayList<Card> listOfCards(String s) {
+        ArrayList<Card> cards = new ArrayList<>();
+        String[] allCards = s.trim().split("\\s+");
+
+        // for each card, look up its Card and add it to the list
+        for (int i = 0; i < allCards.length; i++) {
+            String value_suit = allCards[i];
+            if (value_suit.length() != 2) {
+                throw new IllegalArgumentException("Not a card: " + value_suit);
+            }
+            cards.add(Card.of(value_suit.charAt(0), value_suit.charAt(1)));
+        }
+        return cards;
+    }
+
+    /**
+     * Given the winning seats as returned by chooseWinner(int[]) and the player id sitting in
+     * each seat, returns the ids of the winners space-separated in ascending order
+     *
+     * @param winners
+     * @param playerIds
+     * @return
+     */
+    private static String winnersToString(long winners, int[] playerIds) {
+        int[] ids = new int[Long.bitCount(winners)];
+        int n = 0;
+        for (long seats = winners; seats != 0; seats &= seats - 1) {
+            ids[n++] = playerIds[Long.numberOfTrailingZeros(seats)];
+        }
+        Arrays.sort(ids);
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(ids[i]);
+        }
+        return sb.toString();
+    }
 
     /*********************************************************
      ****************** MAIN METHOD **************************
      *********************************************************/
 
     public static void main(String[] args) {
+        // with --batch, judge every deal on stdin, or in the hand history file given with
+        // --history, and print one line of winners per deal, using as many threads as given
+        // with --threads. With --settle, the pots of every deal are settled instead, and the
+        // running balance of each of its players is printed (see SessionLedger). With
+        // --metrics, --metrics-json or --metrics-interval <ms>, JudgeMetrics are recorded and
+        // printed to stderr at the end, and every <ms> milliseconds if given. --engine <name>
+        // picks the HandEvaluator, and --shadow <name> runs a second one alongside it and
+        // prints a ShadowEvaluator report to stderr at the end. --showdown judges with
+        // Showdown, skipping seats that can't win
+        if (args.length > 0 && args[0].equals("--batch")) {
+            int numThreads = 1;
+            String engine = HandEvaluator.DEFAULT_ENGINE;
+            String shadow = null;
+            boolean metrics = false;
+            boolean json = false;
+            long interval = 0;
+            String history = null;
+            boolean settle = false;
+            boolean showdown = false;
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].equals("--threads") && i + 1 < args.length) {
+                    numThreads = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--history") && i + 1 < args.length) {
+                    history = args[++i];
+                } else if (args[i].equals("--settle")) {
+                    settle = true;
+                } else if (args[i].equals("--showdown")) {
+                    showdown = true;
+                } else if (args[i].equals("--engine") && i + 1 < args.length) {
+                    engine = args[++i];
+                } else if (args[i].equals("--shadow") && i + 1 < args.length) {
+                    shadow = args[++i];
+                } else if (args[i].equals("--metrics")) {
+                    metrics = true;
+                } else if (args[i].equals("--metrics-json")) {
+                    metrics = true;
+                    json = true;
+                } else if (args[i].equals("--metrics-interval") && i + 1 < args.length) {
+                    metrics = true;
+                    interval = Long.parseLong(args[++i]);
+                } else {
+                    System.err.println("ERROR. Unknown option: " + args[i]);
+                    System.exit(1);
+                }
+            }
+
+            if (settle && showdown) {
+                // side pots need the strength of every hand, which a showdown doesn't find
+                System.err.println("ERROR. --showdown can't be used with --settle");
+                System.exit(1);
+            }
+            if (settle && history != null) {
+                // hand history records hold neither contributions nor folds, so every pot would be empty
+                System.err.println("ERROR. --history can't be used with --settle");
+                System.exit(1);
+            }
+
+            ShadowEvaluator.Report shadowReport = null;
+            try {
+                HandEvaluator.create(engine);
+                if (shadow != null) {
+                    HandEvaluator.create(shadow);
+                    shadowReport = new ShadowEvaluator.Report(engine, shadow);
+                }
+            } catch (IllegalArgumentException e) {
+                System.err.println("ERROR. " + e.getMessage());
+                System.exit(1);
+                return;
+            }
+            String active = engine;
+            String candidate = shadow;
+            ShadowEvaluator.Report report = shadowReport;
+            Supplier<HandEvaluator> engines = report == null ? () -> HandEvaluator.create(active)
+                    : () -> new ShadowEvaluator(HandEvaluator.create(active), HandEvaluator.create(candidate), report);
+
+            JudgeMetrics.Reporter reporter = null;
+            if (metrics) {
+                JudgeMetrics.setEnabled(true);
+                if (interval > 0) {
+                    reporter = JudgeMetrics.startReporter(System.err, interval, json);
+                }
+            }
+            try (HandHistoryReader historyReader = history == null ? null : new HandHistoryReader(Paths.get(history))) {
+                DealSource reader = historyReader != null ? historyReader : new DealReader(System.in);
+                if (settle) {
+                    SessionLedger.run(reader, System.out, engines.get());
+                } else if (numThreads > 1) {
+                    try (ParallelJudger judger = new ParallelJudger(numThreads, engines, showdown)) {
+                        judger.run(reader, System.out);
+                    }
+                } else {
+                    BatchJudger.run(reader, System.out, engines.get(), showdown);
+                }
+            } catch (IOException e) {
+                System.err.println("ERROR. " + e.getMessage());
+                System.exit(1);
+            } finally {
+                if (reporter != null) {
+                    reporter.close();
+                }
+                if (metrics) {
+                    System.err.println(json ? JudgeMetrics.snapshotJson() : JudgeMetrics.snapshot());
+                }
+                if (report != null) {
+                    System.err.print(json ? report.toJson() + System.lineSeparator() : report);
+                }
+            }
+            return;
+        }
+
         Scanner scanner = new Scanner(System.in);
         int numPlayers;
 
         try {
-            System.out.println("Please enter the number of players (a number between 1 and 24):");
-            numPlayers = Integer.parseInt(scanner.nextLine());
-            if (numPlayers <= 0 || numPlayers > 24) {
-                System.out.println("ERROR. Number of players is out of the range. Please enter a number between 1 and 23");
+            System.out.println("Please enter the number of players (a number between 1 and " + Deal.MAX_PLAYERS + "):");
+            numPlayers = Integer.parseInt(scanner.nextLine().trim());
+            if (numPlayers <= 0 || numPlayers > Deal.MAX_PLAYERS) {
+                System.out.println("ERROR. Number of players is out of the range. Please enter a number between 1 and " + Deal.MAX_PLAYERS);
+                return;
             }
+            Deal deal = new Deal();
+            deal.setNumPlayers(numPlayers);
+
             System.out.println("Please provide the community cards (5 community cards, separated by space):");
-            String communityCards = scanner.nextLine();
-            ArrayList<Card> communityCardsList = listOfCards(communityCards);
-            Card[] comCards = communityCardsList.toArray(new Card[communityCardsList.size()]);
+            ArrayList<Card> communityCardsList = listOfCards(scanner.nextLine());
+            if (communityCardsList.size() != Deal.BOARD_SIZE) {
+                System.out.println("ERROR. Please provide exactly 5 community cards");
+                return;
+            }
+            for (int i = 0; i < Deal.BOARD_SIZE; i++) {
+                deal.getBoard()[i] = communityCardsList.get(i).getId();
+            }
 
-            HashMap<Integer, ArrayList<Card>> playerHands = new HashMap<>();
+            // the id of the player in each seat and their hole cards
             for (int i = 0; i < numPlayers; i++) {
                 System.out.println("Please provide information for player " + i);
-                String playerInfo = scanner.nextLine();
-                String[] infoArray = playerInfo.split(" ");
+                String[] infoArray = scanner.nextLine().trim().split("\\s+");
                 if(infoArray.length != 3) {
                     System.out.println("ERROR. Incorrect number of information provided");
                     return;
-                } else {
-                    int pid = Integer.parseInt(infoArray[0]); // player id
-                    char[] firstCard = infoArray[1].toCharArray();
-                    char[] secondCard = infoArray[2].toCharArray();
-                    Card c1 = new Card(String.valueOf(firstCard[0]), String.valueOf(firstCard[1]));
-                    Card c2 = new Card(String.valueOf(secondCard[0]), String.valueOf(secondCard[1]));
-                    ArrayList<Card> cards = new ArrayList<>();
-                    cards.add(c1);
-                    cards.add(c2);
-                    for (Card c: comCards) {
-                        cards.add(c);
-                    }
-                    playerHands.put(pid, cards);
-
                 }
+                deal.getPlayerIds()[i] = Integer.parseInt(infoArray[0]); // player id
+                ArrayList<Card> hand = listOfCards(infoArray[1] + " " + infoArray[2]);
+                deal.getHoleCards()[Deal.HOLE_SIZE * i] = hand.get(0).getId();
+                deal.getHoleCards()[Deal.HOLE_SIZE * i + 1] = hand.get(1).getId();
             }
 
-            HashMap<Integer, String[]> bestPlaysForAllPlayers = new HashMap<>();
-            // for each player, get their best possible hand
-            for (Map.Entry<Integer, ArrayList<Card>> entry : playerHands.entrySet()) {
-                ArrayList<Card> list = entry.getValue();
-                int pid = entry.getKey();
-                String[] bestPlay = evaluateHand(list);
-//                System.out.println("best play for player " + pid + " is:" + bestPlay[1]);
-                bestPlaysForAllPlayers.put(pid, bestPlay);
+            int code = DealValidator.validate(deal);
+            if (code != DealValidator.VALID) {
+                System.out.println("ERROR. " + DealValidator.describe(deal, code));
+                return;
             }
+            long winners = judge(deal, new BoardState(), new int[numPlayers]);
 
-            ArrayList<String> winners = chooseWinner(bestPlaysForAllPlayers);
-
-            System.out.print(StringUtils.join(winners, " "));
+            System.out.print(winnersToString(winners, deal.getPlayerIds()));
         } catch (NumberFormatException e) {
-            System.out.println("Please enter an integer for the number of players.");
+            System.out.println("Please enter an integer for the number of players and their ids.");
+        } catch (IllegalArgumentException e) {
+            System.out.println("ERROR. " + e.getMessage());
+        } catch (NoSuchElementException e) {
+            System.out.println("ERROR. The input ended before the deal was complete");
         }
 
         /******************** TEST CASES ****************************/